@@ -59,6 +59,16 @@ public class WidgetsModel {
         return EMPTY_WIDGET_LIST;
     }
 
+    /**
+     * Returns the picker entries of the packages and categories whose widgets changed, or null if
+     * all the entries should be read with {@link #getWidgetsListForPicker(Context)}.
+     */
+    @Nullable
+    public synchronized Map<PackageUserKey, List<WidgetsListBaseEntry>> getChangedWidgetsForPicker(
+            Context context) {
+        return null;
+    }
+
     /** Returns a mapping of packages to their widgets without static shortcuts. */
     public synchronized Map<PackageUserKey, List<WidgetItem>> getAllWidgetsWithoutShortcuts() {
         return Map.of();
@@ -73,6 +83,10 @@ public class WidgetsModel {
         return Collections.emptyList();
     }
 
+    public List<ComponentWithLabelAndIcon> updateAllFromLoaderPhase(LauncherAppState app) {
+        return Collections.emptyList();
+    }
+
 
     public void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
             LauncherAppState app) {
@@ -53,4 +53,35 @@ public abstract class AbsGridOccupancy {
         }
         return false;
     }
+
+    /**
+     * Same as {@link #findVacantCell(int[], boolean[][], int, int, int, int)}, for a grid where
+     * bit x of {@param rows}[y] is set if the cell (x, y) is occupied.
+     */
+    protected boolean findVacantCell(int[] vacantOut, long[] rows, int countX, int countY,
+            int spanX, int spanY) {
+        spanX = Math.max(spanX, 1);
+        spanY = Math.max(spanY, 1);
+        if (countX < 1 || spanX > countX) {
+            return false;
+        }
+        long rowMask = -1L >>> (Long.SIZE - countX);
+        for (int y = 0; (y + spanY) <= countY; y++) {
+            long free = rowMask;
+            for (int j = y; j < y + spanY; j++) {
+                free &= ~rows[j];
+            }
+            // Bit x is set if the cells x to x + spanX - 1 are free in all the rows
+            long starts = free;
+            for (int i = 1; i < spanX && starts != 0; i++) {
+                starts &= free >>> i;
+            }
+            if (starts != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(starts);
+                vacantOut[1] = y;
+                return true;
+            }
+        }
+        return false;
+    }
 }
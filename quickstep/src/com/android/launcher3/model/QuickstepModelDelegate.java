@@ -223,10 +223,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
                         elapsedTime));
             }
         } else {
-            IntSparseArrayMap<ItemInfo> itemsIdMap;
-            synchronized (mDataModel) {
-                itemsIdMap = mDataModel.itemsIdMap.clone();
-            }
+            IntSparseArrayMap<ItemInfo> itemsIdMap = getItemsIdMap();
             InstanceId instanceId = new InstanceIdSequence().newInstanceId();
             for (ItemInfo info : itemsIdMap) {
                 FolderInfo parent = getContainer(info, itemsIdMap);
@@ -245,6 +242,15 @@ public class QuickstepModelDelegate extends ModelDelegate {
 
     protected void additionalSnapshotEvents(InstanceId snapshotInstanceId){}
 
+    private IntSparseArrayMap<ItemInfo> getItemsIdMap() {
+        if (FeatureFlags.ENABLE_MODEL_SNAPSHOTS.get()) {
+            return mDataModel.getSnapshot().itemsIdMap;
+        }
+        synchronized (mDataModel) {
+            return mDataModel.itemsIdMap.clone();
+        }
+    }
+
     /**
      * Registers a callback to log launcher workspace layout using Statsd pulled atom.
      */
@@ -260,10 +266,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     MODEL_EXECUTOR,
                     (i, eventList) -> {
                         InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-                        IntSparseArrayMap<ItemInfo> itemsIdMap;
-                        synchronized (mDataModel) {
-                            itemsIdMap = mDataModel.itemsIdMap.clone();
-                        }
+                        IntSparseArrayMap<ItemInfo> itemsIdMap = getItemsIdMap();
 
                         for (ItemInfo info : itemsIdMap) {
                             FolderInfo parent = getContainer(info, itemsIdMap);
@@ -86,7 +86,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
 import java.util.Stack;
 
 public class CellLayout extends ViewGroup {
@@ -199,6 +198,13 @@ public class CellLayout extends ViewGroup {
 
     private final ArrayList<View> mIntersectingViews = new ArrayList<>();
     private final Rect mOccupiedRect = new Rect();
+    // Scratch state of the reorder, reused across attempts to avoid allocating on every drag frame
+    private final ArrayList<View> mSortedReorderViews = new ArrayList<>();
+    private GridOccupancy mBlockOccupied;
+    private static final Comparator<View> REORDER_VIEW_ORDER = Comparator
+            .comparingInt((View view) ->
+                    ((CellLayoutLayoutParams) view.getLayoutParams()).getCellX())
+            .thenComparingInt(view -> ((CellLayoutLayoutParams) view.getLayoutParams()).getCellY());
     public final int[] mDirectionVector = new int[2];
 
     ItemConfiguration mPreviousSolution = null;
@@ -1862,6 +1868,12 @@ public class CellLayout extends ViewGroup {
             return false;
         }
 
+        // The views of the cluster only ever move together by pushDistance, so the push can't
+        // succeed if they don't fit in the layout once shifted.
+        if (!isShiftedRectInBounds(clusterRect, whichEdge, pushDistance)) {
+            return false;
+        }
+
         // Mark the occupied state as false for the group of views we want to move.
         for (View v: views) {
             CellAndSpan c = currentState.map.get(v);
@@ -1927,6 +1939,20 @@ public class CellLayout extends ViewGroup {
         return foundSolution;
     }
 
+    private boolean isShiftedRectInBounds(Rect r, int whichEdge, int distance) {
+        switch (whichEdge) {
+            case ViewCluster.LEFT:
+                return r.left - distance >= 0;
+            case ViewCluster.RIGHT:
+                return r.right + distance <= mCountX;
+            case ViewCluster.TOP:
+                return r.top - distance >= 0;
+            case ViewCluster.BOTTOM:
+            default:
+                return r.bottom + distance <= mCountY;
+        }
+    }
+
     /**
      * This helper class defines a cluster of views. It helps with defining complex edges
      * of the cluster and determining how those edges interact with other views. The edges
@@ -2290,7 +2316,12 @@ public class CellLayout extends ViewGroup {
             mTmpOccupied.markCells(c, false);
         }
 
-        GridOccupancy blockOccupied = new GridOccupancy(boundingRect.width(), boundingRect.height());
+        // The block is never larger than the grid, so a grid sized scratch occupancy is reused
+        if (mBlockOccupied == null || !mBlockOccupied.hasSize(mCountX, mCountY)) {
+            mBlockOccupied = new GridOccupancy(mCountX, mCountY);
+        }
+        GridOccupancy blockOccupied = mBlockOccupied;
+        blockOccupied.clear();
         int top = boundingRect.top;
         int left = boundingRect.left;
         // We mark more precisely which parts of the bounding rect are truly occupied, allowing
@@ -2342,17 +2373,14 @@ public class CellLayout extends ViewGroup {
                 c.cellY = cellY;
             }
         }
-        Rect r0 = new Rect(cellX, cellY, cellX + spanX, cellY + spanY);
-        Rect r1 = new Rect();
+        Rect r0 = mOccupiedRect;
+        Rect r1 = mTempRect;
         // The views need to be sorted so that the results are deterministic on the views positions
         // and not by the views hash which is "random".
-        // The views are sorted twice, once for the X position and a second time for the Y position
-        // to ensure same order everytime.
-        Comparator comparator = Comparator.comparing(view ->
-                        ((CellLayoutLayoutParams) ((View) view).getLayoutParams()).getCellX())
-                .thenComparing(view ->
-                        ((CellLayoutLayoutParams) ((View) view).getLayoutParams()).getCellY());
-        List<View> views = solution.map.keySet().stream().sorted(comparator).toList();
+        ArrayList<View> views = mSortedReorderViews;
+        views.clear();
+        views.addAll(solution.map.keySet());
+        views.sort(REORDER_VIEW_ORDER);
         for (View child : views) {
             if (child == ignoreView) continue;
             CellAndSpan c = solution.map.get(child);
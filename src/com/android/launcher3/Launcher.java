@@ -232,6 +232,7 @@ import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 import com.android.launcher3.widget.WidgetAddFlowHandler;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewBitmapPool;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
@@ -1286,6 +1287,8 @@ public class Launcher extends StatefulActivity<LauncherState>
 
         super.onPause();
         mDragController.cancelDrag();
+        // Don't keep coalesced position updates in memory while launcher is in the background
+        mModelWriter.flushPendingUpdates();
         mLastTouchUpTime = -1;
         mDropTargetBar.animateToVisibility(false);
 
@@ -2231,6 +2234,7 @@ public class Launcher extends StatefulActivity<LauncherState>
             // This clears all widget bitmaps from the widget tray
             // TODO(hyunyoungs)
         }
+        mIconCache.onTrimMemory(level);
     }
 
     @Override
@@ -3099,6 +3103,11 @@ public class Launcher extends StatefulActivity<LauncherState>
         mPopupDataProvider.setAllWidgets(allWidgets);
     }
 
+    @Override
+    public void bindWidgetsChanged(Map<PackageUserKey, List<WidgetsListBaseEntry>> changedWidgets) {
+        mPopupDataProvider.updateWidgets(changedWidgets);
+    }
+
     @Override
     public void bindStringCache(StringCache cache) {
         mStringCache = cache;
@@ -3163,6 +3172,10 @@ public class Launcher extends StatefulActivity<LauncherState>
         mStateManager.dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
         mDeviceProfile.dump(this, prefix, writer);
+        WidgetPreviewBitmapPool widgetPreviewPool = WidgetPreviewBitmapPool.INSTANCE.getNoCreate();
+        if (widgetPreviewPool != null) {
+            widgetPreviewPool.dump(prefix, writer);
+        }
 
         try {
             FileLog.flushAll(writer);
@@ -21,6 +21,7 @@ import static android.content.Context.RECEIVER_EXPORTED;
 
 import static com.android.launcher3.LauncherPrefs.ICON_STATE;
 import static com.android.launcher3.LauncherPrefs.THEMED_ICONS;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PERSISTED_MONO_ICONS;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.util.SettingsCache.NOTIFICATION_BADGING_URI;
 
@@ -250,7 +251,13 @@ public class LauncherAppState implements SafeCloseable {
         @Override
         public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
             if (Themes.KEY_THEMED_ICONS.equals(key)) {
-                mIconProvider.setIconThemeSupported(Themes.isThemedIconEnabled(mContext));
+                if (ENABLE_PERSISTED_MONO_ICONS.get()) {
+                    // The cached icons already have their monochrome variant, so only the items
+                    // need to be bound again
+                    mModel.forceReload();
+                    return;
+                }
+                mIconProvider.setIconThemeSupported(LauncherIcons.isMonoIconEnabled(mContext));
                 verifyIconChanged();
             }
         }
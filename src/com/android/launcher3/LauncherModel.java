@@ -49,6 +49,7 @@ import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.CacheDataUpdatedTask;
 import com.android.launcher3.model.ItemInstallQueue;
+import com.android.launcher3.model.ItemUpdateQueue;
 import com.android.launcher3.model.LauncherBinder;
 import com.android.launcher3.model.LoaderTask;
 import com.android.launcher3.model.ModelDbController;
@@ -57,6 +58,7 @@ import com.android.launcher3.model.ModelWriter;
 import com.android.launcher3.model.PackageIncrementalDownloadUpdatedTask;
 import com.android.launcher3.model.PackageInstallStateChangedTask;
 import com.android.launcher3.model.PackageUpdatedTask;
+import com.android.launcher3.model.ReloadPackagesTask;
 import com.android.launcher3.model.ReloadStringCacheTask;
 import com.android.launcher3.model.ShortcutsChangedTask;
 import com.android.launcher3.model.UserLockStateChangedTask;
@@ -96,6 +98,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     private final LauncherAppState mApp;
     @NonNull
     private final ModelDbController mModelDbController;
+    private final ItemUpdateQueue mItemUpdateQueue;
     @NonNull
     private final Object mLock = new Object();
     @Nullable
@@ -152,6 +155,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             final boolean isPrimaryInstance) {
         mApp = app;
         mModelDbController = new ModelDbController(context);
+        mItemUpdateQueue = new ItemUpdateQueue(this, mBgDataModel);
         mBgAllAppsList = new AllAppsList(iconCache, appFilter);
         mModelDelegate = ModelDelegate.newInstance(context, app, mBgAllAppsList, mBgDataModel,
                 isPrimaryInstance);
@@ -166,6 +170,20 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         return mModelDbController;
     }
 
+    @NonNull
+    public ItemUpdateQueue getItemUpdateQueue() {
+        return mItemUpdateQueue;
+    }
+
+    /**
+     * Returns the apps as of the last time they were bound, which can be read from any thread.
+     * See {@link AllAppsList#getDataSnapshot()} for the fields which can still change.
+     */
+    @NonNull
+    public List<AppInfo> getAllAppsSnapshot() {
+        return mBgAllAppsList.getDataSnapshot();
+    }
+
     /**
      * Adds the provided items to the workspace.
      */
@@ -313,7 +331,12 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         if (Intent.ACTION_MANAGED_PROFILE_AVAILABLE.equals(action)
                 && mShouldReloadWorkProfile) {
             mShouldReloadWorkProfile = false;
-            forceReload();
+            if (FeatureFlags.ENABLE_INCREMENTAL_RELOAD.get()) {
+                // Only refresh the items of the profile, instead of reloading the whole model
+                enqueueModelUpdateTask(new ReloadPackagesTask(user, null));
+            } else {
+                forceReload();
+            }
         } else if (Intent.ACTION_MANAGED_PROFILE_AVAILABLE.equals(action)
                 || Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE.equals(action)) {
             mShouldReloadWorkProfile = false;
@@ -402,6 +425,8 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     }
 
     private boolean startLoader(@NonNull final Callbacks[] newCallbacks) {
+        // Write any coalesced item updates before they can be reloaded or rebound
+        mItemUpdateQueue.flush();
         // Enable queue before starting loader. It will get disabled in Launcher#finishBindingItems
         ItemInstallQueue.INSTANCE.get(mApp.getContext())
                 .pauseModelPush(ItemInstallQueue.FLAG_LOADER_RUNNING);
@@ -620,6 +645,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             return;
         }
         task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
+        mItemUpdateQueue.flush();
         MODEL_EXECUTOR.execute(task);
     }
 
@@ -665,6 +691,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             public void execute(@NonNull final LauncherAppState app,
                     @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
                 WorkspaceItemInfo info = itemProvider.get();
+                dataModel.updateItemIndex(info);
                 getModelWriter().updateItemInDatabase(info);
                 ArrayList<WorkspaceItemInfo> update = new ArrayList<>();
                 update.add(info);
@@ -697,6 +724,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
+        mApp.getIconCache().dump(prefix, writer);
     }
 
     /**
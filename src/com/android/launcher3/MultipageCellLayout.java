@@ -37,6 +37,8 @@ public class MultipageCellLayout extends CellLayout {
 
     private boolean mSeamWasAdded = false;
 
+    private MulticellReorderAlgorithm mReorderAlgorithm;
+
     public MultipageCellLayout(Context context) {
         this(context, null);
     }
@@ -114,7 +116,12 @@ public class MultipageCellLayout extends CellLayout {
 
     @Override
     public MulticellReorderAlgorithm createReorderAlgorithm() {
-        return new MulticellReorderAlgorithm(this);
+        // The algorithm only keeps scratch buffers and the solve deadline, which are reset by each
+        // call on the UI thread, so a single instance and seam view is reused
+        if (mReorderAlgorithm == null) {
+            mReorderAlgorithm = new MulticellReorderAlgorithm(this);
+        }
+        return mReorderAlgorithm;
     }
 
     @Override
@@ -15,6 +15,10 @@
  */
 package com.android.launcher3.allapps;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_ALL_APPS_LIST;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
 import android.content.Context;
 
 import androidx.annotation.Nullable;
@@ -27,6 +31,7 @@ import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -86,6 +91,13 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     private int mNumAppRowsInAdapter;
     private Predicate<ItemInfo> mItemFilter;
 
+    // Keeps mApps sorted across updates, when sorting incrementally
+    private final AppsListSorter mAppsSorter = new AppsListSorter(mApps);
+    // Comparator ordering the apps by section first, for locales which coalesce sections
+    private Comparator<AppInfo> mSectionComparator;
+    // Incremented on every update of the adapter items, to drop outdated background diffs
+    private int mAdapterItemsUpdateId;
+
     public AlphabeticalAppsList(Context context, @Nullable AllAppsStore<T> appsStore,
             WorkProfileManager workProfileManager) {
         mAllAppsStore = appsStore;
@@ -195,6 +207,14 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         if (mAllAppsStore == null) {
             return;
         }
+        if (ENABLE_INCREMENTAL_ALL_APPS_LIST.get()) {
+            mAppsSorter.update(mAllAppsStore.getApps(), getSortComparator(),
+                    hasSearchResults() ? null : mItemFilter);
+            if (mSearchResults.isEmpty()) {
+                updateAdapterItems();
+            }
+            return;
+        }
         // Sort the list of apps
         mApps.clear();
 
@@ -227,53 +247,69 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         }
     }
 
+    /**
+     * Returns the comparator ordering the apps for the current locale. As a special case for some
+     * languages (currently only Simplified Chinese), sections are coalesced by ordering the apps
+     * by section first.
+     */
+    private Comparator<AppInfo> getSortComparator() {
+        Locale curLocale = mActivityContext.getResources().getConfiguration().locale;
+        if (!curLocale.equals(Locale.SIMPLIFIED_CHINESE)) {
+            return mAppNameComparator;
+        }
+        if (mSectionComparator == null) {
+            LabelComparator sectionComparator = new LabelComparator();
+            mSectionComparator = Comparator.<AppInfo, String>comparing(
+                    info -> info.sectionName, sectionComparator).thenComparing(mAppNameComparator);
+        }
+        return mSectionComparator;
+    }
+
     /**
      * Updates the set of filtered apps with the current filter. At this point, we expect
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
      */
     public void updateAdapterItems() {
-        List<AdapterItem> oldItems = new ArrayList<>(mAdapterItems);
-        // Prepare to update the list of sections, filtered apps, etc.
-        mFastScrollerSections.clear();
-        mAdapterItems.clear();
-        mAccessibilityResultsCount = 0;
+        ArrayList<AdapterItem> adapterItems = new ArrayList<>();
+        ArrayList<FastScrollSectionInfo> fastScrollerSections = new ArrayList<>();
 
         // Recreate the filtered and sectioned apps (for convenience for the grid layout) from the
         // ordered set of sections
         if (hasSearchResults()) {
-            mAdapterItems.addAll(mSearchResults);
+            adapterItems.addAll(mSearchResults);
         } else {
             int position = 0;
             boolean addApps = true;
             if (mWorkProviderManager != null) {
-                position += mWorkProviderManager.addWorkItems(mAdapterItems);
+                position += mWorkProviderManager.addWorkItems(adapterItems);
                 addApps = mWorkProviderManager.shouldShowWorkApps();
             }
             if (addApps) {
                 String lastSectionName = null;
                 for (AppInfo info : mApps) {
-                    mAdapterItems.add(AdapterItem.asApp(info));
+                    adapterItems.add(AdapterItem.asApp(info));
 
                     String sectionName = info.sectionName;
                     // Create a new section if the section names do not match
                     if (!sectionName.equals(lastSectionName)) {
                         lastSectionName = sectionName;
-                        mFastScrollerSections.add(new FastScrollSectionInfo(sectionName, position));
+                        fastScrollerSections.add(new FastScrollSectionInfo(sectionName, position));
                     }
                     position++;
                 }
             }
         }
-        mAccessibilityResultsCount = (int) mAdapterItems.stream()
+        int accessibilityResultsCount = (int) adapterItems.stream()
                 .filter(AdapterItem::isCountedForAccessibility).count();
 
+        int numAppRowsInAdapter = mNumAppRowsInAdapter;
         if (mNumAppsPerRowAllApps != 0) {
             // Update the number of rows in the adapter after we do all the merging (otherwise, we
             // would have to shift the values again)
             int numAppsInSection = 0;
             int numAppsInRow = 0;
             int rowIndex = -1;
-            for (AdapterItem item : mAdapterItems) {
+            for (AdapterItem item : adapterItems) {
                 item.rowIndex = 0;
                 if (BaseAllAppsAdapter.isDividerViewType(item.viewType)) {
                     numAppsInSection = 0;
@@ -288,15 +324,49 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                     numAppsInRow++;
                 }
             }
-            mNumAppRowsInAdapter = rowIndex + 1;
+            numAppRowsInAdapter = rowIndex + 1;
+        }
+
+        int updateId = ++mAdapterItemsUpdateId;
+        List<AdapterItem> oldItems = new ArrayList<>(mAdapterItems);
+        if (ENABLE_INCREMENTAL_ALL_APPS_LIST.get() && mAdapter != null && !oldItems.isEmpty()
+                && !hasSearchResults()) {
+            // Diff the apps in the background, keeping the current items until the result is
+            // dispatched, as they are still shown by the adapter
+            UI_HELPER_EXECUTOR.execute(() -> {
+                DiffUtil.DiffResult result =
+                        DiffUtil.calculateDiff(new MyDiffCallback(oldItems, adapterItems), false);
+                MAIN_EXECUTOR.execute(() -> {
+                    if (updateId != mAdapterItemsUpdateId) {
+                        return;
+                    }
+                    setAdapterItems(adapterItems, fastScrollerSections,
+                            accessibilityResultsCount, numAppRowsInAdapter);
+                    result.dispatchUpdatesTo(mAdapter);
+                });
+            });
+            return;
         }
 
+        setAdapterItems(adapterItems, fastScrollerSections, accessibilityResultsCount,
+                numAppRowsInAdapter);
         if (mAdapter != null) {
             DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
                     .dispatchUpdatesTo(mAdapter);
         }
     }
 
+    private void setAdapterItems(List<AdapterItem> adapterItems,
+            List<FastScrollSectionInfo> fastScrollerSections, int accessibilityResultsCount,
+            int numAppRowsInAdapter) {
+        mAdapterItems.clear();
+        mAdapterItems.addAll(adapterItems);
+        mFastScrollerSections.clear();
+        mFastScrollerSections.addAll(fastScrollerSections);
+        mAccessibilityResultsCount = accessibilityResultsCount;
+        mNumAppRowsInAdapter = numAppRowsInAdapter;
+    }
+
     private static class MyDiffCallback extends DiffUtil.Callback {
 
         private final List<AdapterItem> mOldList;
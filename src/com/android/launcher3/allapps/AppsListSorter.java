@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the apps of {@link AlphabeticalAppsList} sorted as apps are added, removed or renamed,
+ * instead of sorting all the apps on every update.
+ *
+ * The model updates the title of an existing {@link AppInfo} in place, so the title and section
+ * each app was sorted with are kept to find the apps which need to be moved.
+ */
+class AppsListSorter {
+
+    private final List<AppInfo> mApps;
+    // Title and section name of each app in mApps when it was sorted
+    private final Map<AppInfo, SortKey> mSortKeys = new IdentityHashMap<>();
+
+    @Nullable
+    private Comparator<AppInfo> mComparator;
+    @Nullable
+    private Predicate<ItemInfo> mFilter;
+
+    /**
+     * @param apps the list to keep sorted
+     */
+    AppsListSorter(@NonNull List<AppInfo> apps) {
+        mApps = apps;
+    }
+
+    /**
+     * Updates the sorted list to the apps in {@param apps} matching {@param filter}, sorted by
+     * {@param comparator}. All the apps are sorted again only when the comparator or filter
+     * changes.
+     */
+    void update(@NonNull AppInfo[] apps, @NonNull Comparator<AppInfo> comparator,
+            @Nullable Predicate<ItemInfo> filter) {
+        if (comparator != mComparator || filter != mFilter) {
+            mComparator = comparator;
+            mFilter = filter;
+            mApps.clear();
+            mSortKeys.clear();
+            for (AppInfo app : apps) {
+                if (filter == null || filter.test(app)) {
+                    mApps.add(app);
+                    mSortKeys.put(app, new SortKey(app));
+                }
+            }
+            mApps.sort(comparator);
+            return;
+        }
+
+        Map<AppInfo, Boolean> newApps = new IdentityHashMap<>(apps.length);
+        for (AppInfo app : apps) {
+            newApps.put(app, Boolean.TRUE);
+        }
+        // Remove the apps which are gone or need to be moved, so that the remaining ones are
+        // still sorted
+        mApps.removeIf(app -> {
+            if (newApps.containsKey(app) && mSortKeys.get(app).isKeyOf(app)) {
+                return false;
+            }
+            mSortKeys.remove(app);
+            return true;
+        });
+        for (AppInfo app : apps) {
+            if (!mSortKeys.containsKey(app) && (filter == null || filter.test(app))) {
+                int index = Collections.binarySearch(mApps, app, comparator);
+                mApps.add(index < 0 ? -index - 1 : index, app);
+                mSortKeys.put(app, new SortKey(app));
+            }
+        }
+    }
+
+    private static class SortKey {
+
+        final CharSequence title;
+        final String sectionName;
+
+        SortKey(AppInfo app) {
+            title = app.title;
+            sectionName = app.sectionName;
+        }
+
+        boolean isKeyOf(AppInfo app) {
+            return TextUtils.equals(title, app.title)
+                    && Objects.equals(sectionName, app.sectionName);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.MatchQuery;
+import com.android.launcher3.search.StringMatcherUtility.MatchTarget;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of app titles for {@link DefaultAppSearchAlgorithm}, giving the same results as
+ * {@link DefaultAppSearchAlgorithm#getTitleMatchResult(List, String)}.
+ *
+ * The title of each app is prepared once as a {@link MatchTarget}, so that matching a query doesn't
+ * allocate, and only the apps which were added or renamed are indexed again. When a query
+ * extends the previous one, only the apps matching the previous query are matched again, as a
+ * title matching a query also matches all prefixes of the query.
+ */
+@WorkerThread
+public class AppSearchIndex {
+
+    // Number of apps matched between checks for cancellation
+    static final int CANCELLATION_CHECK_INTERVAL = 32;
+
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private final ArrayList<IndexedApp> mApps = new ArrayList<>();
+
+    private MatchQuery mLastQuery;
+    private List<IndexedApp> mLastMatches;
+
+    /**
+     * Updates the index to contain {@param apps}, in the same order
+     */
+    public void update(@NonNull List<AppInfo> apps) {
+        int count = apps.size();
+        if (count == mApps.size()) {
+            int i = 0;
+            while (i < count && mApps.get(i).isIndexOf(apps.get(i))) {
+                i++;
+            }
+            if (i == count) {
+                return;
+            }
+        }
+
+        Map<AppInfo, IndexedApp> indexedApps = new IdentityHashMap<>(mApps.size());
+        for (IndexedApp indexed : mApps) {
+            indexedApps.put(indexed.info, indexed);
+        }
+        mApps.clear();
+        mApps.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            AppInfo info = apps.get(i);
+            IndexedApp indexed = indexedApps.get(info);
+            mApps.add(indexed != null && indexed.isIndexOf(info)
+                    ? indexed : new IndexedApp(info, mMatcher));
+        }
+        mLastQuery = null;
+        mLastMatches = null;
+    }
+
+    /**
+     * Returns the apps with a title matching {@param query}, which is already lower case
+     */
+    public ArrayList<AdapterItem> search(@NonNull String query) {
+        return search(query, null);
+    }
+
+    /**
+     * Returns the apps with a title matching {@param query}, which is already lower case, or null
+     * if {@param signal} was cancelled during the search
+     */
+    @Nullable
+    public ArrayList<AdapterItem> search(@NonNull String query,
+            @Nullable CancellationSignal signal) {
+        MatchQuery matchQuery = new MatchQuery(query);
+        List<IndexedApp> candidates = mLastQuery != null
+                && query.startsWith(mLastQuery.getQuery())
+                && matchQuery.isFuzzy() == mLastQuery.isFuzzy()
+                ? mLastMatches : mApps;
+
+        ArrayList<IndexedApp> matches = new ArrayList<>();
+        ArrayList<AdapterItem> result = new ArrayList<>();
+        int total = candidates.size();
+        for (int i = 0; i < total; i++) {
+            if (signal != null && i % CANCELLATION_CHECK_INTERVAL == 0 && signal.isCanceled()) {
+                return null;
+            }
+            IndexedApp indexed = candidates.get(i);
+            if (StringMatcherUtility.matches(matchQuery, indexed.target, mMatcher)) {
+                matches.add(indexed);
+                result.add(AdapterItem.asApp(indexed.info));
+            }
+        }
+        mLastQuery = matchQuery;
+        mLastMatches = matches;
+        return result;
+    }
+
+    private static class IndexedApp {
+
+        final AppInfo info;
+        final CharSequence title;
+        final MatchTarget target;
+
+        IndexedApp(AppInfo info, StringMatcher matcher) {
+            this.info = info;
+            title = info.title;
+            target = new MatchTarget(title.toString(), matcher);
+        }
+
+        boolean isIndexOf(AppInfo app) {
+            return info == app && title == app.title;
+        }
+    }
+}
@@ -16,13 +16,18 @@
 package com.android.launcher3.allapps.search;
 
 import static com.android.launcher3.allapps.BaseAllAppsAdapter.VIEW_TYPE_EMPTY_SEARCH;
+import static com.android.launcher3.allapps.search.AppSearchIndex.CANCELLATION_CHECK_INTERVAL;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_APP_SEARCH_INDEX;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_SEARCH_EXECUTOR;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
+import android.os.CancellationSignal;
 import android.os.Handler;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
@@ -32,6 +37,7 @@ import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
+import com.android.launcher3.search.SearchTaskRunner;
 import com.android.launcher3.search.StringMatcherUtility;
 
 import java.util.ArrayList;
@@ -45,6 +51,9 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     private final LauncherAppState mAppState;
     private final Handler mResultHandler;
     private final boolean mAddNoResultsMessage;
+    private final SearchTaskRunner<AdapterItem> mSearchRunner;
+    // Only used on the thread running the searches
+    private final AppSearchIndex mIndex = new AppSearchIndex();
 
     public DefaultAppSearchAlgorithm(Context context) {
         this(context, false);
@@ -54,22 +63,44 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
         mAddNoResultsMessage = addNoResultsMessage;
+        mSearchRunner = new SearchTaskRunner<>("AppSearch", mResultHandler);
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
-        if (interruptActiveRequests) {
-            mResultHandler.removeCallbacksAndMessages(null);
-        }
+        mSearchRunner.cancel(interruptActiveRequests);
     }
 
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        if (ENABLE_SEARCH_EXECUTOR.get()) {
+            List<AppInfo> apps = mAppState.getModel().getAllAppsSnapshot();
+            mSearchRunner.run(query, signal -> {
+                ArrayList<AdapterItem> result;
+                if (ENABLE_APP_SEARCH_INDEX.get()) {
+                    mIndex.update(apps);
+                    result = mIndex.search(query.toLowerCase(), signal);
+                } else {
+                    result = getTitleMatchResult(apps, query, signal);
+                }
+                if (result != null && mAddNoResultsMessage && result.isEmpty()) {
+                    result.add(getEmptyMessageAdapterItem(query));
+                }
+                return result;
+            }, callback);
+            return;
+        }
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(@NonNull final LauncherAppState app,
                     @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+                ArrayList<AdapterItem> result;
+                if (ENABLE_APP_SEARCH_INDEX.get()) {
+                    mIndex.update(apps.data);
+                    result = mIndex.search(query.toLowerCase());
+                } else {
+                    result = getTitleMatchResult(apps.data, query);
+                }
                 if (mAddNoResultsMessage && result.isEmpty()) {
                     result.add(getEmptyMessageAdapterItem(query));
                 }
@@ -92,6 +123,17 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
      */
     @AnyThread
     public static ArrayList<AdapterItem> getTitleMatchResult(List<AppInfo> apps, String query) {
+        return getTitleMatchResult(apps, query, null);
+    }
+
+    /**
+     * Filters {@link AppInfo}s matching specified query, or returns null if {@param signal} was
+     * cancelled during the search
+     */
+    @AnyThread
+    @Nullable
+    public static ArrayList<AdapterItem> getTitleMatchResult(List<AppInfo> apps, String query,
+            @Nullable CancellationSignal signal) {
         // Do an intersection of the words in the query and each title, and filter out all the
         // apps that don't match all of the words in the query.
         final String queryTextLower = query.toLowerCase();
@@ -101,6 +143,9 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
 
         int total = apps.size();
         for (int i = 0; i < total; i++) {
+            if (signal != null && i % CANCELLATION_CHECK_INTERVAL == 0 && signal.isCanceled()) {
+                return null;
+            }
             AppInfo info = apps.get(i);
             if (StringMatcherUtility.matches(queryTextLower, info.title.toString(), matcher)) {
                 result.add(AdapterItem.asApp(info));
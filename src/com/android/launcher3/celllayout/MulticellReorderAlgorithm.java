@@ -22,7 +22,6 @@ import com.android.launcher3.MultipageCellLayout;
 import com.android.launcher3.ShortcutAndWidgetContainer;
 import com.android.launcher3.util.GridOccupancy;
 
-import java.util.Arrays;
 import java.util.function.Supplier;
 
 /**
@@ -47,6 +46,14 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
         return solution;
     }
 
+    @Override
+    protected CellLayout.ItemConfiguration findBestSolution(int pixelX, int pixelY, int minSpanX,
+            int minSpanY, int spanX, int spanY, View dragView) {
+        // Add the seam once for all the candidate solutions, instead of once per solution
+        return simulateSeam(() -> super.findBestSolution(pixelX, pixelY, minSpanX, minSpanY,
+                spanX, spanY, dragView));
+    }
+
     @Override
     public CellLayout.ItemConfiguration closestEmptySpaceReorder(int pixelX, int pixelY,
             int minSpanX, int minSpanY,
@@ -123,7 +130,7 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
             grid.markCells(lp.getCellX() + seamOffset, lp.getCellY(), lp.cellHSpan, lp.cellVSpan,
                     true);
         }
-        Arrays.fill(grid.cells[mCellLayout.getCountX() / 2], true);
+        grid.markCells(mCellLayout.getCountX() / 2, 0, 1, mCellLayout.getCountY(), true);
         return grid;
     }
 }
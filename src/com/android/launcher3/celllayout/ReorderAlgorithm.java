@@ -15,10 +15,14 @@
  */
 package com.android.launcher3.celllayout;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_REORDER_TIME_BUDGET;
+
 import android.view.View;
 
 import com.android.launcher3.CellLayout;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Contains the logic of a reorder.
  *
@@ -27,8 +31,17 @@ import com.android.launcher3.CellLayout;
  */
 public class ReorderAlgorithm {
 
+    // Time after which calculateReorder stops shrinking the item to find a swap solution
+    private static final long SOLVE_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
     CellLayout mCellLayout;
 
+    // Temporary arrays for the cell and span results, do NOT use them to maintain other state
+    private final int[] mTmpCell = new int[2];
+    private final int[] mTmpSpan = new int[2];
+
+    private long mSolveDeadlineNanos = Long.MAX_VALUE;
+
     public ReorderAlgorithm(CellLayout cellLayout) {
         mCellLayout = cellLayout;
     }
@@ -67,8 +80,8 @@ public class ReorderAlgorithm {
 
         // We find the nearest cell into which we would place the dragged item, assuming there's
         // nothing in its way.
-        int[] result = new int[2];
-        result = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, spanX, spanY, result);
+        int[] result = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, spanX, spanY,
+                mTmpCell);
 
         boolean success;
         // First we try the exact nearest position of the item being dragged,
@@ -77,6 +90,12 @@ public class ReorderAlgorithm {
                 dragView, solution);
 
         if (!success) {
+            if (System.nanoTime() > mSolveDeadlineNanos) {
+                // Give up on smaller spans, calculateReorder falls back to the solutions which
+                // don't move other items.
+                solution.isSolution = false;
+                return solution;
+            }
             // We try shrinking the widget down to size in an alternating pattern, shrink 1 in
             // x, then 1 in y etc.
             if (spanX > minSpanX && (minSpanY == spanY || decX)) {
@@ -109,7 +128,7 @@ public class ReorderAlgorithm {
      */
     public CellLayout.ItemConfiguration dropInPlaceSolution(int pixelX, int pixelY, int spanX,
             int spanY, View dragView) {
-        int[] result = new int[2];
+        int[] result = mTmpCell;
         if (mCellLayout.isNearestDropLocationOccupied(pixelX, pixelY, spanX, spanY, dragView,
                 result)) {
             result[0] = result[1] = -1;
@@ -140,8 +159,8 @@ public class ReorderAlgorithm {
     public CellLayout.ItemConfiguration closestEmptySpaceReorder(int pixelX, int pixelY,
             int minSpanX, int minSpanY, int spanX, int spanY) {
         CellLayout.ItemConfiguration solution = new CellLayout.ItemConfiguration();
-        int[] result = new int[2];
-        int[] resultSpan = new int[2];
+        int[] result = mTmpCell;
+        int[] resultSpan = mTmpSpan;
         mCellLayout.findNearestVacantArea(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY, result,
                 resultSpan);
         if (result[0] >= 0 && result[1] >= 0) {
@@ -177,6 +196,21 @@ public class ReorderAlgorithm {
         mCellLayout.getDirectionVectorForDrop(pixelX, pixelY, spanX, spanY, dragView,
                 mCellLayout.mDirectionVector);
 
+        mSolveDeadlineNanos = ENABLE_REORDER_TIME_BUDGET.get()
+                ? System.nanoTime() + SOLVE_TIME_BUDGET_NANOS : Long.MAX_VALUE;
+        try {
+            return findBestSolution(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY, dragView);
+        } finally {
+            mSolveDeadlineNanos = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns the best of the drop in place, swap and closest empty space solutions, using the
+     * direction vector already computed for the drop.
+     */
+    protected CellLayout.ItemConfiguration findBestSolution(int pixelX, int pixelY, int minSpanX,
+            int minSpanY, int spanX, int spanY, View dragView) {
         CellLayout.ItemConfiguration dropInPlaceSolution = dropInPlaceSolution(pixelX, pixelY,
                 spanX, spanY,
                 dragView);
@@ -409,7 +409,115 @@ public final class FeatureFlags {
             "ALL_APPS_GONE_VISIBILITY", ENABLED,
             "Set all apps container view's hidden visibility to GONE instead of INVISIBLE.");
 
-    // TODO(Block 35): Empty block
+    // TODO(Block 35): Clean up flags
+    public static final BooleanFlag ENABLE_PARALLEL_LOADER = getDebugFlag(251502424,
+            "ENABLE_PARALLEL_LOADER", DISABLED,
+            "Load all apps, deep shortcuts and widgets concurrently after the workspace is "
+                    + "bound, instead of one after another on the loader thread");
+
+    public static final BooleanFlag ENABLE_MODEL_SNAPSHOTS = getDebugFlag(251502424,
+            "ENABLE_MODEL_SNAPSHOTS", DISABLED,
+            "Let model readers use a lazily rebuilt copy of the model published by writers, "
+                    + "instead of copying the model under the model lock on every read");
+
+    public static final BooleanFlag ENABLE_WORKSPACE_SNAPSHOT = getDebugFlag(251502424,
+            "ENABLE_WORKSPACE_SNAPSHOT", DISABLED,
+            "Restore the workspace from a binary snapshot of the last load when the launcher "
+                    + "database and installed packages have not changed since");
+
+    public static final BooleanFlag ENABLE_ADAPTIVE_BINDING = getDebugFlag(251502424,
+            "ENABLE_ADAPTIVE_BINDING", DISABLED,
+            "Size workspace bind chunks to fit a frame budget based on the measured bind cost "
+                    + "of each kind of item, instead of binding a fixed number of items per chunk");
+
+    public static final BooleanFlag ENABLE_WRITE_BEHIND_UPDATES = getDebugFlag(251502424,
+            "ENABLE_WRITE_BEHIND_UPDATES", DISABLED,
+            "Coalesce item position updates made by launcher and write them in a single "
+                    + "transaction after a short quiet period, instead of one write per update");
+
+    public static final BooleanFlag ENABLE_COMPILED_DB_STATEMENTS = getDebugFlag(251502424,
+            "ENABLE_COMPILED_DB_STATEMENTS", DISABLED,
+            "Reuse compiled SQLite statements for moving, resizing, updating, inserting and "
+                    + "deleting single items of the favorites table");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_RELOAD = getDebugFlag(251502424,
+            "ENABLE_INCREMENTAL_RELOAD", DISABLED,
+            "Refresh only the items of a work profile when it first becomes available, instead "
+                    + "of reloading and rebinding the whole model");
+
+    public static final BooleanFlag ENABLE_REORDER_TIME_BUDGET = getDebugFlag(251502424,
+            "ENABLE_REORDER_TIME_BUDGET", DISABLED,
+            "Stop shrinking the dragged item to find a reorder solution once a time budget is "
+                    + "spent, and fall back to the closest empty space");
+
+    public static final BooleanFlag ENABLE_CONCURRENT_ICON_CACHE = getDebugFlag(251502424,
+            "ENABLE_CONCURRENT_ICON_CACHE", DISABLED,
+            "Read icons already loaded in the icon cache without taking the cache lock, and only "
+                    + "hold the lock per item during bulk icon loads");
+
+    public static final BooleanFlag ENABLE_ICON_ATLAS = getDebugFlag(251502424,
+            "ENABLE_ICON_ATLAS", DISABLED,
+            "Load the icons of the first screen and the hotseat from a memory-mapped file of "
+                    + "pre-decoded icons written after the previous load");
+
+    public static final BooleanFlag ENABLE_ICON_MEMORY_BUDGET = getDebugFlag(251502424,
+            "ENABLE_ICON_MEMORY_BUDGET", DISABLED,
+            "Keep the in-memory icon cache within a byte budget scaled to the device memory, "
+                    + "downgrading icons to low resolution before evicting them");
+
+    public static final BooleanFlag ENABLE_PARALLEL_ICON_LOADING = getDebugFlag(251502424,
+            "ENABLE_PARALLEL_ICON_LOADING", DISABLED,
+            "Render the icons missing from the icon database on a bounded pool during bulk icon "
+                    + "loads");
+
+    public static final BooleanFlag ENABLE_ICON_DEDUPLICATION = getDebugFlag(251502424,
+            "ENABLE_ICON_DEDUPLICATION", DISABLED,
+            "Share a single bitmap between in-memory icons with identical pixels");
+
+    public static final BooleanFlag ENABLE_PERSISTED_MONO_ICONS = getDebugFlag(251502424,
+            "ENABLE_PERSISTED_MONO_ICONS", DISABLED,
+            "Always store the monochrome variant of icons in the icon database, so that toggling "
+                    + "themed icons doesn't regenerate all icons");
+
+    public static final BooleanFlag ENABLE_ICON_CACHE_STATS = getDebugFlag(251502424,
+            "ENABLE_ICON_CACHE_STATS", DISABLED,
+            "Record icon cache lookup latencies by source, and the stages of creating icons");
+
+    public static final BooleanFlag ENABLE_APP_SEARCH_INDEX = getDebugFlag(251502424,
+            "ENABLE_APP_SEARCH_INDEX", DISABLED,
+            "Search app titles with an index updated as apps change, narrowing the previous "
+                    + "results while the query is being typed");
+
+    public static final BooleanFlag ENABLE_SEARCH_EXECUTOR = getDebugFlag(251502424,
+            "ENABLE_SEARCH_EXECUTOR", DISABLED,
+            "Search apps and widgets on a dedicated thread instead of the model thread, "
+                    + "cancelling superseded queries");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_ALL_APPS_LIST = getDebugFlag(251502424,
+            "ENABLE_INCREMENTAL_ALL_APPS_LIST", DISABLED,
+            "Keep the all apps list sorted as apps change instead of sorting it again, and diff "
+                    + "app updates off the main thread");
+
+    public static final BooleanFlag ENABLE_WIDGET_PREVIEW_DISK_CACHE = getDebugFlag(251502424,
+            "ENABLE_WIDGET_PREVIEW_DISK_CACHE", DISABLED,
+            "Store generated widget previews on disk, instead of generating them again every "
+                    + "time the widget picker is opened");
+
+    public static final BooleanFlag ENABLE_DOWNSAMPLED_WIDGET_PREVIEWS = getDebugFlag(251502424,
+            "ENABLE_DOWNSAMPLED_WIDGET_PREVIEWS", DISABLED,
+            "Decode widget preview images at the size they are shown, into reused bitmaps");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_WIDGETS_MODEL = getDebugFlag(251502424,
+            "ENABLE_INCREMENTAL_WIDGETS_MODEL", DISABLED,
+            "Update the widgets of a changed package only, and bind the changed picker entries "
+                    + "instead of all of them");
+
+    public static final BooleanFlag ENABLE_ASYNC_WIDGET_PICKER_LIST = getDebugFlag(251502424,
+            "ENABLE_ASYNC_WIDGET_PICKER_LIST", DISABLED,
+            "Diff the widget picker list in the background, and take widget cells from a pool "
+                    + "inflated while the picker is idle");
+
+    // TODO(Block 36): Empty block
 
     public static class BooleanFlag {
 
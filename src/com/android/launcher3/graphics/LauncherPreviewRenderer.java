@@ -471,10 +471,18 @@ public class LauncherPreviewRenderer extends ContextWrapper
         ArrayList<LauncherAppWidgetInfo> currentAppWidgets = new ArrayList<>();
         ArrayList<LauncherAppWidgetInfo> otherAppWidgets = new ArrayList<>();
 
+        // Read from the published snapshot, as the model can be updated on the worker thread
+        // while the preview is rendered.
+        boolean useSnapshot = FeatureFlags.ENABLE_MODEL_SNAPSHOTS.get();
+        BgDataModel.Snapshot snapshot = dataModel.getSnapshot();
         IntSet currentScreenIds = IntSet.wrap(mWorkspaceScreens.keySet());
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.workspaceItems,
-                currentWorkspaceItems, otherWorkspaceItems);
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.appWidgets, currentAppWidgets,
+        ArrayList<ItemInfo> workspaceItems = useSnapshot
+                ? new ArrayList<>(snapshot.workspaceItems) : dataModel.workspaceItems;
+        ArrayList<LauncherAppWidgetInfo> appWidgets = useSnapshot
+                ? new ArrayList<>(snapshot.appWidgets) : dataModel.appWidgets;
+        filterCurrentWorkspaceItems(currentScreenIds, workspaceItems, currentWorkspaceItems,
+                otherWorkspaceItems);
+        filterCurrentWorkspaceItems(currentScreenIds, appWidgets, currentAppWidgets,
                 otherAppWidgets);
         for (ItemInfo itemInfo : currentWorkspaceItems) {
             switch (itemInfo.itemType) {
@@ -508,8 +516,8 @@ public class LauncherPreviewRenderer extends ContextWrapper
         }
         IntArray ranks = getMissingHotseatRanks(currentWorkspaceItems,
                 mDp.numShownHotseatIcons);
-        FixedContainerItems hotseatPredictions =
-                dataModel.extraItems.get(CONTAINER_HOTSEAT_PREDICTION);
+        FixedContainerItems hotseatPredictions = (useSnapshot ? snapshot.extraItems
+                : dataModel.extraItems).get(CONTAINER_HOTSEAT_PREDICTION);
         List<ItemInfo> predictions = hotseatPredictions == null
                 ? Collections.emptyList() : hotseatPredictions.items;
         int count = Math.min(ranks.size(), predictions.size());
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.FlagOp;
+import com.android.launcher3.util.Themes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A file of pre-decoded icons for the items of the first workspace screen and the hotseat, which
+ * are needed before anything can be drawn. On the next load the file is memory-mapped and the
+ * icons are copied into bitmaps as-is, instead of being queried and decoded from the icon cache.
+ *
+ * <p>An icon is only used if the icon system state and the installed location of its package
+ * still match the ones recorded when it was written, which invalidates the same icons as the icon
+ * cache database does. Icons of other users, themed icons and low resolution icons are never
+ * stored.
+ */
+public class IconAtlas {
+
+    private static final String TAG = "IconAtlas";
+
+    private static final int MAGIC = 0x4C334941;
+    private static final int VERSION = 1;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final IconCache mIconCache;
+    @NonNull
+    private final File mFile;
+    private final int mIconBitmapSize;
+
+    public IconAtlas(@NonNull Context context, @NonNull IconCache iconCache, @NonNull File file,
+            int iconBitmapSize) {
+        mContext = context;
+        mIconCache = iconCache;
+        mFile = file;
+        mIconBitmapSize = iconBitmapSize;
+    }
+
+    /**
+     * Fills in the title and icon of the {@code requests} found in the atlas, and removes them
+     * from the list. Returns the number of loaded icons.
+     */
+    @WorkerThread
+    public <T extends ItemInfoWithIcon> int loadIcons(@NonNull List<IconRequestInfo<T>> requests) {
+        if (Themes.isThemedIconEnabled(mContext)) {
+            return 0;
+        }
+        Map<ComponentKey, Entry> entries = readEntries();
+        if (entries == null) {
+            return 0;
+        }
+
+        int loaded = 0;
+        Map<String, String> systemStates = new ArrayMap<>();
+        Iterator<IconRequestInfo<T>> iterator = requests.iterator();
+        while (iterator.hasNext()) {
+            IconRequestInfo<T> request = iterator.next();
+            LauncherActivityInfo lai = request.launcherActivityInfo;
+            if (request.useLowResIcon || lai == null) {
+                continue;
+            }
+            ComponentKey key = new ComponentKey(lai.getComponentName(), request.itemInfo.user);
+            Entry entry = entries.get(key);
+            if (entry == null
+                    || !entry.sourceDir.equals(lai.getApplicationInfo().sourceDir)
+                    || !entry.systemState.equals(systemStates.computeIfAbsent(
+                            key.componentName.getPackageName(),
+                            mIconCache::getIconSystemState))) {
+                continue;
+            }
+            Bitmap icon = entry.createBitmap();
+            if (icon == null) {
+                continue;
+            }
+            T info = request.itemInfo;
+            info.title = entry.title;
+            info.contentDescription = entry.contentDescription;
+            info.bitmap = BitmapInfo.of(icon, entry.color)
+                    .withFlags(FlagOp.NO_OP.addFlag(entry.flags));
+            loaded++;
+            iterator.remove();
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes the icons of {@code items} to the atlas, unless the atlas already contains valid
+     * icons for exactly these items.
+     */
+    @WorkerThread
+    public void write(@NonNull List<? extends ItemInfo> items) {
+        if (Themes.isThemedIconEnabled(mContext)) {
+            delete();
+            return;
+        }
+        UserHandle myUser = Process.myUserHandle();
+        Map<ComponentKey, WorkspaceItemInfo> icons = new HashMap<>();
+        for (ItemInfo item : items) {
+            if (item instanceof WorkspaceItemInfo
+                    && item.itemType == Favorites.ITEM_TYPE_APPLICATION
+                    && myUser.equals(item.user)
+                    && item.getTargetComponent() != null) {
+                WorkspaceItemInfo info = (WorkspaceItemInfo) item;
+                if (!info.isPromise() && info.bitmap != null && !info.bitmap.isNullOrLowRes()
+                        && !mIconCache.isDefaultIcon(info.bitmap, info.user)) {
+                    icons.put(new ComponentKey(info.getTargetComponent(), info.user), info);
+                }
+            }
+        }
+
+        PackageManager pm = mContext.getPackageManager();
+        Map<String, String> sourceDirs = new ArrayMap<>();
+        Map<String, String> systemStates = new ArrayMap<>();
+        for (ComponentKey key : icons.keySet()) {
+            String packageName = key.componentName.getPackageName();
+            try {
+                sourceDirs.put(packageName, pm.getApplicationInfo(packageName, 0).sourceDir);
+                systemStates.put(packageName, mIconCache.getIconSystemState(packageName));
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.d(TAG, "Unable to add " + key + " to the icon atlas");
+                delete();
+                return;
+            }
+        }
+        if (containsExactly(icons.keySet(), sourceDirs, systemStates)) {
+            return;
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        ByteArrayOutputStream pixels = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(index)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mIconBitmapSize);
+            out.writeInt(icons.size());
+            for (Map.Entry<ComponentKey, WorkspaceItemInfo> icon : icons.entrySet()) {
+                String packageName = icon.getKey().componentName.getPackageName();
+                WorkspaceItemInfo info = icon.getValue();
+                byte[] iconPixels = getPixels(info.bitmap.icon);
+                if (iconPixels == null) {
+                    Log.d(TAG, "Unable to add " + icon.getKey() + " to the icon atlas");
+                    delete();
+                    return;
+                }
+                writeString(out, icon.getKey().componentName.flattenToString());
+                writeString(out, systemStates.get(packageName));
+                writeString(out, sourceDirs.get(packageName));
+                writeString(out, Objects.toString(info.title, ""));
+                writeString(out, Objects.toString(info.contentDescription, ""));
+                out.writeInt(info.bitmap.color);
+                out.writeInt(info.bitmap.flags);
+                out.writeInt(info.bitmap.icon.getWidth());
+                out.writeInt(info.bitmap.icon.getHeight());
+                out.writeInt(pixels.size());
+                pixels.write(iconPixels);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to serialize icon atlas", e);
+            return;
+        }
+
+        AtomicFile atomicFile = new AtomicFile(mFile);
+        FileOutputStream fos = null;
+        try {
+            fos = atomicFile.startWrite();
+            index.writeTo(fos);
+            pixels.writeTo(fos);
+            atomicFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write icon atlas", e);
+            if (fos != null) {
+                atomicFile.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * Deletes the atlas, so that no icon is loaded from it until it is written again
+     */
+    public void delete() {
+        new AtomicFile(mFile).delete();
+    }
+
+    private boolean containsExactly(Set<ComponentKey> keys, Map<String, String> sourceDirs,
+            Map<String, String> systemStates) {
+        Map<ComponentKey, Entry> entries = readEntries();
+        if (entries == null || !entries.keySet().equals(keys)) {
+            return false;
+        }
+        for (Map.Entry<ComponentKey, Entry> e : entries.entrySet()) {
+            String packageName = e.getKey().componentName.getPackageName();
+            if (!e.getValue().sourceDir.equals(sourceDirs.get(packageName))
+                    || !e.getValue().systemState.equals(systemStates.get(packageName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private Map<ComponentKey, Entry> readEntries() {
+        try (FileInputStream fis = new AtomicFile(mFile).openRead();
+                FileChannel channel = fis.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != mIconBitmapSize) {
+                return null;
+            }
+            int count = buffer.getInt();
+            Map<ComponentKey, Entry> entries = new HashMap<>(count);
+            UserHandle myUser = Process.myUserHandle();
+            for (int i = 0; i < count; i++) {
+                ComponentName cn = ComponentName.unflattenFromString(readString(buffer));
+                Entry entry = new Entry(buffer);
+                if (cn != null) {
+                    entries.put(new ComponentKey(cn, myUser), entry);
+                }
+            }
+            int pixelsStart = buffer.position();
+            for (Entry entry : entries.values()) {
+                entry.setPixels(buffer, pixelsStart);
+            }
+            return entries;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.e(TAG, "Unable to read icon atlas", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static byte[] getPixels(@Nullable Bitmap bitmap) {
+        if (bitmap == null) {
+            return null;
+        }
+        // Hardware bitmaps can't be read directly
+        Bitmap software = bitmap.getConfig() == Bitmap.Config.ARGB_8888
+                ? bitmap : bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        if (software == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(software.getByteCount());
+        software.copyPixelsToBuffer(buffer);
+        return buffer.array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+
+        final String systemState;
+        final String sourceDir;
+        final String title;
+        final String contentDescription;
+        final int color;
+        final int flags;
+        final int width;
+        final int height;
+        final int pixelsOffset;
+
+        private ByteBuffer mPixels;
+
+        Entry(ByteBuffer buffer) {
+            systemState = readString(buffer);
+            sourceDir = readString(buffer);
+            title = readString(buffer);
+            contentDescription = readString(buffer);
+            color = buffer.getInt();
+            flags = buffer.getInt();
+            width = buffer.getInt();
+            height = buffer.getInt();
+            pixelsOffset = buffer.getInt();
+        }
+
+        void setPixels(ByteBuffer buffer, int pixelsStart) {
+            int start = pixelsStart + pixelsOffset;
+            int length = width * height * 4;
+            if (width <= 0 || height <= 0 || start + length > buffer.limit()) {
+                throw new IllegalArgumentException("Invalid icon bounds");
+            }
+            mPixels = buffer.duplicate();
+            mPixels.position(start);
+            mPixels.limit(start + length);
+        }
+
+        @Nullable
+        Bitmap createBitmap() {
+            try {
+                Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                bitmap.copyPixelsFromBuffer(mPixels.duplicate());
+                return bitmap;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to copy icon pixels", e);
+                return null;
+            }
+        }
+    }
+}
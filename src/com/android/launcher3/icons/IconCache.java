@@ -16,7 +16,13 @@
 
 package com.android.launcher3.icons;
 
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_CONCURRENT_ICON_CACHE;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ICON_DEDUPLICATION;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ICON_MEMORY_BUDGET;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PARALLEL_ICON_LOADING;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
@@ -63,22 +69,41 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.Executors.SimpleThreadFactory;
 import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.launcher3.widget.WidgetSections.WidgetSection;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
  * Cache of application icons.  Icons can be made from any thread.
+ *
+ * Entries loaded for activities and packages are also published to concurrent maps, so that
+ * lookups of icons already in memory don't wait on the cache lock while a bulk load or an icon
+ * update holds it. Published entries are copies, and are only added or removed while holding the
+ * lock.
+ *
+ * The in-memory entries of activities and packages are tracked by an {@link IconMemoryBudget},
+ * which downgrades and evicts the least recently used ones to keep the cache within a byte budget.
  */
 public class IconCache extends BaseIconCache {
 
@@ -89,6 +114,25 @@ public class IconCache extends BaseIconCache {
 
     private static final String TAG = "Launcher.IconCache";
 
+    // Minimum number of fallback icons for which rendering in parallel is worth it
+    private static final int MIN_PARALLEL_FALLBACK_ICONS = 4;
+
+    private static final int ICON_LOADER_POOL_SIZE =
+            Math.max(Math.min(Runtime.getRuntime().availableProcessors() - 1, 3), 1);
+
+    /**
+     * Bounded pool helping the thread of a bulk icon load to render the icons missing from the
+     * icon database
+     */
+    private static final ThreadPoolExecutor ICON_LOADER_EXECUTOR = new ThreadPoolExecutor(
+            ICON_LOADER_POOL_SIZE, ICON_LOADER_POOL_SIZE, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new SimpleThreadFactory("launcher-icon-loader-", THREAD_PRIORITY_BACKGROUND));
+
+    static {
+        ICON_LOADER_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private final Predicate<ItemInfoWithIcon> mIsUsingFallbackOrNonDefaultIconCheck = w ->
             w.bitmap != null && (w.bitmap.isNullOrLowRes() || !isDefaultIcon(w.bitmap, w.user));
 
@@ -106,18 +150,31 @@ public class IconCache extends BaseIconCache {
 
     private int mPendingIconRequestCount = 0;
 
+    private final Map<ComponentKey, PublishedEntry> mPublishedEntries =
+            new ConcurrentHashMap<>();
+    private final Map<PackageUserKey, PublishedEntry> mPublishedPackageEntries =
+            new ConcurrentHashMap<>();
+
+    private final IconMemoryBudget mMemoryBudget;
+    private final IconInterner mIconInterner = new IconInterner();
+    // Icons to compare with identical icons once the lock is released, guarded by this
+    private final Map<ComponentKey, PendingShare> mPendingShares = new HashMap<>();
+    private final IconCacheStats mStats = new IconCacheStats();
+
     public IconCache(Context context, InvariantDeviceProfile idp, String dbFileName,
             IconProvider iconProvider) {
         super(context, dbFileName, MODEL_EXECUTOR.getLooper(),
                 idp.fillResIconDpi, idp.iconBitmapSize, true /* inMemoryCache */);
         mComponentWithLabelCachingLogic = new ComponentCachingLogic(context, false);
         mLauncherActivityInfoCachingLogic = LauncherActivityCachingLogic.newInstance(context);
+        mLauncherActivityInfoCachingLogic.setStats(mStats);
         mShortcutCachingLogic = new ShortcutCachingLogic();
         mLauncherApps = mContext.getSystemService(LauncherApps.class);
         mUserManager = UserCache.INSTANCE.get(mContext);
         mInstantAppResolver = InstantAppResolver.newInstance(mContext);
         mIconProvider = iconProvider;
         mWidgetCategoryBitmapInfos = new SparseArray<>();
+        mMemoryBudget = IconMemoryBudget.create(mContext, this::onBudgetEntryRemovedLocked);
 
         mCancelledRunnable = new HandlerRunnable(
                 mWorkerHandler, () -> null, MAIN_EXECUTOR, c -> { });
@@ -126,6 +183,8 @@ public class IconCache extends BaseIconCache {
 
     @Override
     protected long getSerialNumberForUser(@NonNull UserHandle user) {
+        // The icon database is only queried for a user after looking up its serial number
+        mStats.onDatabaseQuery();
         return mUserManager.getSerialNumberForUser(user);
     }
 
@@ -159,6 +218,218 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    @Override
+    public synchronized void removeIconsForPkg(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        super.removeIconsForPkg(packageName, user);
+        unpublishPackageLocked(packageName, user);
+        mMemoryBudget.removePackage(packageName, user);
+        mPendingShares.keySet().removeIf(key -> key.user.equals(user)
+                && key.componentName.getPackageName().equals(packageName));
+        mIconInterner.releasePackage(packageName, user);
+    }
+
+    @Override
+    public synchronized void remove(ComponentName componentName, UserHandle user) {
+        super.remove(componentName, user);
+        ComponentKey key = new ComponentKey(componentName, user);
+        mPublishedEntries.remove(key);
+        mMemoryBudget.remove(key);
+        mPendingShares.remove(key);
+        mIconInterner.release(key);
+    }
+
+    @Override
+    public synchronized <T> void addIconToDBAndMemCache(T object, CachingLogic<T> cachingLogic,
+            PackageInfo info, long userSerial, boolean replaceExisting) {
+        super.addIconToDBAndMemCache(object, cachingLogic, info, userSerial, replaceExisting);
+        ComponentKey key =
+                new ComponentKey(cachingLogic.getComponent(object), cachingLogic.getUser(object));
+        mPublishedEntries.remove(key);
+        mPendingShares.remove(key);
+        mIconInterner.release(key);
+    }
+
+    @Override
+    public synchronized void updateIconParams(int iconDpi, int iconPixelSize) {
+        super.updateIconParams(iconDpi, iconPixelSize);
+        // The in-memory cache is cleared later on the worker thread, so the published entries
+        // are cleared again after that.
+        unpublishAll();
+        mWorkerHandler.post(this::unpublishAll);
+    }
+
+    private synchronized void unpublishAll() {
+        mPublishedEntries.clear();
+        mPublishedPackageEntries.clear();
+        mMemoryBudget.clear();
+        mPendingShares.clear();
+        mIconInterner.clear();
+    }
+
+    /**
+     * Downgrades or evicts in-memory icons depending on the trim memory {@param level}
+     */
+    public void onTrimMemory(int level) {
+        if (ENABLE_ICON_MEMORY_BUDGET.get()) {
+            mWorkerHandler.post(() -> {
+                synchronized (IconCache.this) {
+                    mMemoryBudget.onTrimMemory(level);
+                }
+            });
+        }
+    }
+
+    /**
+     * Shares the icon of the in-memory {@param entry} for {@param key} with identical icons, and
+     * tracks the entry in the memory budget. This needs to be called before publishing the entry.
+     *
+     * @return the entry tracked by the memory budget, if it is enabled
+     */
+    @Nullable
+    private IconMemoryBudget.TrackedEntry onEntryUsedLocked(@NonNull ComponentKey key,
+            @NonNull CacheEntry entry) {
+        // Shared icons don't keep the monochrome icon used for themed icons
+        if (ENABLE_ICON_DEDUPLICATION.get() && entry.bitmap != null
+                && !isDefaultIcon(entry.bitmap, key.user)
+                && !LauncherIcons.isMonoIconEnabled(mContext)) {
+            IconInterner.PendingIcon pending = mIconInterner.prepare(key, entry.bitmap);
+            if (pending != null) {
+                mPendingShares.put(key, new PendingShare(pending, entry));
+            }
+        }
+        return ENABLE_ICON_MEMORY_BUDGET.get() ? mMemoryBudget.onEntryUsed(key, entry) : null;
+    }
+
+    /**
+     * Shares the icons queued by {@link #onEntryUsedLocked} with identical icons. The pixels are
+     * compared without the cache lock, and entries which changed in the meantime are skipped.
+     * This needs to be called after releasing the lock, before applying the entries.
+     */
+    private void sharePendingIcons() {
+        if (!ENABLE_ICON_DEDUPLICATION.get()) {
+            return;
+        }
+        List<PendingShare> shares = new ArrayList<>();
+        synchronized (this) {
+            for (PendingShare share : mPendingShares.values()) {
+                if (!share.taken) {
+                    share.taken = true;
+                    shares.add(share);
+                }
+            }
+        }
+        if (shares.isEmpty()) {
+            return;
+        }
+        shares.forEach(share -> share.icon.compare());
+
+        synchronized (this) {
+            for (PendingShare share : shares) {
+                ComponentKey key = share.icon.owner;
+                if (mPendingShares.get(key) != share || share.entry.bitmap != share.icon.info) {
+                    continue;
+                }
+                mPendingShares.remove(key);
+                BitmapInfo shared = mIconInterner.finish(share.icon);
+                if (shared == share.entry.bitmap) {
+                    continue;
+                }
+                share.entry.bitmap = shared;
+                PublishedEntry published = getPublishedEntryLocked(key);
+                if (published != null && published.bitmap == share.icon.info) {
+                    published.bitmap = shared;
+                }
+                mMemoryBudget.onEntryIconChanged(key);
+            }
+        }
+    }
+
+    @Nullable
+    private PublishedEntry getPublishedEntryLocked(@NonNull ComponentKey key) {
+        String packageName = key.componentName.getPackageName();
+        return key.componentName.getClassName().equals(packageName + EMPTY_CLASS_NAME)
+                ? mPublishedPackageEntries.get(new PackageUserKey(packageName, key.user))
+                : mPublishedEntries.get(key);
+    }
+
+    /**
+     * Returns true if {@link #onEntryUsedLocked} needs to be called for new in-memory entries
+     */
+    private static boolean isTrackingEntryUses() {
+        return ENABLE_ICON_DEDUPLICATION.get() || ENABLE_ICON_MEMORY_BUDGET.get();
+    }
+
+    /**
+     * Records the use of a published entry in the memory budget, without the cache lock
+     */
+    private void onPublishedEntryHit(@NonNull PublishedEntry entry) {
+        if (entry.tracked != null) {
+            mMemoryBudget.onEntryHit(entry.tracked);
+        }
+    }
+
+    private void onBudgetEntryRemovedLocked(@NonNull ComponentKey key, boolean evicted) {
+        String packageName = key.componentName.getPackageName();
+        if (key.componentName.getClassName().equals(packageName + EMPTY_CLASS_NAME)) {
+            mPublishedPackageEntries.remove(new PackageUserKey(packageName, key.user));
+        } else {
+            mPublishedEntries.remove(key);
+        }
+        mPendingShares.remove(key);
+        mIconInterner.release(key);
+        if (evicted) {
+            super.remove(key.componentName, key.user);
+        }
+    }
+
+    /**
+     * Returns the key of the in-memory entry for the icon and label of {@param packageName}
+     */
+    private static ComponentKey getPackageEntryKey(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        return new ComponentKey(new ComponentName(packageName, packageName + EMPTY_CLASS_NAME),
+                user);
+    }
+
+    private void unpublishPackageLocked(@NonNull String packageName, @NonNull UserHandle user) {
+        mPublishedPackageEntries.remove(new PackageUserKey(packageName, user));
+        // Activity entries can also use the package icon and label
+        mPublishedEntries.keySet().removeIf(key -> key.user.equals(user)
+                && key.componentName.getPackageName().equals(packageName));
+    }
+
+    /**
+     * Returns the published entry for {@param key}, if it can be used for the requested icon
+     * resolution
+     */
+    @Nullable
+    private static <K> PublishedEntry getPublishedEntry(
+            @NonNull Map<K, PublishedEntry> entries, @NonNull K key, boolean useLowResIcon) {
+        if (!ENABLE_CONCURRENT_ICON_CACHE.get()) {
+            return null;
+        }
+        PublishedEntry entry = entries.get(key);
+        return entry != null && (useLowResIcon || !entry.bitmap.isNullOrLowRes()) ? entry : null;
+    }
+
+    /**
+     * Publishes a copy of the in-memory {@param entry}, which can be updated in place later on.
+     * Uses of the copy are recorded for the entry {@param tracked} by the memory budget.
+     */
+    private static <K> void publishLocked(@NonNull Map<K, PublishedEntry> entries,
+            @NonNull K key, @NonNull CacheEntry entry,
+            @Nullable IconMemoryBudget.TrackedEntry tracked) {
+        if (!ENABLE_CONCURRENT_ICON_CACHE.get() || entry.bitmap == null) {
+            return;
+        }
+        PublishedEntry copy = new PublishedEntry(tracked);
+        copy.bitmap = entry.bitmap;
+        copy.title = entry.title;
+        copy.contentDescription = entry.contentDescription;
+        entries.put(key, copy);
+    }
+
     /**
      * Closes the cache DB. This will clear any in-memory cache.
      */
@@ -215,10 +486,23 @@ public class IconCache extends BaseIconCache {
     /**
      * Updates {@param application} only if a valid entry is found.
      */
-    public synchronized void updateTitleAndIcon(AppInfo application) {
-        CacheEntry entry = cacheLocked(application.componentName,
-                application.user, () -> null, mLauncherActivityInfoCachingLogic,
-                false, application.usingLowResIcon());
+    public void updateTitleAndIcon(AppInfo application) {
+        CacheEntry entry;
+        synchronized (this) {
+            long start = mStats.beginLookup();
+            try {
+                entry = cacheLocked(application.componentName,
+                        application.user, () -> null, mLauncherActivityInfoCachingLogic,
+                        false, application.usingLowResIcon());
+                if (isTrackingEntryUses()) {
+                    onEntryUsedLocked(new ComponentKey(application.componentName, application.user),
+                            entry);
+                }
+            } finally {
+                mStats.endLookup(start);
+            }
+        }
+        sharePendingIcons();
         if (entry.bitmap != null && !isDefaultIcon(entry.bitmap, application.user)) {
             applyCacheEntry(entry, application);
         }
@@ -227,7 +511,7 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param info} with the icon and label for {@param activityInfo}
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info,
+    public void getTitleAndIcon(ItemInfoWithIcon info,
             LauncherActivityInfo activityInfo, boolean useLowResIcon) {
         // If we already have activity info, no need to use package icon
         getTitleAndIcon(info, () -> activityInfo, false, useLowResIcon);
@@ -299,7 +583,7 @@ public class IconCache extends BaseIconCache {
      * Fill in {@param info} with the icon and label. If the
      * corresponding activity is not found, it reverts to the package icon.
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
+    public void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
         // null info means not installed, but if we have a component from the intent then
         // we should still look in the cache for restored app icons.
         if (info.getTargetComponent() == null) {
@@ -323,13 +607,60 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param mWorkspaceItemInfo} with the icon and label for {@param info}
      */
-    public synchronized void getTitleAndIcon(
+    public void getTitleAndIcon(
             @NonNull ItemInfoWithIcon infoInOut,
             @NonNull Supplier<LauncherActivityInfo> activityInfoProvider,
             boolean usePkgIcon, boolean useLowResIcon) {
-        CacheEntry entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
-                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
-                useLowResIcon);
+        if (!ENABLE_CONCURRENT_ICON_CACHE.get()) {
+            CacheEntry entry;
+            synchronized (this) {
+                long start = mStats.beginLookup();
+                try {
+                    entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
+                            activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
+                            useLowResIcon);
+                    if (isTrackingEntryUses()) {
+                        onEntryUsedLocked(
+                                new ComponentKey(infoInOut.getTargetComponent(), infoInOut.user),
+                                entry);
+                    }
+                } finally {
+                    mStats.endLookup(start);
+                }
+            }
+            sharePendingIcons();
+            applyCacheEntry(entry, infoInOut);
+            return;
+        }
+        long start = mStats.getStartTime();
+        ComponentKey key = new ComponentKey(infoInOut.getTargetComponent(), infoInOut.user);
+        PublishedEntry published = getPublishedEntry(mPublishedEntries, key, useLowResIcon);
+        CacheEntry entry = published;
+        if (published == null) {
+            synchronized (this) {
+                // Another caller may have loaded the entry while this one waited for the lock
+                published = getPublishedEntry(mPublishedEntries, key, useLowResIcon);
+                if (published == null) {
+                    start = mStats.beginLookup();
+                    try {
+                        entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
+                                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
+                                useLowResIcon);
+                        publishLocked(mPublishedEntries, key, entry, onEntryUsedLocked(key, entry));
+                    } finally {
+                        mStats.endLookup(start);
+                    }
+                } else {
+                    entry = published;
+                    onPublishedEntryHit(published);
+                    mStats.recordMemoryHit(start);
+                }
+            }
+            sharePendingIcons();
+        } else {
+            onPublishedEntryHit(published);
+            mStats.recordMemoryHit(start);
+        }
         applyCacheEntry(entry, infoInOut);
     }
 
@@ -364,7 +695,19 @@ public class IconCache extends BaseIconCache {
     /**
      * Load and fill icons requested in iconRequestInfos using a single bulk sql query.
      */
-    public synchronized <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+    public <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+            List<IconRequestInfo<T>> iconRequestInfos) {
+        if (ENABLE_CONCURRENT_ICON_CACHE.get()) {
+            // The lock is only held while each item is loaded, see loadIconSubsection
+            loadTitlesAndIconsInBulk(iconRequestInfos);
+        } else {
+            synchronized (this) {
+                loadTitlesAndIconsInBulk(iconRequestInfos);
+            }
+        }
+    }
+
+    private <T extends ItemInfoWithIcon> void loadTitlesAndIconsInBulk(
             List<IconRequestInfo<T>> iconRequestInfos) {
         Map<Pair<UserHandle, Boolean>, List<IconRequestInfo<T>>> iconLoadSubsectionsMap =
                 iconRequestInfos.stream()
@@ -425,15 +768,29 @@ public class IconCache extends BaseIconCache {
                         duplicateIconRequestsMap.get(cn);
 
                 if (cn != null) {
-                    CacheEntry entry = cacheLocked(
-                            cn,
-                            /* user = */ sectionKey.first,
-                            () -> duplicateIconRequests.get(0).launcherActivityInfo,
-                            mLauncherActivityInfoCachingLogic,
-                            c,
-                            /* usePackageIcon= */ false,
-                            /* useLowResIcons = */ sectionKey.second);
-
+                    CacheEntry entry;
+                    synchronized (this) {
+                        long start = mStats.beginLookup();
+                        try {
+                            mStats.onDatabaseQuery();
+                            entry = cacheLocked(
+                                    cn,
+                                    /* user = */ sectionKey.first,
+                                    () -> duplicateIconRequests.get(0).launcherActivityInfo,
+                                    mLauncherActivityInfoCachingLogic,
+                                    c,
+                                    /* usePackageIcon= */ false,
+                                    /* useLowResIcons = */ sectionKey.second);
+                            if (ENABLE_CONCURRENT_ICON_CACHE.get() || isTrackingEntryUses()) {
+                                ComponentKey key = new ComponentKey(cn, sectionKey.first);
+                                publishLocked(mPublishedEntries, key, entry,
+                                        onEntryUsedLocked(key, entry));
+                            }
+                        } finally {
+                            mStats.endLookup(start);
+                        }
+                    }
+                    sharePendingIcons();
                     for (IconRequestInfo<T> iconRequest : duplicateIconRequests) {
                         applyCacheEntry(entry, iconRequest.itemInfo);
                     }
@@ -447,46 +804,64 @@ public class IconCache extends BaseIconCache {
 
         Trace.beginSection("loadIconSubsectionWithFallback");
         // Fallback title and icon loading
+        List<ComponentName> fallbackComponents = new ArrayList<>();
         for (ComponentName cn : duplicateIconRequestsMap.keySet()) {
+            ItemInfoWithIcon itemInfo = duplicateIconRequestsMap.get(cn).get(0).itemInfo;
+            if (TextUtils.isEmpty(itemInfo.title) || needsFallbackIcon(itemInfo)) {
+                fallbackComponents.add(cn);
+            }
+        }
+        BitmapInfo[] renderedIcons = ENABLE_PARALLEL_ICON_LOADING.get()
+                ? renderFallbackIconsInParallel(fallbackComponents, duplicateIconRequestsMap)
+                : null;
+
+        for (int i = 0; i < fallbackComponents.size(); i++) {
+            ComponentName cn = fallbackComponents.get(i);
             IconRequestInfo<T> iconRequestInfo = duplicateIconRequestsMap.get(cn).get(0);
             ItemInfoWithIcon itemInfo = iconRequestInfo.itemInfo;
             BitmapInfo icon = itemInfo.bitmap;
             boolean loadFallbackTitle = TextUtils.isEmpty(itemInfo.title);
-            boolean loadFallbackIcon = icon == null
-                    || isDefaultIcon(icon, itemInfo.user)
-                    || icon == BitmapInfo.LOW_RES_INFO;
-
-            if (loadFallbackTitle || loadFallbackIcon) {
-                Log.i(TAG,
-                        "Database bulk icon loading failed, using fallback bulk icon loading "
-                                + "for: " + cn);
+            boolean loadFallbackIcon = needsFallbackIcon(itemInfo);
+
+            Log.i(TAG,
+                    "Database bulk icon loading failed, using fallback bulk icon loading "
+                            + "for: " + cn);
+            synchronized (this) {
+                long start = mStats.beginLookup();
                 CacheEntry entry = new CacheEntry();
-                LauncherActivityInfo lai = iconRequestInfo.launcherActivityInfo;
+                try {
+                    LauncherActivityInfo lai = iconRequestInfo.launcherActivityInfo;
 
-                // Fill fields that are not updated below so they are not subsequently
-                // deleted.
-                entry.title = itemInfo.title;
-                if (icon != null) {
-                    entry.bitmap = icon;
-                }
-                entry.contentDescription = itemInfo.contentDescription;
-
-                if (loadFallbackIcon) {
-                    loadFallbackIcon(
-                            lai,
-                            entry,
-                            mLauncherActivityInfoCachingLogic,
-                            /* usePackageIcon= */ false,
-                            /* usePackageTitle= */ loadFallbackTitle,
-                            cn,
-                            sectionKey.first);
-                }
-                if (loadFallbackTitle && TextUtils.isEmpty(entry.title) && lai != null) {
-                    loadFallbackTitle(
-                            lai,
-                            entry,
-                            mLauncherActivityInfoCachingLogic,
-                            sectionKey.first);
+                    // Fill fields that are not updated below so they are not subsequently
+                    // deleted.
+                    entry.title = itemInfo.title;
+                    if (icon != null) {
+                        entry.bitmap = icon;
+                    }
+                    entry.contentDescription = itemInfo.contentDescription;
+
+                    if (loadFallbackIcon && renderedIcons != null && renderedIcons[i] != null) {
+                        entry.bitmap = renderedIcons[i];
+                        mStats.onIconGenerated();
+                    } else if (loadFallbackIcon) {
+                        loadFallbackIcon(
+                                lai,
+                                entry,
+                                mLauncherActivityInfoCachingLogic,
+                                /* usePackageIcon= */ false,
+                                /* usePackageTitle= */ loadFallbackTitle,
+                                cn,
+                                sectionKey.first);
+                    }
+                    if (loadFallbackTitle && TextUtils.isEmpty(entry.title) && lai != null) {
+                        loadFallbackTitle(
+                                lai,
+                                entry,
+                                mLauncherActivityInfoCachingLogic,
+                                sectionKey.first);
+                    }
+                } finally {
+                    mStats.endLookup(start);
                 }
 
                 for (IconRequestInfo<T> iconRequest : duplicateIconRequestsMap.get(cn)) {
@@ -497,18 +872,138 @@ public class IconCache extends BaseIconCache {
         Trace.endSection();
     }
 
+    private boolean needsFallbackIcon(@NonNull ItemInfoWithIcon itemInfo) {
+        BitmapInfo icon = itemInfo.bitmap;
+        return icon == null
+                || isDefaultIcon(icon, itemInfo.user)
+                || icon == BitmapInfo.LOW_RES_INFO;
+    }
+
+    /**
+     * Renders the fallback icons of the {@param components} which have an activity info on a
+     * bounded pool, with the calling thread also rendering icons. Returns the icons in the same
+     * order as {@param components}, with null for the ones left to the serial fallback, or null
+     * if there are too few icons to render.
+     */
+    @Nullable
+    private <T extends ItemInfoWithIcon> BitmapInfo[] renderFallbackIconsInParallel(
+            List<ComponentName> components,
+            Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap) {
+        LauncherActivityInfo[] activities = new LauncherActivityInfo[components.size()];
+        int count = 0;
+        for (int i = 0; i < activities.length; i++) {
+            IconRequestInfo<T> request = duplicateIconRequestsMap.get(components.get(i)).get(0);
+            if (needsFallbackIcon(request.itemInfo) && request.launcherActivityInfo != null) {
+                activities[i] = request.launcherActivityInfo;
+                count++;
+            }
+        }
+        if (count < MIN_PARALLEL_FALLBACK_ICONS) {
+            return null;
+        }
+
+        Trace.beginSection("renderFallbackIconsInParallel");
+        BitmapInfo[] icons = new BitmapInfo[activities.length];
+        AtomicInteger nextIndex = new AtomicInteger();
+        CountDownLatch rendered = new CountDownLatch(activities.length);
+        // Helpers which start after all icons were claimed return right away, so waiting for the
+        // claimed icons can't deadlock even if the pool is busy
+        Runnable renderer = () -> {
+            int i;
+            while ((i = nextIndex.getAndIncrement()) < activities.length) {
+                try {
+                    if (activities[i] != null) {
+                        icons[i] = mLauncherActivityInfoCachingLogic.loadIcon(
+                                mContext, activities[i]);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to render icon for " + components.get(i), e);
+                } finally {
+                    rendered.countDown();
+                }
+            }
+        };
+        for (int i = Math.min(ICON_LOADER_POOL_SIZE, count - 1); i > 0; i--) {
+            ICON_LOADER_EXECUTOR.execute(renderer);
+        }
+        renderer.run();
+        try {
+            rendered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            Trace.endSection();
+        }
+        return icons;
+    }
+
     /**
      * Fill in {@param infoInOut} with the corresponding icon and label.
      */
-    public synchronized void getTitleAndIconForApp(
+    public void getTitleAndIconForApp(
             @NonNull final PackageItemInfo infoInOut, final boolean useLowResIcon) {
-        CacheEntry entry = getEntryForPackageLocked(
-                infoInOut.packageName, infoInOut.user, useLowResIcon);
-        applyCacheEntry(entry, infoInOut);
+        if (!ENABLE_CONCURRENT_ICON_CACHE.get()) {
+            CacheEntry entry;
+            synchronized (this) {
+                long start = mStats.beginLookup();
+                try {
+                    entry = getEntryForPackageLocked(
+                            infoInOut.packageName, infoInOut.user, useLowResIcon);
+                    if (isTrackingEntryUses()) {
+                        onEntryUsedLocked(
+                                getPackageEntryKey(infoInOut.packageName, infoInOut.user), entry);
+                    }
+                } finally {
+                    mStats.endLookup(start);
+                }
+            }
+            sharePendingIcons();
+            applyCacheEntry(entry, infoInOut);
+        } else {
+            getTitleAndIconForAppConcurrently(infoInOut, useLowResIcon);
+        }
         if (infoInOut.widgetCategory == NO_CATEGORY) {
             return;
         }
+        applyWidgetCategory(infoInOut);
+    }
+
+    private void getTitleAndIconForAppConcurrently(
+            @NonNull final PackageItemInfo infoInOut, final boolean useLowResIcon) {
+        long start = mStats.getStartTime();
+        PackageUserKey key = new PackageUserKey(infoInOut.packageName, infoInOut.user);
+        PublishedEntry published =
+                getPublishedEntry(mPublishedPackageEntries, key, useLowResIcon);
+        CacheEntry entry = published;
+        if (published == null) {
+            synchronized (this) {
+                published = getPublishedEntry(mPublishedPackageEntries, key, useLowResIcon);
+                if (published == null) {
+                    start = mStats.beginLookup();
+                    try {
+                        entry = getEntryForPackageLocked(
+                                infoInOut.packageName, infoInOut.user, useLowResIcon);
+                        publishLocked(mPublishedPackageEntries, key, entry, onEntryUsedLocked(
+                                getPackageEntryKey(infoInOut.packageName, infoInOut.user), entry));
+                    } finally {
+                        mStats.endLookup(start);
+                    }
+                } else {
+                    entry = published;
+                    onPublishedEntryHit(published);
+                    mStats.recordMemoryHit(start);
+                }
+            }
+            sharePendingIcons();
+        } else {
+            onPublishedEntryHit(published);
+            mStats.recordMemoryHit(start);
+        }
+        applyCacheEntry(entry, infoInOut);
+    }
 
+    private synchronized void applyWidgetCategory(@NonNull final PackageItemInfo infoInOut) {
         WidgetSection widgetSection = WidgetSections.getWidgetSections(mContext)
                 .get(infoInOut.widgetCategory);
         infoInOut.title = mContext.getString(widgetSection.mSectionTitle);
@@ -555,14 +1050,30 @@ public class IconCache extends BaseIconCache {
         return mIconProvider.getIcon(info, mIconDpi);
     }
 
-    public void updateSessionCache(PackageUserKey key, PackageInstaller.SessionInfo info) {
+    public synchronized void updateSessionCache(PackageUserKey key,
+            PackageInstaller.SessionInfo info) {
         cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
                 info.getAppLabel());
+        unpublishPackageLocked(key.mPackageName, key.mUser);
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        mMemoryBudget.dump(prefix, writer);
+        mIconInterner.dump(prefix, writer);
+        mStats.dump(prefix, writer);
+    }
+
+    /**
+     * Returns the stats of icon lookups, for tests and benchmarks
+     */
+    @VisibleForTesting
+    public IconCacheStats getStats() {
+        return mStats;
     }
 
     @Override
     @NonNull
-    protected String getIconSystemState(String packageName) {
+    public String getIconSystemState(String packageName) {
         return mIconProvider.getSystemStateForPackage(mSystemState, packageName);
     }
 
@@ -573,4 +1084,33 @@ public class IconCache extends BaseIconCache {
 
         void reapplyItemInfo(ItemInfoWithIcon info);
     }
+
+    /**
+     * Icon of an in-memory entry waiting to be shared with identical icons
+     */
+    private static class PendingShare {
+
+        final IconInterner.PendingIcon icon;
+        final CacheEntry entry;
+        // Whether a thread is already comparing the icon
+        boolean taken;
+
+        PendingShare(IconInterner.PendingIcon icon, CacheEntry entry) {
+            this.icon = icon;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Copy of an in-memory entry which can be read without the cache lock
+     */
+    private static class PublishedEntry extends CacheEntry {
+
+        @Nullable
+        final IconMemoryBudget.TrackedEntry tracked;
+
+        PublishedEntry(@Nullable IconMemoryBudget.TrackedEntry tracked) {
+            this.tracked = tracked;
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ICON_CACHE_STATS;
+
+import android.os.Trace;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.Utilities;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of icon cache lookups, by where the icon came from, and of the
+ * stages of creating a new icon.
+ *
+ * Lookups are recorded while holding the icon cache lock, except for lock-free memory hits. Stages
+ * can be recorded from any thread, and are attributed to the lookup running on the same thread.
+ * Recording doesn't allocate.
+ */
+public class IconCacheStats {
+
+    /** Lookup served by an entry already in memory */
+    public static final int SOURCE_MEMORY = 0;
+    /** Lookup which loaded the entry from the icon database */
+    public static final int SOURCE_DATABASE = 1;
+    /** Lookup which created a new icon */
+    public static final int SOURCE_GENERATED = 2;
+    /** Stage loading the icon drawable from the package manager */
+    public static final int STAGE_PACKAGE_MANAGER = 3;
+    /** Stage creating the icon bitmap, including shape normalization, shadow and badge */
+    public static final int STAGE_BITMAP = 4;
+
+    private static final String[] NAMES =
+            {"memory", "database", "generated", "packageManager", "bitmap"};
+    private static final String[] COUNTER_NAMES = {"IconCache.memoryHits",
+            "IconCache.databaseHits", "IconCache.generated", null, null};
+
+    // Bucket i holds latencies below 2^i microseconds, and the last one all longer latencies
+    private static final int BUCKET_COUNT = 16;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(NAMES.length);
+    private final AtomicLongArray mTotalNanos = new AtomicLongArray(NAMES.length);
+    private final AtomicLongArray mHistograms = new AtomicLongArray(NAMES.length * BUCKET_COUNT);
+
+    // Lookup in progress, guarded by the icon cache lock
+    private volatile Thread mLookupThread;
+    private boolean mLookupQueriedDatabase;
+    private boolean mLookupGeneratedIcon;
+
+    /**
+     * Records a lock-free memory hit which started at {@param startNanos}
+     */
+    public void recordMemoryHit(long startNanos) {
+        if (ENABLE_ICON_CACHE_STATS.get()) {
+            record(SOURCE_MEMORY, startNanos);
+        }
+    }
+
+    /**
+     * Starts a lookup on the calling thread, which must hold the icon cache lock. Returns the
+     * start time to pass to {@link #endLookup(long)}, which needs to be called in a finally block
+     * so the trace section and the lookup thread are cleared even if the lookup fails.
+     */
+    public long beginLookup() {
+        if (!ENABLE_ICON_CACHE_STATS.get()) {
+            return 0;
+        }
+        Trace.beginSection("IconCacheLookup");
+        mLookupQueriedDatabase = false;
+        mLookupGeneratedIcon = false;
+        mLookupThread = Thread.currentThread();
+        return System.nanoTime();
+    }
+
+    /**
+     * Notes that the lookup on the calling thread, if any, queried the icon database
+     */
+    public void onDatabaseQuery() {
+        if (mLookupThread == Thread.currentThread()) {
+            mLookupQueriedDatabase = true;
+        }
+    }
+
+    /**
+     * Notes that the lookup on the calling thread, if any, created a new icon
+     */
+    public void onIconGenerated() {
+        if (mLookupThread == Thread.currentThread()) {
+            mLookupGeneratedIcon = true;
+        }
+    }
+
+    /**
+     * Records the lookup started at {@param startNanos} by where its icon came from
+     */
+    public void endLookup(long startNanos) {
+        if (!ENABLE_ICON_CACHE_STATS.get() || mLookupThread == null) {
+            return;
+        }
+        mLookupThread = null;
+        int source = mLookupGeneratedIcon ? SOURCE_GENERATED
+                : mLookupQueriedDatabase ? SOURCE_DATABASE : SOURCE_MEMORY;
+        record(source, startNanos);
+        if (Utilities.ATLEAST_Q) {
+            Trace.setCounter(COUNTER_NAMES[source], mCounts.get(source));
+        }
+        Trace.endSection();
+    }
+
+    /**
+     * Returns the start time of a stage or memory hit when recording is enabled
+     */
+    public long getStartTime() {
+        return ENABLE_ICON_CACHE_STATS.get() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the {@param stage} started at {@param startNanos}
+     */
+    public void endStage(int stage, long startNanos) {
+        if (!ENABLE_ICON_CACHE_STATS.get()) {
+            return;
+        }
+        record(stage, startNanos);
+        if (stage == STAGE_BITMAP) {
+            onIconGenerated();
+        }
+    }
+
+    @VisibleForTesting
+    public long getCount(int source) {
+        return mCounts.get(source);
+    }
+
+    /**
+     * Clears all counters
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+            mTotalNanos.set(i, 0);
+        }
+        for (int i = 0; i < mHistograms.length(); i++) {
+            mHistograms.set(i, 0);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "IconCacheStats:");
+        for (int i = 0; i < NAMES.length; i++) {
+            long count = mCounts.get(i);
+            StringBuilder histogram = new StringBuilder();
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                long bucketCount = mHistograms.get(i * BUCKET_COUNT + bucket);
+                if (bucketCount > 0) {
+                    histogram.append(bucket == BUCKET_COUNT - 1 ? " >=" : " <")
+                            .append(1L << Math.min(bucket, BUCKET_COUNT - 2))
+                            .append("us:").append(bucketCount);
+                }
+            }
+            writer.println(prefix + "  " + NAMES[i] + ": count=" + count + " avg="
+                    + (count == 0 ? 0 : mTotalNanos.get(i) / count / 1000) + "us"
+                    + histogram);
+        }
+    }
+
+    private void record(int source, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mCounts.incrementAndGet(source);
+        mTotalNanos.addAndGet(source, nanos);
+        mHistograms.incrementAndGet(source * BUCKET_COUNT + bucket);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.FlagOp;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares a single bitmap between icons with identical pixels, like the activities of a package
+ * using the application icon, or the same app in the personal and work profiles.
+ *
+ * Icons are first grouped by size and extracted color, and their pixels are only hashed and
+ * compared when another icon of the same group exists. Each shared bitmap counts the owners
+ * using it, and is dropped once all its owners were released.
+ *
+ * This class is not thread safe, and is only used while holding the icon cache lock. The only
+ * exception is {@link PendingIcon#compare()}, which reads the pixels of the icons without any
+ * lock, so that they are not copied and hashed while the icon cache is blocked.
+ */
+public class IconInterner {
+
+    // Icons which only differ in flags, like work profile clones, are drawn from the same pixels
+    private final Map<Long, List<SharedIcon>> mSharedIcons = new HashMap<>();
+    private final Map<ComponentKey, SharedIcon> mOwners = new HashMap<>();
+
+    private long mSavedBytes;
+    private long mHashedIcons;
+
+    /**
+     * Returns an icon equivalent to {@param info} for {@param owner}, using the bitmap of an
+     * identical icon if one was already interned. Any icon previously interned for the owner is
+     * released.
+     */
+    @NonNull
+    public BitmapInfo intern(@NonNull ComponentKey owner, @NonNull BitmapInfo info) {
+        PendingIcon pending = prepare(owner, info);
+        if (pending == null) {
+            return info;
+        }
+        pending.compare();
+        return finish(pending);
+    }
+
+    /**
+     * Starts interning {@param info} for {@param owner}, releasing any icon previously interned
+     * for the owner. Returns null if the icon doesn't need to be compared with other icons, in
+     * which case {@param info} is already interned as is. Otherwise the returned icon needs to be
+     * compared using {@link PendingIcon#compare()}, and then interned using {@link #finish}.
+     */
+    @Nullable
+    public PendingIcon prepare(@NonNull ComponentKey owner, @NonNull BitmapInfo info) {
+        SharedIcon current = mOwners.get(owner);
+        if (current != null && current.icon == info.icon) {
+            return null;
+        }
+        release(owner);
+        // Subclasses, like clock icons, hold state which can't be shared
+        if (info.isNullOrLowRes() || info.getClass() != BitmapInfo.class) {
+            return null;
+        }
+
+        long group = getGroup(info);
+        List<SharedIcon> candidates = mSharedIcons.get(group);
+        if (candidates == null || candidates.isEmpty()) {
+            addOwner(owner, addSharedIcon(group, info.icon));
+            return null;
+        }
+        return new PendingIcon(owner, info, group, candidates);
+    }
+
+    /**
+     * Interns the icon of {@param pending} once it was compared, and returns the icon to use for
+     * its owner.
+     */
+    @NonNull
+    public BitmapInfo finish(@NonNull PendingIcon pending) {
+        for (Candidate candidate : pending.mCandidates) {
+            if (candidate.hashed && !candidate.icon.hashed) {
+                candidate.icon.hash = candidate.hash;
+                candidate.icon.hashed = true;
+                mHashedIcons++;
+            }
+        }
+        mHashedIcons++;
+
+        // The owner could have been interned again, and the match released, in the meantime
+        release(pending.owner);
+        SharedIcon match = pending.mMatch;
+        List<SharedIcon> icons = mSharedIcons.get(pending.group);
+        if (match == null || icons == null || !icons.contains(match)) {
+            match = addSharedIcon(pending.group, pending.info.icon);
+            match.hash = pending.mHash;
+            match.hashed = true;
+        } else {
+            mSavedBytes += match.bytes;
+        }
+        addOwner(pending.owner, match);
+        BitmapInfo info = pending.info;
+        return match.icon == info.icon ? info
+                : BitmapInfo.of(match.icon, info.color).withFlags(FlagOp.NO_OP.addFlag(info.flags));
+    }
+
+    /**
+     * Releases the icon interned for {@param owner}
+     */
+    public void release(@NonNull ComponentKey owner) {
+        SharedIcon shared = mOwners.remove(owner);
+        if (shared == null) {
+            return;
+        }
+        shared.owners--;
+        if (shared.owners > 0) {
+            mSavedBytes -= shared.bytes;
+            return;
+        }
+        Iterator<List<SharedIcon>> it = mSharedIcons.values().iterator();
+        while (it.hasNext()) {
+            List<SharedIcon> icons = it.next();
+            if (icons.remove(shared)) {
+                if (icons.isEmpty()) {
+                    it.remove();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases the icons interned for all the components of {@param packageName}
+     */
+    public void releasePackage(@NonNull String packageName, @NonNull UserHandle user) {
+        List<ComponentKey> owners = new ArrayList<>();
+        for (ComponentKey key : mOwners.keySet()) {
+            if (key.user.equals(user) && key.componentName.getPackageName().equals(packageName)) {
+                owners.add(key);
+            }
+        }
+        owners.forEach(this::release);
+    }
+
+    /**
+     * Releases all interned icons
+     */
+    public void clear() {
+        mSharedIcons.clear();
+        mOwners.clear();
+        mSavedBytes = 0;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int sharedIcons = 0;
+        for (List<SharedIcon> icons : mSharedIcons.values()) {
+            sharedIcons += icons.size();
+        }
+        writer.println(prefix + "IconInterner: owners=" + mOwners.size()
+                + " uniqueIcons=" + sharedIcons + " hashedIcons=" + mHashedIcons
+                + " savedBytes=" + mSavedBytes / 1024 + "KB");
+    }
+
+    @VisibleForTesting
+    long getSavedBytes() {
+        return mSavedBytes;
+    }
+
+    private SharedIcon addSharedIcon(long group, @NonNull Bitmap icon) {
+        SharedIcon shared = new SharedIcon(icon);
+        mSharedIcons.computeIfAbsent(group, g -> new ArrayList<>(1)).add(shared);
+        return shared;
+    }
+
+    private void addOwner(@NonNull ComponentKey owner, @NonNull SharedIcon shared) {
+        shared.owners++;
+        mOwners.put(owner, shared);
+    }
+
+    private static long hashPixels(@NonNull Bitmap bitmap, @NonNull int[] row) {
+        int width = bitmap.getWidth();
+        long hash = 1125899906842597L;
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                hash = 31 * hash + row[x];
+            }
+        }
+        return hash;
+    }
+
+    private static long getGroup(@NonNull BitmapInfo info) {
+        return ((long) info.icon.getWidth() << 48) ^ ((long) info.icon.getHeight() << 32)
+                ^ (info.color & 0xFFFFFFFFL);
+    }
+
+    @NonNull
+    private static Bitmap getReadableBitmap(@NonNull Bitmap bitmap) {
+        // Pixels of hardware bitmaps can only be read from a copy
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            Bitmap copy = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            if (copy != null) {
+                return copy;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * An icon which needs to be compared with the interned icons of the same group
+     */
+    public static final class PendingIcon {
+
+        @NonNull public final ComponentKey owner;
+        @NonNull public final BitmapInfo info;
+        final long group;
+        private final List<Candidate> mCandidates;
+
+        private long mHash;
+        @Nullable
+        private SharedIcon mMatch;
+
+        PendingIcon(@NonNull ComponentKey owner, @NonNull BitmapInfo info, long group,
+                @NonNull List<SharedIcon> candidates) {
+            this.owner = owner;
+            this.info = info;
+            this.group = group;
+            mCandidates = new ArrayList<>(candidates.size());
+            for (SharedIcon icon : candidates) {
+                mCandidates.add(new Candidate(icon));
+            }
+        }
+
+        /**
+         * Hashes the pixels of the icon, and of any candidate which wasn't hashed yet, and finds
+         * an identical candidate. This only reads immutable bitmaps, and doesn't need the icon
+         * cache lock. Each bitmap is copied at most once, when its pixels can't be read directly.
+         */
+        public void compare() {
+            int[] row = new int[info.icon.getWidth()];
+            Bitmap pixels = getReadableBitmap(info.icon);
+            mHash = hashPixels(pixels, row);
+            for (Candidate candidate : mCandidates) {
+                Bitmap candidatePixels = null;
+                if (!candidate.hashed) {
+                    candidatePixels = getReadableBitmap(candidate.icon.icon);
+                    candidate.hash = hashPixels(candidatePixels, row);
+                    candidate.hashed = true;
+                }
+                if (candidate.hash != mHash) {
+                    continue;
+                }
+                if (candidatePixels == null) {
+                    candidatePixels = getReadableBitmap(candidate.icon.icon);
+                }
+                if (candidatePixels.sameAs(pixels)) {
+                    mMatch = candidate.icon;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy of the hash of a {@link SharedIcon}, which can be computed without the icon cache lock
+     */
+    private static class Candidate {
+
+        final SharedIcon icon;
+        long hash;
+        boolean hashed;
+
+        Candidate(SharedIcon icon) {
+            this.icon = icon;
+            hash = icon.hash;
+            hashed = icon.hashed;
+        }
+    }
+
+    private static class SharedIcon {
+
+        final Bitmap icon;
+        final long bytes;
+        long hash;
+        boolean hashed;
+        int owners;
+
+        SharedIcon(@Nullable Bitmap icon) {
+            this.icon = icon;
+            bytes = icon == null ? 0 : icon.getAllocationByteCount();
+        }
+    }
+}
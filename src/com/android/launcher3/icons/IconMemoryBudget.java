@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.FlagOp;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte budget for the entries of the in-memory icon cache, with separate LRU tiers for high
+ * resolution and low resolution entries.
+ *
+ * When the high resolution tier is over budget, its least recently used entries are downgraded
+ * to low resolution in place, keeping their title and color. When the low resolution tier is over
+ * budget, its least recently used entries are evicted. Memory trimming applies the same steps
+ * with a smaller budget. Entries sharing the same icon bitmap only count its pixels once.
+ *
+ * This class is not thread safe, and is only used while holding the icon cache lock, except for
+ * {@link #onEntryHit} which records the uses of entries read without the lock. These uses are
+ * only applied to the LRU order the next time a tier is trimmed.
+ */
+public class IconMemoryBudget {
+
+    // Approximate size of an entry without its icon pixels
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    // Share of the app memory class used for high resolution icons
+    private static final int HIGH_RES_BUDGET_DIVISOR = 8;
+    private static final int LOW_RAM_HIGH_RES_BUDGET_DIVISOR = 16;
+    // Share of the high resolution budget used for low resolution entries
+    private static final int LOW_RES_BUDGET_DIVISOR = 16;
+
+    /**
+     * Listener for entries leaving the budget
+     */
+    public interface OnEntryRemovedListener {
+
+        /**
+         * Called when the entry for {@param key} was downgraded to low resolution in place, or
+         * needs to be {@param evicted} from the cache
+         */
+        void onEntryRemoved(@NonNull ComponentKey key, boolean evicted);
+    }
+
+    private final long mHighResBudget;
+    private final long mLowResBudget;
+    private final OnEntryRemovedListener mListener;
+
+    private final LinkedHashMap<ComponentKey, TrackedEntry> mHighRes =
+            new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+    private final LinkedHashMap<ComponentKey, TrackedEntry> mLowRes =
+            new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+    // Number of high resolution entries using each bitmap
+    private final IdentityHashMap<Bitmap, Integer> mHighResBitmaps = new IdentityHashMap<>();
+    private long mHighResBytes;
+    private long mLowResBytes;
+
+    private final AtomicLong mClock = new AtomicLong();
+    private final AtomicLong mLockFreeHits = new AtomicLong();
+    private long mAppliedLockFreeHits;
+
+    private long mHits;
+    private long mMisses;
+    private long mDowngrades;
+    private long mEvictions;
+
+    @VisibleForTesting
+    IconMemoryBudget(long highResBudget, long lowResBudget,
+            @NonNull OnEntryRemovedListener listener) {
+        mHighResBudget = highResBudget;
+        mLowResBudget = lowResBudget;
+        mListener = listener;
+    }
+
+    /**
+     * Creates a budget scaled to the memory class of the device
+     */
+    public static IconMemoryBudget create(@NonNull Context context,
+            @NonNull OnEntryRemovedListener listener) {
+        ActivityManager am = context.getSystemService(ActivityManager.class);
+        long highResBudget = am.getMemoryClass() * 1024L * 1024L / (am.isLowRamDevice()
+                ? LOW_RAM_HIGH_RES_BUDGET_DIVISOR : HIGH_RES_BUDGET_DIVISOR);
+        return new IconMemoryBudget(highResBudget, highResBudget / LOW_RES_BUDGET_DIVISOR,
+                listener);
+    }
+
+    /**
+     * Records that the in-memory {@param entry} for {@param key} was used, and trims the tiers
+     * to their budget. The entry itself is never downgraded or evicted by this call.
+     *
+     * @return the tracked entry, to record later uses of the entry with {@link #onEntryHit}
+     */
+    @NonNull
+    public TrackedEntry onEntryUsed(@NonNull ComponentKey key, @NonNull CacheEntry entry) {
+        TrackedEntry tracked = removeTracked(key);
+        // The cache replaces the entry whenever it loads it again
+        if (tracked != null && tracked.entry == entry) {
+            mHits++;
+        } else {
+            mMisses++;
+            tracked = new TrackedEntry(key, entry);
+        }
+        tracked.orderedAccess = mClock.incrementAndGet();
+        tracked.lastAccess = tracked.orderedAccess;
+
+        if (isLowRes(entry)) {
+            addLowRes(tracked);
+        } else {
+            addHighRes(tracked);
+        }
+        trimHighRes(mHighResBudget, key);
+        trimLowRes(mLowResBudget, key);
+        return tracked;
+    }
+
+    /**
+     * Records that the entry of {@param tracked} was used without holding the icon cache lock.
+     * Unlike other methods, this can be called from any thread.
+     */
+    public void onEntryHit(@NonNull TrackedEntry tracked) {
+        tracked.lastAccess = mClock.incrementAndGet();
+        mLockFreeHits.incrementAndGet();
+    }
+
+    /**
+     * Updates the size of the entry for {@param key}, after its icon was replaced in place
+     */
+    public void onEntryIconChanged(@NonNull ComponentKey key) {
+        TrackedEntry tracked = mHighRes.get(key);
+        if (tracked != null && tracked.icon != tracked.entry.bitmap.icon) {
+            onHighResRemoved(tracked);
+            addHighRes(tracked);
+        }
+    }
+
+    /**
+     * Stops tracking the entry for {@param key}, after it was removed from the cache
+     */
+    public void remove(@NonNull ComponentKey key) {
+        removeTracked(key);
+    }
+
+    /**
+     * Stops tracking all the entries of {@param packageName}, after they were removed from the
+     * cache
+     */
+    public void removePackage(@NonNull String packageName, @NonNull UserHandle user) {
+        List<ComponentKey> keys = new ArrayList<>();
+        for (ComponentKey key : mHighRes.keySet()) {
+            if (key.user.equals(user) && key.componentName.getPackageName().equals(packageName)) {
+                keys.add(key);
+            }
+        }
+        for (ComponentKey key : mLowRes.keySet()) {
+            if (key.user.equals(user) && key.componentName.getPackageName().equals(packageName)) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(this::removeTracked);
+    }
+
+    /**
+     * Stops tracking all entries, after the cache was cleared
+     */
+    public void clear() {
+        mHighRes.clear();
+        mLowRes.clear();
+        mHighResBitmaps.clear();
+        mHighResBytes = 0;
+        mLowResBytes = 0;
+    }
+
+    /**
+     * Downgrades and then evicts entries depending on the trim memory {@param level}
+     */
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimHighRes(0, null);
+            trimLowRes(0, null);
+        } else if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            trimHighRes(0, null);
+            trimLowRes(mLowResBudget, null);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            trimHighRes(mHighResBudget / 2, null);
+            trimLowRes(mLowResBudget, null);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        long lockFreeHits = mLockFreeHits.get();
+        long hits = mHits + lockFreeHits;
+        long lookups = hits + mMisses;
+        writer.println(prefix + "IconMemoryBudget:");
+        writer.println(prefix + "  highRes: entries=" + mHighRes.size()
+                + " bitmaps=" + mHighResBitmaps.size()
+                + " size=" + mHighResBytes / 1024 + "KB budget=" + mHighResBudget / 1024 + "KB");
+        writer.println(prefix + "  lowRes: entries=" + mLowRes.size()
+                + " size=" + mLowResBytes / 1024 + "KB budget=" + mLowResBudget / 1024 + "KB");
+        writer.println(prefix + "  hits=" + hits + " lockFreeHits=" + lockFreeHits
+                + " misses=" + mMisses
+                + " hitRate=" + (lookups == 0 ? 0 : hits * 100 / lookups) + "%"
+                + " downgrades=" + mDowngrades + " evictions=" + mEvictions);
+    }
+
+    @VisibleForTesting
+    long getHitCount() {
+        return mHits + mLockFreeHits.get();
+    }
+
+    @VisibleForTesting
+    long getMissCount() {
+        return mMisses;
+    }
+
+    @VisibleForTesting
+    long getHighResBytes() {
+        return mHighResBytes;
+    }
+
+    private void trimHighRes(long budget, ComponentKey keep) {
+        if (mHighResBytes <= budget) {
+            return;
+        }
+        applyLockFreeHits();
+        Iterator<TrackedEntry> it = mHighRes.values().iterator();
+        while (mHighResBytes > budget && it.hasNext()) {
+            TrackedEntry eldest = it.next();
+            if (eldest.key.equals(keep)) {
+                continue;
+            }
+            it.remove();
+            onHighResRemoved(eldest);
+            CacheEntry entry = eldest.entry;
+            entry.bitmap = BitmapInfo.of(BitmapInfo.LOW_RES_ICON, entry.bitmap.color)
+                    .withFlags(FlagOp.NO_OP.addFlag(entry.bitmap.flags));
+            addLowRes(eldest);
+            mDowngrades++;
+            mListener.onEntryRemoved(eldest.key, false /* evicted */);
+        }
+    }
+
+    private void trimLowRes(long budget, ComponentKey keep) {
+        if (mLowResBytes <= budget) {
+            return;
+        }
+        applyLockFreeHits();
+        Iterator<TrackedEntry> it = mLowRes.values().iterator();
+        while (mLowResBytes > budget && it.hasNext()) {
+            TrackedEntry eldest = it.next();
+            if (eldest.key.equals(keep)) {
+                continue;
+            }
+            it.remove();
+            mLowResBytes -= eldest.bytes;
+            mEvictions++;
+            mListener.onEntryRemoved(eldest.key, true /* evicted */);
+        }
+    }
+
+    /**
+     * Moves the entries used without the lock since the last trim to their place in the LRU order
+     */
+    private void applyLockFreeHits() {
+        long lockFreeHits = mLockFreeHits.get();
+        if (lockFreeHits == mAppliedLockFreeHits) {
+            return;
+        }
+        mAppliedLockFreeHits = lockFreeHits;
+        sortByLastAccess(mHighRes);
+        sortByLastAccess(mLowRes);
+    }
+
+    private static void sortByLastAccess(LinkedHashMap<ComponentKey, TrackedEntry> tier) {
+        List<TrackedEntry> entries = new ArrayList<>(tier.values());
+        boolean changed = false;
+        for (TrackedEntry tracked : entries) {
+            long lastAccess = tracked.lastAccess;
+            if (lastAccess != tracked.orderedAccess) {
+                tracked.orderedAccess = lastAccess;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(tracked -> tracked.orderedAccess));
+        tier.clear();
+        for (TrackedEntry tracked : entries) {
+            tier.put(tracked.key, tracked);
+        }
+    }
+
+    private TrackedEntry removeTracked(ComponentKey key) {
+        TrackedEntry tracked = mHighRes.remove(key);
+        if (tracked != null) {
+            onHighResRemoved(tracked);
+        } else if ((tracked = mLowRes.remove(key)) != null) {
+            mLowResBytes -= tracked.bytes;
+        }
+        return tracked;
+    }
+
+    private void addHighRes(TrackedEntry tracked) {
+        tracked.icon = tracked.entry.bitmap.icon;
+        tracked.bytes = ENTRY_OVERHEAD_BYTES + getTitleBytes(tracked.entry);
+        mHighRes.put(tracked.key, tracked);
+        mHighResBytes += tracked.bytes;
+        Integer owners = mHighResBitmaps.get(tracked.icon);
+        if (owners == null) {
+            mHighResBytes += tracked.icon.getAllocationByteCount();
+            mHighResBitmaps.put(tracked.icon, 1);
+        } else {
+            mHighResBitmaps.put(tracked.icon, owners + 1);
+        }
+    }
+
+    private void onHighResRemoved(TrackedEntry tracked) {
+        mHighResBytes -= tracked.bytes;
+        Integer owners = mHighResBitmaps.get(tracked.icon);
+        if (owners == null || owners <= 1) {
+            mHighResBitmaps.remove(tracked.icon);
+            mHighResBytes -= tracked.icon.getAllocationByteCount();
+        } else {
+            mHighResBitmaps.put(tracked.icon, owners - 1);
+        }
+        tracked.icon = null;
+    }
+
+    private void addLowRes(TrackedEntry tracked) {
+        tracked.bytes = ENTRY_OVERHEAD_BYTES + getTitleBytes(tracked.entry);
+        mLowRes.put(tracked.key, tracked);
+        mLowResBytes += tracked.bytes;
+    }
+
+    private static boolean isLowRes(CacheEntry entry) {
+        return entry.bitmap == null || entry.bitmap.isNullOrLowRes();
+    }
+
+    private static int getTitleBytes(CacheEntry entry) {
+        return entry.title == null ? 0 : entry.title.length() * 2;
+    }
+
+    /**
+     * An in-memory entry tracked by the budget
+     */
+    public static final class TrackedEntry {
+
+        final ComponentKey key;
+        final CacheEntry entry;
+        // Icon counted in the high resolution tier, or null when in the low resolution tier
+        Bitmap icon;
+        // Size of the entry without the pixels of its icon
+        long bytes;
+
+        // Time of the last use, which can be updated without the icon cache lock
+        volatile long lastAccess;
+        // Time of the last use when the entry was ordered in its tier
+        long orderedAccess;
+
+        TrackedEntry(ComponentKey key, CacheEntry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
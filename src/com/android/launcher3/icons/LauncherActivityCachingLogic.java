@@ -18,9 +18,12 @@ package com.android.launcher3.icons;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.LauncherActivityInfo;
+import android.graphics.drawable.Drawable;
+import android.os.Trace;
 import android.os.UserHandle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
@@ -42,6 +45,16 @@ public class LauncherActivityCachingLogic
                 R.string.launcher_activity_logic_class);
     }
 
+    @Nullable
+    private IconCacheStats mStats;
+
+    /**
+     * Sets the stats recording the stages of loading icons
+     */
+    void setStats(@Nullable IconCacheStats stats) {
+        mStats = stats;
+    }
+
     @NonNull
     @Override
     public ComponentName getComponent(@NonNull LauncherActivityInfo object) {
@@ -63,10 +76,26 @@ public class LauncherActivityCachingLogic
     @NonNull
     @Override
     public BitmapInfo loadIcon(@NonNull Context context, @NonNull LauncherActivityInfo object) {
+        IconCacheStats stats = mStats;
         try (LauncherIcons li = LauncherIcons.obtain(context)) {
-            return li.createBadgedIconBitmap(LauncherAppState.getInstance(context)
-                            .getIconProvider().getIcon(object, li.mFillResIconDpi),
+            Trace.beginSection("LoadIconDrawable");
+            long start = stats == null ? 0 : stats.getStartTime();
+            Drawable icon = LauncherAppState.getInstance(context)
+                    .getIconProvider().getIcon(object, li.mFillResIconDpi);
+            if (stats != null) {
+                stats.endStage(IconCacheStats.STAGE_PACKAGE_MANAGER, start);
+            }
+            Trace.endSection();
+
+            Trace.beginSection("CreateIconBitmap");
+            start = stats == null ? 0 : stats.getStartTime();
+            BitmapInfo info = li.createBadgedIconBitmap(icon,
                     new IconOptions().setUser(object.getUser()));
+            if (stats != null) {
+                stats.endStage(IconCacheStats.STAGE_BITMAP, start);
+            }
+            Trace.endSection();
+            return info;
         }
     }
 }
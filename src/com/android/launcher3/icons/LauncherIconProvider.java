@@ -25,7 +25,6 @@ import android.util.Log;
 
 import com.android.launcher3.R;
 import com.android.launcher3.config.FeatureFlags;
-import com.android.launcher3.util.Themes;
 
 import org.xmlpull.v1.XmlPullParser;
 
@@ -49,7 +48,7 @@ public class LauncherIconProvider extends IconProvider {
 
     public LauncherIconProvider(Context context) {
         super(context);
-        setIconThemeSupported(Themes.isThemedIconEnabled(context));
+        setIconThemeSupported(LauncherIcons.isMonoIconEnabled(context));
     }
 
     /**
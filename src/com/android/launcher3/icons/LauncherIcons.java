@@ -17,9 +17,11 @@
 package com.android.launcher3.icons;
 
 import static com.android.launcher3.config.FeatureFlags.ENABLE_FORCED_MONO_ICON;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PERSISTED_MONO_ICONS;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.os.Trace;
 
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.graphics.IconShape;
@@ -60,6 +62,15 @@ public class LauncherIcons extends BaseIconFactory implements AutoCloseable {
         return new LauncherIcons(context, idp.fillResIconDpi, idp.iconBitmapSize, poolId);
     }
 
+    /**
+     * Returns true if icons are created along with their monochrome variant used for themed
+     * icons. When the monochrome variant is persisted, it is created even if themed icons are
+     * disabled, so that the icon cache stays valid when they are toggled.
+     */
+    public static boolean isMonoIconEnabled(Context context) {
+        return ENABLE_PERSISTED_MONO_ICONS.get() || Themes.isThemedIconEnabled(context);
+    }
+
     public static void clearPool() {
         synchronized (sPoolSync) {
             sPool = null;
@@ -75,7 +86,7 @@ public class LauncherIcons extends BaseIconFactory implements AutoCloseable {
 
     protected LauncherIcons(Context context, int fillResIconDpi, int iconBitmapSize, int poolId) {
         super(context, fillResIconDpi, iconBitmapSize, IconShape.getShape().enableShapeDetection());
-        mMonoIconEnabled = Themes.isThemedIconEnabled(context);
+        mMonoIconEnabled = isMonoIconEnabled(context);
         mPoolId = poolId;
     }
 
@@ -104,7 +115,12 @@ public class LauncherIcons extends BaseIconFactory implements AutoCloseable {
         if (mMonochromeIconFactory == null) {
             mMonochromeIconFactory = new MonochromeIconFactory(mIconBitmapSize);
         }
-        return mMonochromeIconFactory.wrap(base);
+        Trace.beginSection("GenerateMonochromeIcon");
+        try {
+            return mMonochromeIconFactory.wrap(base);
+        } finally {
+            Trace.endSection();
+        }
     }
 
     @Override
@@ -44,6 +44,7 @@ import com.android.launcher3.util.SafeCloseable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.function.Consumer;
@@ -75,6 +76,9 @@ public class AllAppsList {
 
     private AlphabeticIndexCompat mIndex;
 
+    // Apps as of the last copy of the data, which can be read from any thread
+    private volatile List<AppInfo> mDataSnapshot = Collections.emptyList();
+
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
      * @see Callbacks#FLAG_QUIET_MODE_ENABLED
@@ -367,10 +371,21 @@ public class AllAppsList {
 
     public AppInfo[] copyData() {
         AppInfo[] result = data.toArray(EMPTY_ARRAY);
+        mDataSnapshot = Collections.unmodifiableList(Arrays.asList(result.clone()));
         Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
         return result;
     }
 
+    /**
+     * Returns the apps as of the last time they were bound, in the order of {@link #data}. This
+     * can be called from any thread. The list itself never changes, but it holds the same
+     * {@link AppInfo} objects as {@link #data}, whose title and icon can be updated in place on
+     * the model thread. Readers on other threads may see either the old or the new values.
+     */
+    public List<AppInfo> getDataSnapshot() {
+        return mDataSnapshot;
+    }
+
     public SafeCloseable trackRemoves(Consumer<AppInfo> removeListener) {
         mRemoveListener = removeListener;
 
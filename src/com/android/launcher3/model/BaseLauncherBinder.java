@@ -59,7 +59,8 @@ import java.util.stream.Collectors;
 public abstract class BaseLauncherBinder {
 
     protected static final String TAG = "LauncherBinder";
-    private static final int ITEMS_CHUNK = 6; // batch size for the workspace icons
+    // Batch size for the workspace icons, when not using adaptive binding
+    private static final int ITEMS_CHUNK = 6;
 
     protected final LooperExecutor mUiExecutor;
 
@@ -244,6 +245,7 @@ public abstract class BaseLauncherBinder {
         private final ArrayList<LauncherAppWidgetInfo> mAppWidgets;
         private final IntArray mOrderedScreenIds;
         private final ArrayList<FixedContainerItems> mExtraItems;
+        private final WorkspaceBindScheduler mScheduler;
 
         UnifiedWorkspaceBinder(Callbacks callbacks,
                 Executor uiExecutor,
@@ -263,6 +265,7 @@ public abstract class BaseLauncherBinder {
             mAppWidgets = appWidgets;
             mExtraItems = extraItems;
             mOrderedScreenIds = orderedScreenIds;
+            mScheduler = new WorkspaceBindScheduler(app.getContext());
         }
 
         private void bind(boolean isBindSync, int workspaceItemCount) {
@@ -308,6 +311,7 @@ public abstract class BaseLauncherBinder {
             executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), pendingExecutor);
             pendingExecutor.execute(
                     () -> {
+                        mScheduler.onBindComplete();
                         MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
                         ItemInstallQueue.INSTANCE.get(mApp.getContext())
                                 .resumeModelPush(FLAG_LOADER_RUNNING);
@@ -327,23 +331,15 @@ public abstract class BaseLauncherBinder {
         private void bindWorkspaceItems(
                 final ArrayList<ItemInfo> workspaceItems, final Executor executor) {
             // Bind the workspace items
-            int count = workspaceItems.size();
-            for (int i = 0; i < count; i += ITEMS_CHUNK) {
-                final int start = i;
-                final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
-                executeCallbacksTask(
-                        c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
-                        executor);
+            for (List<ItemInfo> chunk : mScheduler.split(workspaceItems, ITEMS_CHUNK)) {
+                executeCallbacksTask(c -> mScheduler.bindChunk(c, chunk), executor);
             }
         }
 
         private void bindAppWidgets(List<LauncherAppWidgetInfo> appWidgets, Executor executor) {
-            // Bind the widgets, one at a time
-            int count = appWidgets.size();
-            for (int i = 0; i < count; i++) {
-                final ItemInfo widget = appWidgets.get(i);
-                executeCallbacksTask(
-                        c -> c.bindItems(Collections.singletonList(widget), false), executor);
+            // Bind the widgets, one at a time unless they are cheap enough to batch
+            for (List<ItemInfo> chunk : mScheduler.split(appWidgets, 1)) {
+                executeCallbacksTask(c -> mScheduler.bindChunk(c, chunk), executor);
             }
         }
 
@@ -362,9 +358,11 @@ public abstract class BaseLauncherBinder {
         private final IntArray mOrderedScreenIds;
         private final IntSet mCurrentScreenIds = new IntSet();
         private final Set<Integer> mBoundItemIds = new HashSet<>();
+        private final WorkspaceBindScheduler mScheduler;
 
         protected DisjointWorkspaceBinder(IntArray orderedScreenIds) {
             mOrderedScreenIds = orderedScreenIds;
+            mScheduler = new WorkspaceBindScheduler(mApp.getContext());
 
             for (Callbacks cb : mCallbacksList) {
                 mCurrentScreenIds.addAll(cb.getPagesToBindSynchronously(orderedScreenIds));
@@ -444,6 +442,7 @@ public abstract class BaseLauncherBinder {
 
             executeCallbacksTask(c -> c.finishBindingItems(mCurrentScreenIds), mUiExecutor);
             mUiExecutor.execute(() -> {
+                mScheduler.onBindComplete();
                 MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
                 ItemInstallQueue.INSTANCE.get(mApp.getContext())
                         .resumeModelPush(FLAG_LOADER_RUNNING);
@@ -455,24 +454,15 @@ public abstract class BaseLauncherBinder {
 
         private void bindWorkspaceItems(final ArrayList<ItemInfo> workspaceItems) {
             // Bind the workspace items
-            int count = workspaceItems.size();
-            for (int i = 0; i < count; i += ITEMS_CHUNK) {
-                final int start = i;
-                final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
-                executeCallbacksTask(
-                        c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
-                        mUiExecutor);
+            for (List<ItemInfo> chunk : mScheduler.split(workspaceItems, ITEMS_CHUNK)) {
+                executeCallbacksTask(c -> mScheduler.bindChunk(c, chunk), mUiExecutor);
             }
         }
 
         private void bindAppWidgets(List<LauncherAppWidgetInfo> appWidgets) {
-            // Bind the widgets, one at a time
-            int count = appWidgets.size();
-            for (int i = 0; i < count; i++) {
-                final ItemInfo widget = appWidgets.get(i);
-                executeCallbacksTask(
-                        c -> c.bindItems(Collections.singletonList(widget), false),
-                        mUiExecutor);
+            // Bind the widgets, one at a time unless they are cheap enough to batch
+            for (List<ItemInfo> chunk : mScheduler.split(appWidgets, 1)) {
+                executeCallbacksTask(c -> mScheduler.bindChunk(c, chunk), mUiExecutor);
             }
         }
     }
@@ -15,6 +15,8 @@
  */
 package com.android.launcher3.model;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_MODEL;
+
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -81,6 +83,7 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
             return;
         }
         execute(mApp, mDataModel, mAllAppsList);
+        mDataModel.publishSnapshot();
     }
 
     /**
@@ -89,6 +92,14 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
     public abstract void execute(@NonNull LauncherAppState app,
             @NonNull BgDataModel dataModel, @NonNull AllAppsList apps);
 
+    /**
+     * Executes {@param task} synchronously as part of this task, using the same model state
+     */
+    public final void executeSubTask(@NonNull final BaseModelUpdateTask task) {
+        task.init(mApp, mModel, mDataModel, mAllAppsList, mUiExecutor);
+        task.execute(mApp, mDataModel, mAllAppsList);
+    }
+
     /**
      * Schedules a {@param task} to be executed on the current callbacks.
      */
@@ -134,6 +145,16 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
     }
 
     public void bindUpdatedWidgets(@NonNull final BgDataModel dataModel) {
+        if (ENABLE_INCREMENTAL_WIDGETS_MODEL.get()) {
+            final Map<PackageUserKey, List<WidgetsListBaseEntry>> changedWidgets =
+                    dataModel.widgetsModel.getChangedWidgetsForPicker(mApp.getContext());
+            if (changedWidgets != null) {
+                if (!changedWidgets.isEmpty()) {
+                    scheduleCallbackTask(c -> c.bindWidgetsChanged(changedWidgets));
+                }
+                return;
+            }
+        }
         final ArrayList<WidgetsListBaseEntry> widgets =
                 dataModel.widgetsModel.getWidgetsListForPicker(mApp.getContext());
         scheduleCallbackTask(c -> c.bindAllWidgets(widgets));
@@ -111,6 +111,12 @@ public class BgDataModel {
      */
     public final HashMap<ComponentKey, Integer> deepShortcutMap = new HashMap<>();
 
+    /**
+     * Secondary indexes over {@link #itemsIdMap}, maintained in {@link #addItem} and
+     * {@link #removeItem}
+     */
+    private final ItemInfoIndex mItemIndex = new ItemInfoIndex();
+
     /**
      * Entire list of widgets.
      */
@@ -131,6 +137,11 @@ public class BgDataModel {
      */
     public int lastLoadId = -1;
 
+    /**
+     * Last published snapshot of the model, see {@link #publishSnapshot()}
+     */
+    private volatile Snapshot mSnapshot = Snapshot.EMPTY;
+
     /**
      * Clears all the data
      */
@@ -139,6 +150,7 @@ public class BgDataModel {
         appWidgets.clear();
         folders.clear();
         itemsIdMap.clear();
+        mItemIndex.clear();
         deepShortcutMap.clear();
         extraItems.clear();
     }
@@ -159,9 +171,51 @@ public class BgDataModel {
         return screenSet.getArray();
     }
 
-    public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer,
-            String[] args) {
-        writer.println(prefix + "Data Model:");
+    /**
+     * Publishes a new {@link Snapshot} of the current state of the model when
+     * {@link FeatureFlags#ENABLE_MODEL_SNAPSHOTS} is enabled. This should be called by writers
+     * once a set of changes is complete, so that readers never observe a partial update.
+     */
+    public synchronized void publishSnapshot() {
+        if (FeatureFlags.ENABLE_MODEL_SNAPSHOTS.get()) {
+            mSnapshot = new Snapshot(mSnapshot.version + 1, this);
+        }
+    }
+
+    /**
+     * Returns the last published snapshot of the model. Unlike other methods in this class, this
+     * does not acquire the model lock, and can be called from any thread while the model is
+     * being loaded or updated. Snapshots are only published when
+     * {@link FeatureFlags#ENABLE_MODEL_SNAPSHOTS} is enabled.
+     */
+    @NonNull
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Dumps the last published snapshot when {@link FeatureFlags#ENABLE_MODEL_SNAPSHOTS} is
+     * enabled, so that a dump does not wait for the loader.
+     */
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (!FeatureFlags.ENABLE_MODEL_SNAPSHOTS.get()) {
+            synchronized (this) {
+                writer.println(prefix + "Data Model:");
+                dumpItems(prefix, writer, args, workspaceItems, appWidgets, folders, itemsIdMap,
+                        deepShortcutMap);
+            }
+            return;
+        }
+        Snapshot snapshot = mSnapshot;
+        writer.println(prefix + "Data Model: (snapshot version " + snapshot.version + ")");
+        dumpItems(prefix, writer, args, snapshot.workspaceItems, snapshot.appWidgets,
+                snapshot.folders, snapshot.itemsIdMap, snapshot.deepShortcutMap);
+    }
+
+    private static void dumpItems(String prefix, PrintWriter writer, String[] args,
+            List<ItemInfo> workspaceItems, List<LauncherAppWidgetInfo> appWidgets,
+            IntSparseArrayMap<FolderInfo> folders, IntSparseArrayMap<ItemInfo> itemsIdMap,
+            Map<ComponentKey, Integer> deepShortcutMap) {
         writer.println(prefix + " ---- workspace items ");
         for (int i = 0; i < workspaceItems.size(); i++) {
             writer.println(prefix + '\t' + workspaceItems.get(i).toString());
@@ -171,11 +225,11 @@ public class BgDataModel {
             writer.println(prefix + '\t' + appWidgets.get(i).toString());
         }
         writer.println(prefix + " ---- folder items ");
-        for (int i = 0; i< folders.size(); i++) {
+        for (int i = 0; i < folders.size(); i++) {
             writer.println(prefix + '\t' + folders.valueAt(i).toString());
         }
         writer.println(prefix + " ---- items id map ");
-        for (int i = 0; i< itemsIdMap.size(); i++) {
+        for (int i = 0; i < itemsIdMap.size(); i++) {
             writer.println(prefix + '\t' + itemsIdMap.valueAt(i).toString());
         }
 
@@ -193,27 +247,26 @@ public class BgDataModel {
     }
 
     public synchronized void removeItem(Context context, Iterable<? extends ItemInfo> items) {
-        ArraySet<UserHandle> updatedDeepShortcuts = new ArraySet<>();
+        ArraySet<PackageUserKey> updatedDeepShortcuts = new ArraySet<>();
         for (ItemInfo item : items) {
             switch (item.itemType) {
                 case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                 case LauncherSettings.Favorites.ITEM_TYPE_APP_PAIR:
                     folders.remove(item.id);
                     if (FeatureFlags.IS_STUDIO_BUILD) {
-                        for (ItemInfo info : itemsIdMap) {
-                            if (info.container == item.id) {
-                                // We are deleting a folder which still contains items that
-                                // think they are contained by that folder.
-                                String msg = "deleting a collection (" + item + ") which still "
-                                        + "contains items (" + info + ")";
-                                Log.e(TAG, msg);
-                            }
+                        for (ItemInfo info : getItemsInContainer(item.id)) {
+                            // We are deleting a folder which still contains items that
+                            // think they are contained by that folder.
+                            String msg = "deleting a collection (" + item + ") which still "
+                                    + "contains items (" + info + ")";
+                            Log.e(TAG, msg);
                         }
                     }
                     workspaceItems.remove(item);
                     break;
                 case LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT: {
-                    updatedDeepShortcuts.add(item.user);
+                    updatedDeepShortcuts.add(new PackageUserKey(
+                            ShortcutKey.fromItemInfo(item).getPackageName(), item.user));
                     // Fall through.
                 }
                 case LauncherSettings.Favorites.ITEM_TYPE_APPLICATION:
@@ -225,8 +278,10 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            mItemIndex.remove(item.id);
         }
-        updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
+        updatedDeepShortcuts.forEach(key ->
+                updateShortcutPinnedState(context, key.mUser, key.mPackageName));
     }
 
     public synchronized void addItem(Context context, ItemInfo item, boolean newItem) {
@@ -243,6 +298,7 @@ public class BgDataModel {
                     /* stackTrace= */ null);
         }
         itemsIdMap.put(item.id, item);
+        mItemIndex.add(item);
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
             case LauncherSettings.Favorites.ITEM_TYPE_APP_PAIR:
@@ -273,8 +329,68 @@ public class BgDataModel {
                 break;
         }
         if (newItem && item.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT) {
-            updateShortcutPinnedState(context, item.user);
+            updateShortcutPinnedState(
+                    context, item.user, ShortcutKey.fromItemInfo(item).getPackageName());
+        }
+    }
+
+    /**
+     * Updates the secondary indexes for an item whose container, position or target was changed
+     * in place. Must be called by every model task which changes these properties of a bound
+     * item, before any lookup through {@link #getItemsForPackages}, {@link #getItemsInContainer}
+     * or {@link #getItemsOnScreen}.
+     */
+    public synchronized void updateItemIndex(ItemInfo item) {
+        if (itemsIdMap.get(item.id) == item) {
+            mItemIndex.update(item);
+        }
+    }
+
+    /**
+     * Returns the items placed directly inside the provided container
+     */
+    public synchronized List<ItemInfo> getItemsInContainer(int container) {
+        return resolveIds(mItemIndex.getIdsInContainer(container),
+                info -> info.container == container);
+    }
+
+    /**
+     * Returns the items placed directly on the provided workspace screen
+     */
+    public synchronized List<ItemInfo> getItemsOnScreen(int screenId) {
+        return resolveIds(mItemIndex.getIdsOnScreen(screenId),
+                info -> info.container == Favorites.CONTAINER_DESKTOP
+                        && info.screenId == screenId);
+    }
+
+    /**
+     * Returns the persisted items targeting any of the provided packages for the user
+     */
+    public synchronized List<ItemInfo> getItemsForPackages(
+            Set<String> packages, UserHandle user) {
+        List<ItemInfo> result = new ArrayList<>();
+        for (String packageName : packages) {
+            result.addAll(resolveIds(mItemIndex.getIdsForPackage(packageName, user),
+                    info -> user.equals(info.user) && info.getTargetComponent() != null
+                            && packageName.equals(info.getTargetComponent().getPackageName())));
+        }
+        return result;
+    }
+
+    private List<ItemInfo> resolveIds(@Nullable IntSet ids, Predicate<ItemInfo> matcher) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Copy the ids as the caller might update the model while iterating over the result
+        int[] idArray = ids.getArray().toArray();
+        List<ItemInfo> result = new ArrayList<>(idArray.length);
+        for (int id : idArray) {
+            ItemInfo info = itemsIdMap.get(id);
+            if (info != null && matcher.test(info)) {
+                result.add(info);
+            }
         }
+        return result;
     }
 
     /**
@@ -292,12 +408,22 @@ public class BgDataModel {
      * shortcuts and unpinning any extra shortcuts.
      */
     public synchronized void updateShortcutPinnedState(Context context, UserHandle user) {
+        updateShortcutPinnedState(context, user, null);
+    }
+
+    /**
+     * Same as {@link #updateShortcutPinnedState(Context, UserHandle)}, but only considers the
+     * shortcuts of {@param packageName} if it is not null.
+     */
+    private synchronized void updateShortcutPinnedState(
+            Context context, UserHandle user, @Nullable String packageName) {
         if (GO_DISABLE_WIDGETS) {
             return;
         }
 
         // Collect all system shortcuts
         QueryResult result = new ShortcutRequest(context, user)
+                .forPackage(packageName)
                 .query(PINNED | FLAG_GET_KEY_FIELDS_ONLY);
         if (!result.wasSuccess()) {
             return;
@@ -309,7 +435,11 @@ public class BgDataModel {
 
         // Collect all model shortcuts
         Stream.Builder<WorkspaceItemInfo> itemStream = Stream.builder();
-        forAllWorkspaceItemInfos(user, itemStream::accept);
+        if (packageName == null) {
+            forAllWorkspaceItemInfos(user, itemStream::accept);
+        } else {
+            forAllWorkspaceItemInfos(user, Collections.singleton(packageName), itemStream::accept);
+        }
         // Map of packageName to shortcutIds that are currently in our model
         Map<String, Set<String>> modelMap = Stream.concat(
                     // Model shortcuts
@@ -318,6 +448,7 @@ public class BgDataModel {
                         .map(ShortcutKey::fromItemInfo),
                     // Pending shortcuts
                     ItemInstallQueue.INSTANCE.get(context).getPendingShortcuts(user))
+                .filter(key -> packageName == null || packageName.equals(key.getPackageName()))
                 .collect(groupingBy(ShortcutKey::getPackageName,
                         mapping(ShortcutKey::getId, Collectors.toSet())));
 
@@ -431,6 +562,70 @@ public class BgDataModel {
         }
     }
 
+    /**
+     * Same as {@link #forAllWorkspaceItemInfos(UserHandle, Consumer)}, but only calls the
+     * {@code op} for items targeting one of the provided {@code packages}. Persisted items are
+     * looked up through the package index instead of iterating over all the items.
+     */
+    public void forAllWorkspaceItemInfos(
+            UserHandle userHandle, Set<String> packages, Consumer<WorkspaceItemInfo> op) {
+        for (ItemInfo info : getItemsForPackages(packages, userHandle)) {
+            if (info instanceof WorkspaceItemInfo) {
+                op.accept((WorkspaceItemInfo) info);
+            }
+        }
+
+        for (int i = extraItems.size() - 1; i >= 0; i--) {
+            for (ItemInfo info : extraItems.valueAt(i).items) {
+                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)
+                        && info.getTargetComponent() != null
+                        && packages.contains(info.getTargetComponent().getPackageName())) {
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+    }
+
+    /**
+     * An immutable copy of the model collections at the time it was published. The collections
+     * can not be modified, and the contained {@link ItemInfo}s are shared with the model, so
+     * readers should not modify them either.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot();
+
+        /** Incremented every time a new snapshot is published */
+        public final int version;
+
+        public final IntSparseArrayMap<ItemInfo> itemsIdMap;
+        public final List<ItemInfo> workspaceItems;
+        public final List<LauncherAppWidgetInfo> appWidgets;
+        public final IntSparseArrayMap<FolderInfo> folders;
+        public final IntSparseArrayMap<FixedContainerItems> extraItems;
+        public final Map<ComponentKey, Integer> deepShortcutMap;
+
+        private Snapshot() {
+            version = 0;
+            itemsIdMap = new IntSparseArrayMap<>().unmodifiableCopy();
+            workspaceItems = Collections.emptyList();
+            appWidgets = Collections.emptyList();
+            folders = new IntSparseArrayMap<FolderInfo>().unmodifiableCopy();
+            extraItems = new IntSparseArrayMap<FixedContainerItems>().unmodifiableCopy();
+            deepShortcutMap = Collections.emptyMap();
+        }
+
+        private Snapshot(int version, BgDataModel model) {
+            this.version = version;
+            itemsIdMap = model.itemsIdMap.unmodifiableCopy();
+            workspaceItems = Collections.unmodifiableList(new ArrayList<>(model.workspaceItems));
+            appWidgets = Collections.unmodifiableList(new ArrayList<>(model.appWidgets));
+            folders = model.folders.unmodifiableCopy();
+            extraItems = model.extraItems.unmodifiableCopy();
+            deepShortcutMap = Collections.unmodifiableMap(new HashMap<>(model.deepShortcutMap));
+        }
+    }
+
     /**
      * An object containing items corresponding to a fixed container
      */
@@ -488,6 +683,8 @@ public class BgDataModel {
         default void bindRestoreItemsChange(HashSet<ItemInfo> updates) { }
         default void bindWorkspaceComponentsRemoved(Predicate<ItemInfo> matcher) { }
         default void bindAllWidgets(List<WidgetsListBaseEntry> widgets) { }
+        default void bindWidgetsChanged(
+                Map<PackageUserKey, List<WidgetsListBaseEntry>> changedWidgets) { }
 
         /** Called when workspace has been bound. */
         default void onInitialBindComplete(IntSet boundPages, RunnableList pendingTasks,
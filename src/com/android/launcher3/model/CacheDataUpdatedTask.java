@@ -58,7 +58,7 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> updatedShortcuts = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, mPackages, si -> {
                 ComponentName cn = si.getTargetComponent();
                 if (si.itemType == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
                         && isValidShortcut(si) && cn != null
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cache of compiled statements for the frequent single row operations on the favorites table,
+ * so that the SQL is not compiled again for every move, resize or delete.
+ *
+ * Statements are only valid for the database they were compiled against, and must be closed
+ * using {@link #close()} when that database is closed or recreated.
+ */
+public class FavoritesStatementCache {
+
+    // Maximum number of statements compiled for arbitrary column sets
+    private static final int MAX_DYNAMIC_STATEMENTS = 8;
+
+    private static final String UPDATE_POSITION = "UPDATE " + Favorites.TABLE_NAME + " SET "
+            + Favorites.CONTAINER + "=?, "
+            + Favorites.SCREEN + "=?, "
+            + Favorites.CELLX + "=?, "
+            + Favorites.CELLY + "=?, "
+            + Favorites.RANK + "=?, "
+            + Favorites.MODIFIED + "=? WHERE " + Favorites._ID + "=?";
+
+    private static final String UPDATE_POSITION_AND_SPAN = "UPDATE " + Favorites.TABLE_NAME
+            + " SET "
+            + Favorites.CONTAINER + "=?, "
+            + Favorites.SCREEN + "=?, "
+            + Favorites.CELLX + "=?, "
+            + Favorites.CELLY + "=?, "
+            + Favorites.RANK + "=?, "
+            + Favorites.SPANX + "=?, "
+            + Favorites.SPANY + "=?, "
+            + Favorites.MODIFIED + "=? WHERE " + Favorites._ID + "=?";
+
+    private static final String DELETE_BY_ID = "DELETE FROM " + Favorites.TABLE_NAME
+            + " WHERE " + Favorites._ID + "=?";
+
+    private final SQLiteDatabase mDb;
+
+    private SQLiteStatement mUpdatePosition;
+    private SQLiteStatement mUpdatePositionAndSpan;
+    private SQLiteStatement mDeleteById;
+
+    private final LruCache<String, SQLiteStatement> mDynamicStatements =
+            new LruCache<String, SQLiteStatement>(MAX_DYNAMIC_STATEMENTS) {
+                @Override
+                protected void entryRemoved(boolean evicted, String key,
+                        SQLiteStatement oldValue, SQLiteStatement newValue) {
+                    oldValue.close();
+                }
+            };
+
+    public FavoritesStatementCache(@NonNull SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Returns true if the statements were compiled for the provided database
+     */
+    public boolean isFor(SQLiteDatabase db) {
+        return mDb == db;
+    }
+
+    /**
+     * Moves the item with the provided id, and returns the number of updated rows
+     */
+    public synchronized int updatePosition(int id, int container, int screenId, int cellX,
+            int cellY, int rank, long modified) {
+        if (mUpdatePosition == null) {
+            mUpdatePosition = mDb.compileStatement(UPDATE_POSITION);
+        }
+        SQLiteStatement s = mUpdatePosition;
+        s.bindLong(1, container);
+        s.bindLong(2, screenId);
+        s.bindLong(3, cellX);
+        s.bindLong(4, cellY);
+        s.bindLong(5, rank);
+        s.bindLong(6, modified);
+        s.bindLong(7, id);
+        return s.executeUpdateDelete();
+    }
+
+    /**
+     * Moves and resizes the item with the provided id, and returns the number of updated rows
+     */
+    public synchronized int updatePositionAndSpan(int id, int container, int screenId, int cellX,
+            int cellY, int rank, int spanX, int spanY, long modified) {
+        if (mUpdatePositionAndSpan == null) {
+            mUpdatePositionAndSpan = mDb.compileStatement(UPDATE_POSITION_AND_SPAN);
+        }
+        SQLiteStatement s = mUpdatePositionAndSpan;
+        s.bindLong(1, container);
+        s.bindLong(2, screenId);
+        s.bindLong(3, cellX);
+        s.bindLong(4, cellY);
+        s.bindLong(5, rank);
+        s.bindLong(6, spanX);
+        s.bindLong(7, spanY);
+        s.bindLong(8, modified);
+        s.bindLong(9, id);
+        return s.executeUpdateDelete();
+    }
+
+    /**
+     * Deletes the item with the provided id, and returns the number of deleted rows
+     */
+    public synchronized int delete(int id) {
+        if (mDeleteById == null) {
+            mDeleteById = mDb.compileStatement(DELETE_BY_ID);
+        }
+        mDeleteById.bindLong(1, id);
+        return mDeleteById.executeUpdateDelete();
+    }
+
+    /**
+     * Updates the columns in {@param values} for the item with the provided id, and returns the
+     * number of updated rows. Statements are cached per set of columns.
+     */
+    public synchronized int update(int id, @NonNull ContentValues values) {
+        List<String> columns = sortedColumns(values);
+        String key = "U:" + String.join(",", columns);
+        SQLiteStatement s = mDynamicStatements.get(key);
+        if (s == null) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(Favorites.TABLE_NAME)
+                    .append(" SET ");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(columns.get(i)).append("=?");
+            }
+            sql.append(" WHERE ").append(Favorites._ID).append("=?");
+            s = mDb.compileStatement(sql.toString());
+            mDynamicStatements.put(key, s);
+        }
+        bindValues(s, columns, values);
+        s.bindLong(columns.size() + 1, id);
+        return s.executeUpdateDelete();
+    }
+
+    /**
+     * Inserts a new row with the provided {@param values}, and returns its row id or -1
+     */
+    public synchronized long insert(@NonNull ContentValues values) {
+        List<String> columns = sortedColumns(values);
+        String key = "I:" + String.join(",", columns);
+        SQLiteStatement s = mDynamicStatements.get(key);
+        if (s == null) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(Favorites.TABLE_NAME)
+                    .append(" (").append(String.join(",", columns)).append(") VALUES (");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i > 0 ? ",?" : "?");
+            }
+            sql.append(")");
+            s = mDb.compileStatement(sql.toString());
+            mDynamicStatements.put(key, s);
+        }
+        bindValues(s, columns, values);
+        return s.executeInsert();
+    }
+
+    /**
+     * Closes all the compiled statements
+     */
+    public synchronized void close() {
+        closeQuietly(mUpdatePosition);
+        closeQuietly(mUpdatePositionAndSpan);
+        closeQuietly(mDeleteById);
+        mUpdatePosition = mUpdatePositionAndSpan = mDeleteById = null;
+        mDynamicStatements.evictAll();
+    }
+
+    private static List<String> sortedColumns(ContentValues values) {
+        List<String> columns = new ArrayList<>(values.keySet());
+        Collections.sort(columns);
+        return columns;
+    }
+
+    private static void bindValues(SQLiteStatement s, List<String> columns, ContentValues values) {
+        s.clearBindings();
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = values.get(columns.get(i));
+            int index = i + 1;
+            if (value == null) {
+                s.bindNull(index);
+            } else if (value instanceof byte[]) {
+                s.bindBlob(index, (byte[]) value);
+            } else if (value instanceof Float || value instanceof Double) {
+                s.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                s.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                s.bindLong(index, (Boolean) value ? 1 : 0);
+            } else {
+                s.bindString(index, value.toString());
+            }
+        }
+    }
+
+    private static void closeQuietly(SQLiteStatement s) {
+        if (s != null) {
+            s.close();
+        }
+    }
+}
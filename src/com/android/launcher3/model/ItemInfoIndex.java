@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ComponentName;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.HashMap;
+
+/**
+ * Secondary indexes over the items in {@link BgDataModel#itemsIdMap}, keyed by target package
+ * and user, by container and by workspace screen.
+ *
+ * Items are indexed under the values they had when they were last added or updated. Since
+ * {@link ItemInfo} is mutable, callers resolving ids from this index must still check that the
+ * item matches what they are looking for.
+ */
+public class ItemInfoIndex {
+
+    private final HashMap<PackageUserKey, IntSet> mPackageIndex = new HashMap<>();
+    private final IntSparseArrayMap<IntSet> mContainerIndex = new IntSparseArrayMap<>();
+    private final IntSparseArrayMap<IntSet> mScreenIndex = new IntSparseArrayMap<>();
+
+    /** Keys under which each item id is currently indexed */
+    private final IntSparseArrayMap<IndexedKeys> mIndexedKeys = new IntSparseArrayMap<>();
+
+    private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+
+    /**
+     * Adds the item to all the indexes, replacing any previous entry for the same id
+     */
+    public void add(@NonNull ItemInfo item) {
+        remove(item.id);
+
+        IndexedKeys keys = new IndexedKeys();
+        ComponentName cn = item.getTargetComponent();
+        if (cn != null && item.user != null) {
+            keys.packageKey = new PackageUserKey(cn.getPackageName(), item.user);
+            getOrCreate(mPackageIndex, keys.packageKey).add(item.id);
+        }
+        keys.container = item.container;
+        getOrCreate(mContainerIndex, item.container).add(item.id);
+        if (item.container == Favorites.CONTAINER_DESKTOP) {
+            keys.screenId = item.screenId;
+            getOrCreate(mScreenIndex, item.screenId).add(item.id);
+        }
+        mIndexedKeys.put(item.id, keys);
+    }
+
+    /**
+     * Re-indexes the item after its container, screen or target was changed in place
+     */
+    public void update(@NonNull ItemInfo item) {
+        if (mIndexedKeys.containsKey(item.id)) {
+            add(item);
+        }
+    }
+
+    /**
+     * Removes the item with the provided id from all the indexes
+     */
+    public void remove(int id) {
+        IndexedKeys keys = mIndexedKeys.get(id);
+        if (keys == null) {
+            return;
+        }
+        mIndexedKeys.remove(id);
+        if (keys.packageKey != null) {
+            removeFrom(mPackageIndex.get(keys.packageKey), id);
+        }
+        removeFrom(mContainerIndex.get(keys.container), id);
+        if (keys.container == Favorites.CONTAINER_DESKTOP) {
+            removeFrom(mScreenIndex.get(keys.screenId), id);
+        }
+    }
+
+    public void clear() {
+        mPackageIndex.clear();
+        mContainerIndex.clear();
+        mScreenIndex.clear();
+        mIndexedKeys.clear();
+    }
+
+    /**
+     * Returns the ids of items targeting {@param packageName} for the {@param user}, or null
+     */
+    @Nullable
+    public IntSet getIdsForPackage(@NonNull String packageName, @NonNull UserHandle user) {
+        mTempKey.update(packageName, user);
+        return mPackageIndex.get(mTempKey);
+    }
+
+    /**
+     * Returns the ids of items directly inside the {@param container}, or null
+     */
+    @Nullable
+    public IntSet getIdsInContainer(int container) {
+        return mContainerIndex.get(container);
+    }
+
+    /**
+     * Returns the ids of items placed directly on the workspace {@param screenId}, or null
+     */
+    @Nullable
+    public IntSet getIdsOnScreen(int screenId) {
+        return mScreenIndex.get(screenId);
+    }
+
+    /**
+     * Returns all the workspace screens which have at least one item placed directly on them
+     */
+    @NonNull
+    public IntArray getOccupiedScreens() {
+        IntArray screens = new IntArray(mScreenIndex.size());
+        for (int i = 0; i < mScreenIndex.size(); i++) {
+            if (!mScreenIndex.valueAt(i).isEmpty()) {
+                screens.add(mScreenIndex.keyAt(i));
+            }
+        }
+        return screens;
+    }
+
+    private static void removeFrom(@Nullable IntSet set, int id) {
+        if (set != null) {
+            set.remove(id);
+        }
+    }
+
+    private static <K> IntSet getOrCreate(HashMap<K, IntSet> map, K key) {
+        return map.computeIfAbsent(key, k -> new IntSet());
+    }
+
+    private static IntSet getOrCreate(IntSparseArrayMap<IntSet> map, int key) {
+        IntSet set = map.get(key);
+        if (set == null) {
+            set = new IntSet();
+            map.put(key, set);
+        }
+        return set;
+    }
+
+    private static class IndexedKeys {
+        @Nullable PackageUserKey packageKey;
+        int container;
+        int screenId;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.content.ContentValues;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Write-behind queue for updates to existing rows of the favorites table.
+ *
+ * Updates to the same item are merged, and written in a single transaction once no new update
+ * was queued for a short while. Pending updates are also written before any other model task
+ * is queued, so that they are never reordered with respect to other database operations.
+ */
+public class ItemUpdateQueue {
+
+    private static final String TAG = "ItemUpdateQueue";
+
+    // Time without new updates after which pending updates are written
+    private static final long QUIET_PERIOD_MS = 100;
+    // Maximum time an update can stay pending
+    private static final long MAX_DELAY_MS = 500;
+
+    private final LauncherModel mModel;
+    private final BgDataModel mDataModel;
+
+    private final Runnable mDelayedFlush = this::flushOnModelThread;
+
+    // Guarded by this
+    private final LinkedHashMap<Integer, PendingUpdate> mPendingUpdates = new LinkedHashMap<>();
+    private long mFirstPendingTime;
+
+    public ItemUpdateQueue(LauncherModel model, BgDataModel dataModel) {
+        mModel = model;
+        mDataModel = dataModel;
+    }
+
+    /**
+     * Queues the {@param update}, merging it with any pending update of the same item
+     */
+    public void enqueue(@NonNull PendingUpdate update) {
+        long delay;
+        synchronized (this) {
+            long now = SystemClock.uptimeMillis();
+            if (mPendingUpdates.isEmpty()) {
+                mFirstPendingTime = now;
+            }
+            PendingUpdate older = mPendingUpdates.get(update.itemId);
+            if (older != null) {
+                update.mergeOlder(older);
+            }
+            mPendingUpdates.put(update.itemId, update);
+            delay = Math.max(0, Math.min(QUIET_PERIOD_MS, mFirstPendingTime + MAX_DELAY_MS - now));
+        }
+        MODEL_EXECUTOR.getHandler().removeCallbacks(mDelayedFlush);
+        MODEL_EXECUTOR.getHandler().postDelayed(mDelayedFlush, delay);
+    }
+
+    /**
+     * Queues all the pending updates on the model thread, ahead of any task queued after this
+     * call.
+     */
+    public void flush() {
+        List<PendingUpdate> updates = drain();
+        if (!updates.isEmpty()) {
+            MODEL_EXECUTOR.execute(() -> writeUpdates(updates));
+        }
+    }
+
+    /**
+     * Writes all the pending updates immediately. Must be called on the model thread.
+     */
+    @WorkerThread
+    public void flushOnModelThread() {
+        List<PendingUpdate> updates = drain();
+        if (!updates.isEmpty()) {
+            writeUpdates(updates);
+        }
+    }
+
+    private List<PendingUpdate> drain() {
+        MODEL_EXECUTOR.getHandler().removeCallbacks(mDelayedFlush);
+        synchronized (this) {
+            List<PendingUpdate> updates = new ArrayList<>(mPendingUpdates.values());
+            mPendingUpdates.clear();
+            return updates;
+        }
+    }
+
+    @WorkerThread
+    private void writeUpdates(List<PendingUpdate> updates) {
+        int loadId = mModel.getLastLoadId();
+        updates.removeIf(u -> {
+            if (u.loadId != loadId) {
+                Log.d(TAG, "Model changed before the update could be written: " + u.itemId);
+                return true;
+            }
+            return false;
+        });
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        ModelDbController dbController = mModel.getModelDbController();
+        try (SQLiteTransaction t = dbController.newTransaction()) {
+            for (PendingUpdate update : updates) {
+                dbController.updateItem(update.itemId, update.mValues);
+            }
+            t.commit();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write " + updates.size() + " item updates", e);
+            return;
+        }
+        updates.forEach(PendingUpdate::onWritten);
+        mDataModel.publishSnapshot();
+    }
+
+    /**
+     * An update of the database row of a single item
+     */
+    public abstract static class PendingUpdate {
+
+        final int itemId;
+        final int loadId;
+        private ContentValues mValues;
+
+        public PendingUpdate(int itemId, int loadId, @NonNull ContentValues values) {
+            this.itemId = itemId;
+            this.loadId = loadId;
+            mValues = values;
+        }
+
+        /**
+         * Called when this update replaces an {@param older} pending update of the same item.
+         * Values set by this update take precedence over the older ones.
+         */
+        protected void mergeOlder(@NonNull PendingUpdate older) {
+            ContentValues merged = new ContentValues(older.mValues);
+            merged.putAll(mValues);
+            mValues = merged;
+        }
+
+        /**
+         * Called on the model thread once the update has been written to the database
+         */
+        @WorkerThread
+        protected abstract void onWritten();
+    }
+}
@@ -66,6 +66,7 @@ import com.android.launcher3.folder.FolderNameInfos;
 import com.android.launcher3.folder.FolderNameProvider;
 import com.android.launcher3.icons.ComponentWithLabelAndIcon;
 import com.android.launcher3.icons.ComponentWithLabelAndIcon.ComponentWithIconCachingLogic;
+import com.android.launcher3.icons.IconAtlas;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.icons.LauncherActivityCachingLogic;
 import com.android.launcher3.icons.ShortcutCachingLogic;
@@ -96,6 +97,8 @@ import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
 
+import java.io.File;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -104,6 +107,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -144,6 +148,10 @@ public class LoaderTask implements Runnable {
 
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
+    private boolean mCanUseWorkspaceSnapshot = false;
+    private boolean mLoadedFromWorkspaceSnapshot = false;
+    @Nullable
+    private IconAtlas mIconAtlas;
     private String mDbName;
 
     public LoaderTask(@NonNull LauncherAppState app, AllAppsList bgAllAppsList, BgDataModel bgModel,
@@ -178,6 +186,13 @@ public class LoaderTask implements Runnable {
     }
 
     private void sendFirstScreenActiveInstallsBroadcast() {
+        mFirstScreenBroadcast.sendBroadcasts(mApp.getContext(), getFirstScreenItems());
+    }
+
+    /**
+     * Returns the items of the first screen and the hotseat, including the items of their folders
+     */
+    private ArrayList<ItemInfo> getFirstScreenItems() {
         ArrayList<ItemInfo> firstScreenItems = new ArrayList<>();
         ArrayList<ItemInfo> allItems = mBgDataModel.getAllWorkspaceItems();
 
@@ -188,7 +203,7 @@ public class LoaderTask implements Runnable {
 
         filterCurrentWorkspaceItems(firstScreens, allItems, firstScreenItems,
                 new ArrayList<>() /* otherScreenItems are ignored */);
-        mFirstScreenBroadcast.sendBroadcasts(mApp.getContext(), firstScreenItems);
+        return firstScreenItems;
     }
 
     public void run() {
@@ -217,6 +232,7 @@ public class LoaderTask implements Runnable {
             }
 
             verifyNotStopped();
+            mBgDataModel.publishSnapshot();
             mLauncherBinder.bindWorkspace(true /* incrementBindId */, /* isBindSync= */ false);
             logASplit("bindWorkspace");
 
@@ -225,19 +241,160 @@ public class LoaderTask implements Runnable {
             sendFirstScreenActiveInstallsBroadcast();
             logASplit("sendFirstScreenActiveInstallsBroadcast");
 
-            // Take a break
+            if (FeatureFlags.ENABLE_PARALLEL_LOADER.get()) {
+                loadAndBindRemainingInParallel(allShortcuts, memoryLogger);
+            } else {
+                loadAndBindRemaining(allShortcuts);
+            }
+
+            if (mCanUseWorkspaceSnapshot && !mLoadedFromWorkspaceSnapshot) {
+                verifyNotStopped();
+                mApp.getModel().getModelDbController()
+                        .writeWorkspaceSnapshot(mBgDataModel, mUserManagerState);
+                logASplit("writeWorkspaceSnapshot");
+            }
+            if (mIconAtlas != null) {
+                verifyNotStopped();
+                mIconAtlas.write(getFirstScreenItems());
+                logASplit("writeIconAtlas");
+            }
+            mBgDataModel.publishSnapshot();
+            transaction.commit();
+            memoryLogger.clearLogs();
+        } catch (CancellationException e) {
+            // Loader stopped, ignore
+            logASplit("Cancelled");
+        } catch (Exception e) {
+            memoryLogger.printLogs();
+            throw e;
+        }
+        TraceHelper.INSTANCE.endSection();
+    }
+
+    /**
+     * Loads and binds all apps, deep shortcuts, widgets and folder names one after another.
+     */
+    private void loadAndBindRemaining(List<ShortcutInfo> allShortcuts) {
+        // Take a break
+        waitForIdle();
+        logASplit("step 1 complete");
+        verifyNotStopped();
+
+        // second step
+        Trace.beginSection("LoadAllApps");
+        List<LauncherActivityInfo> allActivityList;
+        try {
+           allActivityList = loadAllApps();
+        } finally {
+            Trace.endSection();
+        }
+        logASplit("loadAllApps");
+
+        if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
+            mModelDelegate.loadAndBindAllAppsItems(mUserManagerState,
+                    mLauncherBinder.mCallbacksList, mShortcutKeyToPinnedShortcuts);
+            logASplit("allAppsDelegateItems");
+        }
+        verifyNotStopped();
+        mLauncherBinder.bindAllApps();
+        logASplit("bindAllApps");
+
+        verifyNotStopped();
+        IconCacheUpdateHandler updateHandler = mIconCache.getUpdateHandler();
+        setIgnorePackages(updateHandler);
+        updateHandler.updateIcons(allActivityList,
+                LauncherActivityCachingLogic.newInstance(mApp.getContext()),
+                mApp.getModel()::onPackageIconsUpdated);
+        logASplit("update icon cache");
+
+        verifyNotStopped();
+        logASplit("save shortcuts in icon cache");
+        updateHandler.updateIcons(allShortcuts, new ShortcutCachingLogic(),
+                mApp.getModel()::onPackageIconsUpdated);
+
+        // Take a break
+        waitForIdle();
+        logASplit("step 2 complete");
+        verifyNotStopped();
+
+        // third step
+        List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
+        logASplit("loadDeepShortcuts");
+
+        verifyNotStopped();
+        mLauncherBinder.bindDeepShortcuts();
+        logASplit("bindDeepShortcuts");
+
+        verifyNotStopped();
+        logASplit("save deep shortcuts in icon cache");
+        updateHandler.updateIcons(allDeepShortcuts,
+                new ShortcutCachingLogic(), (pkgs, user) -> { });
+
+        // Take a break
+        waitForIdle();
+        logASplit("step 3 complete");
+        verifyNotStopped();
+
+        // fourth step
+        List<ComponentWithLabelAndIcon> allWidgetsList =
+                mBgDataModel.widgetsModel.update(mApp, null);
+        logASplit("load widgets");
+
+        verifyNotStopped();
+        mLauncherBinder.bindWidgets();
+        logASplit("bindWidgets");
+        verifyNotStopped();
+
+        if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
+            mModelDelegate.loadAndBindOtherItems(mLauncherBinder.mCallbacksList);
+            logASplit("otherDelegateItems");
+            verifyNotStopped();
+        }
+
+        updateHandler.updateIcons(allWidgetsList,
+                new ComponentWithIconCachingLogic(mApp.getContext(), true),
+                mApp.getModel()::onWidgetLabelsUpdated);
+        logASplit("save widgets in icon cache");
+
+        // fifth step
+        loadFolderNames();
+
+        verifyNotStopped();
+        updateHandler.finish();
+        logASplit("finish icon update");
+
+        mModelDelegate.modelLoadComplete();
+    }
+
+    /**
+     * Loads all apps, deep shortcuts and widgets concurrently using a {@link LoaderTaskGraph},
+     * while binding the results in the same order as the serial loader.
+     *
+     * The loader holds the model thread until the graph is done, so no model task can run in the
+     * meantime. {@link #mBgAllAppsList} is only written by the all apps phase, and only read by
+     * the loader thread and the other phases once that phase has completed. Folder names read
+     * {@link BgDataModel#folders} and are still loaded on the loader thread.
+     */
+    private void loadAndBindRemainingInParallel(
+            List<ShortcutInfo> allShortcuts, LoaderMemoryLogger memoryLogger) {
+        LoaderTaskGraph graph = new LoaderTaskGraph(this::verifyNotStopped);
+        LoaderTaskGraph.Phase<List<LauncherActivityInfo>> allAppsPhase =
+                graph.addPhase("LoadAllApps", this::loadAllApps);
+        LoaderTaskGraph.Phase<List<ShortcutInfo>> deepShortcutsPhase =
+                graph.addPhase("LoadDeepShortcuts", this::loadDeepShortcutsAtomically,
+                        allAppsPhase);
+        LoaderTaskGraph.Phase<List<ComponentWithLabelAndIcon>> widgetsPhase =
+                graph.addPhase("LoadWidgets",
+                        () -> mBgDataModel.widgetsModel.updateAllFromLoaderPhase(mApp));
+
+        // Start loading while the workspace binding settles down on the UI thread.
+        graph.start();
+        try {
             waitForIdle();
             logASplit("step 1 complete");
             verifyNotStopped();
 
-            // second step
-            Trace.beginSection("LoadAllApps");
-            List<LauncherActivityInfo> allActivityList;
-            try {
-               allActivityList = loadAllApps();
-            } finally {
-                Trace.endSection();
-            }
+            List<LauncherActivityInfo> allActivityList = graph.await(allAppsPhase);
             logASplit("loadAllApps");
 
             if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
@@ -258,38 +415,31 @@ public class LoaderTask implements Runnable {
             logASplit("update icon cache");
 
             verifyNotStopped();
-            logASplit("save shortcuts in icon cache");
             updateHandler.updateIcons(allShortcuts, new ShortcutCachingLogic(),
                     mApp.getModel()::onPackageIconsUpdated);
+            logASplit("save shortcuts in icon cache");
 
-            // Take a break
             waitForIdle();
             logASplit("step 2 complete");
             verifyNotStopped();
 
-            // third step
-            List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
+            List<ShortcutInfo> allDeepShortcuts = graph.await(deepShortcutsPhase);
             logASplit("loadDeepShortcuts");
-
             verifyNotStopped();
             mLauncherBinder.bindDeepShortcuts();
             logASplit("bindDeepShortcuts");
 
             verifyNotStopped();
-            logASplit("save deep shortcuts in icon cache");
             updateHandler.updateIcons(allDeepShortcuts,
                     new ShortcutCachingLogic(), (pkgs, user) -> { });
+            logASplit("save deep shortcuts in icon cache");
 
-            // Take a break
             waitForIdle();
             logASplit("step 3 complete");
             verifyNotStopped();
 
-            // fourth step
-            List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
+            List<ComponentWithLabelAndIcon> allWidgetsList = graph.await(widgetsPhase);
             logASplit("load widgets");
-
             verifyNotStopped();
             mLauncherBinder.bindWidgets();
             logASplit("bindWidgets");
@@ -306,24 +456,21 @@ public class LoaderTask implements Runnable {
                     mApp.getModel()::onWidgetLabelsUpdated);
             logASplit("save widgets in icon cache");
 
-            // fifth step
             loadFolderNames();
+            logASplit("loadFolderNames");
 
             verifyNotStopped();
             updateHandler.finish();
             logASplit("finish icon update");
 
             mModelDelegate.modelLoadComplete();
-            transaction.commit();
-            memoryLogger.clearLogs();
-        } catch (CancellationException e) {
-            // Loader stopped, ignore
-            logASplit("Cancelled");
-        } catch (Exception e) {
-            memoryLogger.printLogs();
-            throw e;
+        } finally {
+            graph.cancelAndWait();
+            for (String timing : graph.getTimingSummary()) {
+                memoryLogger.addLog(Log.DEBUG, TAG, timing);
+                logASplit(timing);
+            }
         }
-        TraceHelper.INSTANCE.endSection();
     }
 
     public synchronized void stopLocked() {
@@ -341,6 +488,7 @@ public class LoaderTask implements Runnable {
         } finally {
             Trace.endSection();
         }
+        mBgDataModel.publishSnapshot();
         logASplit("loadWorkspace");
 
         if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
@@ -414,14 +562,39 @@ public class LoaderTask implements Runnable {
                     unlockedUsers.put(serialNo, userUnlocked);
                 }
 
-                List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos = new ArrayList<>();
+                mCanUseWorkspaceSnapshot = FeatureFlags.ENABLE_WORKSPACE_SNAPSHOT.get()
+                        && TextUtils.isEmpty(selection) && !isSafeMode && isSdCardReady
+                        && mApp.getInvariantDeviceProfile().dbFile.equals(mDbName);
+                WorkspaceSnapshot snapshot = mCanUseWorkspaceSnapshot
+                        ? dbController.readWorkspaceSnapshot(mUserManagerState) : null;
+                mLoadedFromWorkspaceSnapshot = snapshot != null
+                        && loadWorkspaceFromSnapshot(snapshot, unlockedUsers, allDeepShortcuts)
+                        && verifyWorkspaceSnapshot(dbController);
+                mIconAtlas = FeatureFlags.ENABLE_ICON_ATLAS.get()
+                        && TextUtils.isEmpty(selection)
+                        && mApp.getInvariantDeviceProfile().dbFile.equals(mDbName)
+                        ? new IconAtlas(context, mIconCache,
+                                new File(context.getCacheDir(), mDbName + ".icons"),
+                                mApp.getInvariantDeviceProfile().iconBitmapSize)
+                        : null;
+
+                if (!mLoadedFromWorkspaceSnapshot) {
+                    if (snapshot != null) {
+                        // Discard any item added from the snapshot and load from the database.
+                        mBgDataModel.clear();
+                        allDeepShortcuts.clear();
+                    }
+                    List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos =
+                            new ArrayList<>();
 
-                while (!mStopped && c.moveToNext()) {
-                    processWorkspaceItem(c, memoryLogger, installingPkgs, isSdCardReady,
-                            tempPackageKey, widgetHelper, pmHelper,
-                            iconRequestInfos, unlockedUsers, isSafeMode, allDeepShortcuts);
+                    while (!mStopped && c.moveToNext()) {
+                        processWorkspaceItem(c, memoryLogger, installingPkgs, isSdCardReady,
+                                tempPackageKey, widgetHelper, pmHelper,
+                                iconRequestInfos, unlockedUsers, isSafeMode, allDeepShortcuts);
+                    }
+                    tryLoadWorkspaceIconsInBulk(iconRequestInfos);
                 }
-                tryLoadWorkspaceIconsInBulk(iconRequestInfos);
+                mCanUseWorkspaceSnapshot &= mPendingPackages.isEmpty();
             } finally {
                 IOUtils.closeSilently(c);
             }
@@ -864,8 +1037,132 @@ public class LoaderTask implements Runnable {
         }
     }
 
+    /**
+     * Adds the items from {@param snapshot} to the model without walking the database cursor.
+     * Returns false if any item can not be restored from the snapshot alone, in which case the
+     * caller must discard the partially loaded model.
+     */
+    private boolean loadWorkspaceFromSnapshot(WorkspaceSnapshot snapshot,
+            LongSparseArray<Boolean> unlockedUsers, List<ShortcutInfo> allDeepShortcuts) {
+        Trace.beginSection("LoadWorkspaceFromSnapshot");
+        try {
+            Context context = mApp.getContext();
+            List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos = new ArrayList<>();
+            for (WorkspaceSnapshot.Item item : snapshot.items) {
+                if (mStopped) {
+                    // Let the caller discard the partially loaded model
+                    return false;
+                }
+                UserHandle user = mUserManagerState.allUsers.get(item.userSerial);
+                if (user == null) {
+                    return false;
+                }
+                int disabledState = mUserManagerState.isUserQuiet(item.userSerial)
+                        ? WorkspaceItemInfo.FLAG_DISABLED_QUIET_USER : 0;
+
+                switch (item.itemType) {
+                    case Favorites.ITEM_TYPE_APPLICATION: {
+                        WorkspaceItemInfo info = new WorkspaceItemInfo();
+                        WorkspaceSnapshot.applyCommonProperties(item, info, user);
+                        info.itemType = item.itemType;
+                        info.intent = Intent.parseUri(item.intentUri, 0);
+                        info.runtimeStatusFlags = item.runtimeStatusFlags | disabledState;
+                        iconRequestInfos.add(new IconRequestInfo<>(info, null,
+                                !WorkspaceSnapshot.isOnWorkspaceOrHotseat(item)));
+                        mBgDataModel.addItem(context, info, false);
+                        break;
+                    }
+                    case Favorites.ITEM_TYPE_DEEP_SHORTCUT: {
+                        if (!unlockedUsers.get(item.userSerial, false)) {
+                            return false;
+                        }
+                        Intent intent = Intent.parseUri(item.intentUri, 0);
+                        ShortcutInfo pinnedShortcut = mShortcutKeyToPinnedShortcuts.get(
+                                ShortcutKey.fromIntent(intent, user));
+                        if (pinnedShortcut == null) {
+                            return false;
+                        }
+                        WorkspaceItemInfo info = new WorkspaceItemInfo(pinnedShortcut, context);
+                        mIconCache.getShortcutIcon(info, pinnedShortcut, i -> false);
+                        if (mIconCache.isDefaultIcon(info.bitmap, user)) {
+                            // The last saved icon is only available in the database
+                            return false;
+                        }
+                        WorkspaceSnapshot.applyCommonProperties(item, info, user);
+                        info.runtimeStatusFlags |= item.runtimeStatusFlags | disabledState;
+                        allDeepShortcuts.add(pinnedShortcut);
+                        mBgDataModel.addItem(context, info, false);
+                        break;
+                    }
+                    case Favorites.ITEM_TYPE_FOLDER:
+                    case Favorites.ITEM_TYPE_APP_PAIR: {
+                        FolderInfo folderInfo = mBgDataModel.findOrMakeFolder(item.id);
+                        WorkspaceSnapshot.applyCommonProperties(item, folderInfo, user);
+                        folderInfo.itemType = item.itemType;
+                        folderInfo.title = item.title;
+                        mBgDataModel.addItem(context, folderInfo, false);
+                        break;
+                    }
+                    case Favorites.ITEM_TYPE_APPWIDGET: {
+                        LauncherAppWidgetInfo appWidgetInfo = new LauncherAppWidgetInfo(
+                                item.appWidgetId,
+                                ComponentName.unflattenFromString(item.appWidgetProvider));
+                        WorkspaceSnapshot.applyCommonProperties(item, appWidgetInfo, user);
+                        appWidgetInfo.restoreStatus = LauncherAppWidgetInfo.RESTORE_COMPLETED;
+                        appWidgetInfo.sourceContainer = item.appWidgetSource;
+                        mBgDataModel.addItem(context, appWidgetInfo, false);
+                        break;
+                    }
+                    default:
+                        return false;
+                }
+            }
+
+            mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
+            for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : iconRequestInfos) {
+                WorkspaceItemInfo wai = iconRequestInfo.itemInfo;
+                if (mIconCache.isDefaultIcon(wai.bitmap, wai.user)) {
+                    // The icon cache was cleared, use the icon and title saved in the database
+                    return false;
+                }
+            }
+            return true;
+        } catch (URISyntaxException e) {
+            Log.e(TAG, "Invalid intent in workspace snapshot", e);
+            return false;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Checks that the workspace loaded from a snapshot still matches the database before it is
+     * bound. Otherwise the snapshot is deleted, and the caller loads the workspace from the
+     * database instead.
+     */
+    private boolean verifyWorkspaceSnapshot(ModelDbController dbController) {
+        boolean matches = WorkspaceSnapshot.matchesDatabase(dbController, mBgDataModel);
+        if (!matches) {
+            FileLog.d(TAG, "Workspace snapshot is out of date, loading from the database");
+            dbController.deleteWorkspaceSnapshot();
+        }
+        logASplit("verifyWorkspaceSnapshot");
+        return matches;
+    }
+
     private void tryLoadWorkspaceIconsInBulk(
             List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos) {
+        if (mIconAtlas != null) {
+            // The first screen and hotseat icons, which are drawn first, are loaded as they were
+            // drawn during the last load instead of being decoded again
+            Trace.beginSection("LoadWorkspaceIconsFromAtlas");
+            try {
+                int count = mIconAtlas.loadIcons(iconRequestInfos);
+                logASplit("loadIconsFromAtlas: " + count);
+            } finally {
+                Trace.endSection();
+            }
+        }
         Trace.beginSection("LoadWorkspaceIconsInBulk");
         try {
             mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
@@ -907,9 +1204,12 @@ public class LoaderTask implements Runnable {
             IntArray deletedFolderIds = mApp.getModel().getModelDbController().deleteEmptyFolders();
             synchronized (mBgDataModel) {
                 for (int folderId : deletedFolderIds) {
-                    mBgDataModel.workspaceItems.remove(mBgDataModel.folders.get(folderId));
-                    mBgDataModel.folders.remove(folderId);
-                    mBgDataModel.itemsIdMap.remove(folderId);
+                    ItemInfo folder = mBgDataModel.itemsIdMap.get(folderId);
+                    if (folder != null) {
+                        mBgDataModel.removeItem(mApp.getContext(), folder);
+                    } else {
+                        mBgDataModel.folders.remove(folderId);
+                    }
                 }
             }
         }
@@ -1003,16 +1303,41 @@ public class LoaderTask implements Runnable {
     }
 
     private List<ShortcutInfo> loadDeepShortcuts() {
-        List<ShortcutInfo> allShortcuts = new ArrayList<>();
         mBgDataModel.deepShortcutMap.clear();
+        return queryDeepShortcuts((user, shortcuts) ->
+                mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts));
+    }
+
+    /**
+     * Same as {@link #loadDeepShortcuts()} but publishes the shortcut counts to the model in a
+     * single step, so that it can safely run outside the loader thread.
+     */
+    private List<ShortcutInfo> loadDeepShortcutsAtomically() {
+        Map<UserHandle, List<ShortcutInfo>> shortcutsByUser = new ArrayMap<>();
+        List<ShortcutInfo> allShortcuts = queryDeepShortcuts(shortcutsByUser::put);
 
+        synchronized (mBgDataModel) {
+            mBgDataModel.deepShortcutMap.clear();
+            shortcutsByUser.forEach((user, shortcuts) ->
+                    mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts));
+        }
+        return allShortcuts;
+    }
+
+    /**
+     * Queries the deep shortcuts of all the unlocked users, passing the shortcuts of each user to
+     * {@param userShortcutsConsumer}, and returns all of them
+     */
+    private List<ShortcutInfo> queryDeepShortcuts(
+            BiConsumer<UserHandle, List<ShortcutInfo>> userShortcutsConsumer) {
+        List<ShortcutInfo> allShortcuts = new ArrayList<>();
         if (mBgAllAppsList.hasShortcutHostPermission()) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
                     List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
                             .query(ShortcutRequest.ALL);
                     allShortcuts.addAll(shortcuts);
-                    mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
+                    userShortcutsConsumer.accept(user, shortcuts);
                 }
             }
         }
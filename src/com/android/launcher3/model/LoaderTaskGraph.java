@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.os.Process.THREAD_PRIORITY_DEFAULT;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.util.Executors.SimpleThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A small dependency graph of loader phases used by {@link LoaderTask}. Phases whose dependencies
+ * have completed are run concurrently on a bounded worker pool, while the loader thread waits for
+ * individual results (in the same order as the serial loader) to bind them.
+ */
+public class LoaderTaskGraph {
+
+    private static final int POOL_SIZE =
+            Math.max(Math.min(Runtime.getRuntime().availableProcessors() - 1, 3), 1);
+
+    /**
+     * Bounded pool shared by all loader graphs. Only one {@link LoaderTask} runs at a time, and a
+     * graph always waits for its running phases before the loader returns.
+     */
+    private static final ThreadPoolExecutor LOADER_PHASE_EXECUTOR = new ThreadPoolExecutor(
+            POOL_SIZE, POOL_SIZE, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new SimpleThreadFactory("launcher-loader-phase-", THREAD_PRIORITY_DEFAULT));
+
+    static {
+        LOADER_PHASE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final ArrayList<Phase<?>> mPhases = new ArrayList<>();
+    private final Executor mExecutor;
+    private final Runnable mCancellationCheck;
+
+    private long mStartTime;
+    private int mRunningCount;
+    private boolean mCancelled;
+
+    /**
+     * @param cancellationCheck called periodically while waiting for a result, expected to throw
+     *                          {@link CancellationException} when the loader has been stopped.
+     */
+    public LoaderTaskGraph(@NonNull Runnable cancellationCheck) {
+        this(LOADER_PHASE_EXECUTOR, cancellationCheck);
+    }
+
+    public LoaderTaskGraph(@NonNull Executor executor, @NonNull Runnable cancellationCheck) {
+        mExecutor = executor;
+        mCancellationCheck = cancellationCheck;
+    }
+
+    /**
+     * Adds a new phase which runs {@code work} once all the {@code dependencies} have completed.
+     * All phases must be added before calling {@link #start()}.
+     */
+    public synchronized <T> Phase<T> addPhase(
+            @NonNull String name, @NonNull Supplier<T> work, Phase<?>... dependencies) {
+        if (mStartTime != 0) {
+            throw new IllegalStateException("Phase added after the graph was started: " + name);
+        }
+        Phase<T> phase = new Phase<>(name, work, dependencies);
+        for (Phase<?> dependency : dependencies) {
+            dependency.mDependents.add(phase);
+        }
+        mPhases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Schedules all the phases without any dependency
+     */
+    public synchronized void start() {
+        mStartTime = SystemClock.elapsedRealtime();
+        // Collect the roots first, as completing a phase can already release its dependents.
+        ArrayList<Phase<?>> roots = new ArrayList<>();
+        for (Phase<?> phase : mPhases) {
+            if (phase.mDependencies.length == 0) {
+                roots.add(phase);
+            }
+        }
+        roots.forEach(this::schedule);
+    }
+
+    /**
+     * Blocks until the provided phase has completed and returns its result, rethrowing any
+     * exception thrown by the phase or by one of its dependencies.
+     */
+    public <T> T await(Phase<T> phase) throws CancellationException {
+        synchronized (this) {
+            while (!phase.mDone) {
+                mCancellationCheck.run();
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    throw new CancellationException("Interrupted while waiting for " + phase.mName);
+                }
+            }
+        }
+        if (phase.mError instanceof RuntimeException) {
+            throw (RuntimeException) phase.mError;
+        } else if (phase.mError instanceof Error) {
+            throw (Error) phase.mError;
+        } else if (phase.mError != null) {
+            throw new RuntimeException(phase.mError);
+        }
+        return phase.mResult;
+    }
+
+    /**
+     * Prevents any pending phase from starting. Phases which are already running are not affected.
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Prevents any pending phase from starting, and waits for all running phases to complete.
+     * This ensures that no worker touches the model once the loader has returned.
+     */
+    public synchronized void cancelAndWait() {
+        cancel();
+        while (mRunningCount > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a human readable summary of the wall time of each completed phase (relative to the
+     * start of the graph), followed by the critical path.
+     */
+    public synchronized List<String> getTimingSummary() {
+        List<String> summary = new ArrayList<>();
+        Phase<?> last = null;
+        for (Phase<?> phase : mPhases) {
+            if (!phase.mDone || phase.mStartTime == 0) {
+                continue;
+            }
+            summary.add(String.format("phase %s: %dms (started at +%dms)", phase.mName,
+                    phase.mEndTime - phase.mStartTime, phase.mStartTime - mStartTime));
+            if (last == null || phase.mEndTime >= last.mEndTime) {
+                last = phase;
+            }
+        }
+        if (last != null) {
+            StringBuilder path = new StringBuilder(last.mName);
+            long criticalPathEnd = last.mEndTime;
+            for (Phase<?> p = last.getLastFinishedDependency(); p != null;
+                    p = p.getLastFinishedDependency()) {
+                path.insert(0, p.mName + " -> ");
+            }
+            summary.add(String.format("critical path: %s (%dms)",
+                    path, criticalPathEnd - mStartTime));
+        }
+        return summary;
+    }
+
+    private void schedule(Phase<?> phase) {
+        mRunningCount++;
+        mExecutor.execute(phase);
+    }
+
+    private synchronized void onPhaseComplete(Phase<?> phase) {
+        phase.mDone = true;
+        mRunningCount--;
+        for (Phase<?> dependent : phase.mDependents) {
+            if (phase.mError != null && dependent.mError == null) {
+                // Propagate the failure without running the dependent phase.
+                dependent.mError = phase.mError;
+            }
+            dependent.mPendingDependencies--;
+            if (dependent.mPendingDependencies == 0) {
+                if (dependent.mError != null || mCancelled) {
+                    failWithoutRunning(dependent);
+                } else {
+                    schedule(dependent);
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    private void failWithoutRunning(Phase<?> phase) {
+        if (phase.mError == null) {
+            phase.mError = new CancellationException("Loader graph cancelled");
+        }
+        // Account for the phase as if it was scheduled, so that its dependents are released.
+        mRunningCount++;
+        onPhaseComplete(phase);
+    }
+
+    /**
+     * A single unit of work in the graph
+     */
+    public final class Phase<T> implements Runnable {
+
+        private final String mName;
+        private final Supplier<T> mWork;
+        private final Phase<?>[] mDependencies;
+        private final ArrayList<Phase<?>> mDependents = new ArrayList<>();
+
+        private int mPendingDependencies;
+        private boolean mDone;
+        private long mStartTime;
+        private long mEndTime;
+
+        private T mResult;
+        private Throwable mError;
+
+        private Phase(String name, Supplier<T> work, Phase<?>[] dependencies) {
+            mName = name;
+            mWork = work;
+            mDependencies = dependencies;
+            mPendingDependencies = dependencies.length;
+        }
+
+        @Override
+        public void run() {
+            synchronized (LoaderTaskGraph.this) {
+                if (mCancelled) {
+                    mError = new CancellationException("Loader graph cancelled");
+                }
+                mStartTime = SystemClock.elapsedRealtime();
+            }
+            if (mError == null) {
+                Trace.beginSection(mName);
+                try {
+                    mResult = mWork.get();
+                } catch (Throwable t) {
+                    mError = t;
+                } finally {
+                    Trace.endSection();
+                }
+            }
+            mEndTime = SystemClock.elapsedRealtime();
+            onPhaseComplete(this);
+        }
+
+        @Nullable
+        private Phase<?> getLastFinishedDependency() {
+            Phase<?> result = null;
+            for (Phase<?> dependency : mDependencies) {
+                if (result == null || dependency.mEndTime >= result.mEndTime) {
+                    result = dependency;
+                }
+            }
+            return result;
+        }
+    }
+}
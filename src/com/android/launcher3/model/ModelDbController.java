@@ -23,6 +23,7 @@ import static com.android.launcher3.LauncherSettings.Favorites.addTableToDb;
 import static com.android.launcher3.LauncherSettings.Settings.LAYOUT_DIGEST_KEY;
 import static com.android.launcher3.LauncherSettings.Settings.LAYOUT_DIGEST_LABEL;
 import static com.android.launcher3.LauncherSettings.Settings.LAYOUT_DIGEST_TAG;
+import static com.android.launcher3.provider.LauncherDbUtils.itemIdMatch;
 import static com.android.launcher3.provider.LauncherDbUtils.tableExists;
 
 import android.app.blob.BlobHandle;
@@ -48,6 +49,8 @@ import android.util.Base64;
 import android.util.Log;
 import android.util.Xml;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.AutoInstallsLayout;
@@ -61,6 +64,7 @@ import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.Utilities;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.provider.LauncherDbUtils;
 import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
@@ -73,6 +77,7 @@ import com.android.launcher3.widget.LauncherWidgetHolder;
 
 import org.xmlpull.v1.XmlPullParser;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.StringReader;
 
@@ -87,6 +92,7 @@ public class ModelDbController {
     public static final String EXTRA_DB_NAME = "db_name";
 
     protected DatabaseHelper mOpenHelper;
+    private FavoritesStatementCache mStatementCache;
 
     private final Context mContext;
 
@@ -154,7 +160,9 @@ public class ModelDbController {
 
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         addModifiedTime(initialValues);
-        int rowId = mOpenHelper.dbInsertAndCheck(db, table, initialValues);
+        int rowId = Favorites.TABLE_NAME.equals(table) && useCompiledStatements()
+                ? insertCompiled(initialValues)
+                : mOpenHelper.dbInsertAndCheck(db, table, initialValues);
         if (rowId >= 0) {
             onAddOrDeleteOp(db);
         }
@@ -190,6 +198,115 @@ public class ModelDbController {
         return count;
     }
 
+    /**
+     * Moves the favorite with the provided id and returns the number of updated rows
+     */
+    @WorkerThread
+    public int updateItemPosition(int id, int container, int screenId, int cellX, int cellY,
+            int rank) {
+        if (!useCompiledStatements()) {
+            return update(Favorites.TABLE_NAME,
+                    newPositionValues(container, screenId, cellX, cellY, rank),
+                    itemIdMatch(id), null);
+        }
+        return getStatementCache().updatePosition(id, container, screenId, cellX, cellY, rank,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Moves and resizes the favorite with the provided id and returns the number of updated rows
+     */
+    @WorkerThread
+    public int updateItemPositionAndSpan(int id, int container, int screenId, int cellX,
+            int cellY, int rank, int spanX, int spanY) {
+        if (!useCompiledStatements()) {
+            ContentValues values = newPositionValues(container, screenId, cellX, cellY, rank);
+            values.put(Favorites.SPANX, spanX);
+            values.put(Favorites.SPANY, spanY);
+            return update(Favorites.TABLE_NAME, values, itemIdMatch(id), null);
+        }
+        return getStatementCache().updatePositionAndSpan(id, container, screenId, cellX, cellY,
+                rank, spanX, spanY, System.currentTimeMillis());
+    }
+
+    /**
+     * Updates the favorite with the provided id and returns the number of updated rows
+     */
+    @WorkerThread
+    public int updateItem(int id, ContentValues values) {
+        if (!useCompiledStatements()) {
+            return update(Favorites.TABLE_NAME, values, itemIdMatch(id), null);
+        }
+        addModifiedTime(values);
+        return getStatementCache().update(id, values);
+    }
+
+    /**
+     * Deletes the favorite with the provided id and returns the number of deleted rows
+     */
+    @WorkerThread
+    public int deleteItem(int id) {
+        if (!useCompiledStatements()) {
+            return delete(Favorites.TABLE_NAME, itemIdMatch(id), null);
+        }
+        int count = getStatementCache().delete(id);
+        if (count > 0) {
+            onAddOrDeleteOp(mOpenHelper.getWritableDatabase());
+        }
+        return count;
+    }
+
+    private static boolean useCompiledStatements() {
+        return FeatureFlags.ENABLE_COMPILED_DB_STATEMENTS.get();
+    }
+
+    private static ContentValues newPositionValues(int container, int screenId, int cellX,
+            int cellY, int rank) {
+        ContentValues values = new ContentValues();
+        values.put(Favorites.CONTAINER, container);
+        values.put(Favorites.SCREEN, screenId);
+        values.put(Favorites.CELLX, cellX);
+        values.put(Favorites.CELLY, cellY);
+        values.put(Favorites.RANK, rank);
+        return values;
+    }
+
+    private int insertCompiled(ContentValues values) {
+        if (!values.containsKey(Favorites._ID)) {
+            throw new RuntimeException("Error: attempting to add item without specifying an id");
+        }
+        mOpenHelper.checkId(values);
+        try {
+            return (int) getStatementCache().insert(values);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting " + values, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the compiled statements for the current database, recompiling them if the database
+     * was replaced, for example after a grid migration
+     */
+    private synchronized FavoritesStatementCache getStatementCache() {
+        createDbIfNotExists();
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        if (mStatementCache == null || !mStatementCache.isFor(db)) {
+            if (mStatementCache != null) {
+                mStatementCache.close();
+            }
+            mStatementCache = new FavoritesStatementCache(db);
+        }
+        return mStatementCache;
+    }
+
+    private synchronized void clearStatementCache() {
+        if (mStatementCache != null) {
+            mStatementCache.close();
+            mStatementCache = null;
+        }
+    }
+
     /**
      * Clears a previously set flag corresponding to empty db creation
      */
@@ -223,6 +340,8 @@ public class ModelDbController {
     @WorkerThread
     public void createEmptyDB() {
         createDbIfNotExists();
+        // The favorites table is recreated, so don't keep statements compiled against it
+        clearStatementCache();
         mOpenHelper.createEmptyDB(mOpenHelper.getWritableDatabase());
         LauncherPrefs.get(mContext).putSync(getEmptyDbCreatedKey().to(true));
     }
@@ -300,6 +419,7 @@ public class ModelDbController {
                    oldHelper.getWritableDatabase());
         } finally {
             if (mOpenHelper != oldHelper) {
+                clearStatementCache();
                 oldHelper.close();
             }
         }
@@ -348,6 +468,70 @@ public class ModelDbController {
         }
     }
 
+    /**
+     * Reads the workspace snapshot for the current database, if it is still valid
+     */
+    @WorkerThread
+    @Nullable
+    public WorkspaceSnapshot readWorkspaceSnapshot(UserManagerState userManagerState) {
+        File file = getWorkspaceSnapshotFile();
+        return file == null ? null : WorkspaceSnapshot.read(mContext, file,
+                mOpenHelper.getDatabaseName(), getFavoritesStateToken(), userManagerState);
+    }
+
+    /**
+     * Writes a snapshot of the workspace items in {@param dataModel}, if the model matches the
+     * current state of the database
+     */
+    @WorkerThread
+    public void writeWorkspaceSnapshot(BgDataModel dataModel, UserManagerState userManagerState) {
+        File file = getWorkspaceSnapshotFile();
+        if (file == null) {
+            return;
+        }
+        if (!WorkspaceSnapshot.matchesDatabase(this, dataModel)) {
+            file.delete();
+            return;
+        }
+        WorkspaceSnapshot.write(mContext, file, mOpenHelper.getDatabaseName(),
+                getFavoritesStateToken(), dataModel, userManagerState);
+    }
+
+    /**
+     * Deletes any workspace snapshot for the current database
+     */
+    @WorkerThread
+    public void deleteWorkspaceSnapshot() {
+        File file = getWorkspaceSnapshotFile();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Nullable
+    private File getWorkspaceSnapshotFile() {
+        createDbIfNotExists();
+        String dbName = mOpenHelper.getDatabaseName();
+        if (mContext instanceof SandboxContext || dbName == null) {
+            return null;
+        }
+        return new File(mContext.getCacheDir(), dbName + ".snapshot");
+    }
+
+    /**
+     * Returns a token which changes whenever an item is added, removed or updated through this
+     * controller.
+     */
+    @VisibleForTesting
+    String getFavoritesStateToken() {
+        try (Cursor c = mOpenHelper.getReadableDatabase().rawQuery("SELECT COUNT(*), MAX("
+                + Favorites.MODIFIED + "), TOTAL(" + Favorites._ID + " * 31 + "
+                + Favorites.CONTAINER + ") FROM " + Favorites.TABLE_NAME, null)) {
+            return c.moveToNext()
+                    ? c.getInt(0) + ":" + c.getLong(1) + ":" + c.getLong(2) : "";
+        }
+    }
+
     private static void addModifiedTime(ContentValues values) {
         values.put(LauncherSettings.Favorites.MODIFIED, System.currentTimeMillis());
     }
@@ -16,8 +16,6 @@
 
 package com.android.launcher3.model;
 
-import static com.android.launcher3.LauncherSettings.Favorites.TABLE_NAME;
-import static com.android.launcher3.provider.LauncherDbUtils.itemIdMatch;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.content.ContentValues;
@@ -38,6 +36,7 @@ import com.android.launcher3.celllayout.CellPosMapper.CellPos;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.ItemUpdateQueue.PendingUpdate;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -172,13 +171,12 @@ public class ModelWriter {
         updateItemInfoProps(item, container, screenId, cellX, cellY);
         notifyItemModified(item);
 
-        enqueueDeleteRunnable(new UpdateItemRunnable(item, () ->
-                new ContentWriter(mContext)
-                        .put(Favorites.CONTAINER, item.container)
-                        .put(Favorites.CELLX, item.cellX)
-                        .put(Favorites.CELLY, item.cellY)
-                        .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SCREEN, item.screenId)));
+        if (canDeferUpdates()) {
+            mModel.getItemUpdateQueue().enqueue(
+                    new PendingItemUpdate(item, newPositionValues(item, false)));
+            return;
+        }
+        enqueueDeleteRunnable(new UpdatePositionRunnable(item, false /* includeSpans */));
     }
 
     /**
@@ -190,20 +188,21 @@ public class ModelWriter {
         int count = items.size();
         notifyOtherCallbacks(c -> c.bindItemsModified(items));
 
+        boolean deferUpdates = canDeferUpdates();
         for (int i = 0; i < count; i++) {
             ItemInfo item = items.get(i);
             updateItemInfoProps(item, container, screen, item.cellX, item.cellY);
 
-            final ContentValues values = new ContentValues();
-            values.put(Favorites.CONTAINER, item.container);
-            values.put(Favorites.CELLX, item.cellX);
-            values.put(Favorites.CELLY, item.cellY);
-            values.put(Favorites.RANK, item.rank);
-            values.put(Favorites.SCREEN, item.screenId);
-
-            contentValues.add(values);
+            final ContentValues values = newPositionValues(item, false);
+            if (deferUpdates) {
+                mModel.getItemUpdateQueue().enqueue(new PendingItemUpdate(item, values));
+            } else {
+                contentValues.add(values);
+            }
+        }
+        if (!deferUpdates) {
+            enqueueDeleteRunnable(new UpdateItemsRunnable(items, contentValues));
         }
-        enqueueDeleteRunnable(new UpdateItemsRunnable(items, contentValues));
     }
 
     /**
@@ -215,16 +214,12 @@ public class ModelWriter {
         item.spanX = spanX;
         item.spanY = spanY;
         notifyItemModified(item);
-        new UpdateItemRunnable(item, () ->
-                new ContentWriter(mContext)
-                        .put(Favorites.CONTAINER, item.container)
-                        .put(Favorites.CELLX, item.cellX)
-                        .put(Favorites.CELLY, item.cellY)
-                        .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SPANX, item.spanX)
-                        .put(Favorites.SPANY, item.spanY)
-                        .put(Favorites.SCREEN, item.screenId))
-                .executeOnModelThread();
+        if (canDeferUpdates()) {
+            mModel.getItemUpdateQueue().enqueue(
+                    new PendingItemUpdate(item, newPositionValues(item, true)));
+            return;
+        }
+        new UpdatePositionRunnable(item, true /* includeSpans */).executeOnModelThread();
     }
 
     /**
@@ -239,6 +234,36 @@ public class ModelWriter {
         }).executeOnModelThread();
     }
 
+    /**
+     * Returns true if position updates can be coalesced in the {@link ItemUpdateQueue}. Updates
+     * made while an undo is pending are instead held until {@link #commitDelete()}.
+     */
+    private boolean canDeferUpdates() {
+        return FeatureFlags.ENABLE_WRITE_BEHIND_UPDATES.get() && mOwner != null
+                && !mPreparingToUndo;
+    }
+
+    private static ContentValues newPositionValues(ItemInfo item, boolean includeSpans) {
+        ContentValues values = new ContentValues();
+        values.put(Favorites.CONTAINER, item.container);
+        values.put(Favorites.CELLX, item.cellX);
+        values.put(Favorites.CELLY, item.cellY);
+        values.put(Favorites.RANK, item.rank);
+        values.put(Favorites.SCREEN, item.screenId);
+        if (includeSpans) {
+            values.put(Favorites.SPANX, item.spanX);
+            values.put(Favorites.SPANY, item.spanY);
+        }
+        return values;
+    }
+
+    /**
+     * Writes all the coalesced position updates, for example when launcher is paused
+     */
+    public void flushPendingUpdates() {
+        mModel.getItemUpdateQueue().flush();
+    }
+
     private void notifyItemModified(ItemInfo item) {
         notifyOtherCallbacks(c -> c.bindItemsModified(Collections.singletonList(item)));
     }
@@ -302,7 +327,7 @@ public class ModelWriter {
         notifyDelete(items);
         enqueueDeleteRunnable(newModelTask(() -> {
             for (ItemInfo item : items) {
-                mModel.getModelDbController().delete(TABLE_NAME, itemIdMatch(item.id), null);
+                mModel.getModelDbController().deleteItem(item.id);
                 mBgDataModel.removeItem(mContext, item);
                 verifier.verifyModel();
             }
@@ -322,8 +347,7 @@ public class ModelWriter {
             mBgDataModel.removeItem(mContext, info.contents);
             info.contents.clear();
 
-            mModel.getModelDbController().delete(Favorites.TABLE_NAME,
-                    Favorites._ID + "=" + info.id, null);
+            mModel.getModelDbController().deleteItem(info.id);
             mBgDataModel.removeItem(mContext, info);
             verifier.verifyModel();
         }));
@@ -420,8 +444,33 @@ public class ModelWriter {
 
         @Override
         public void runImpl() {
-            mModel.getModelDbController().update(
-                    TABLE_NAME, mWriter.get().getValues(mContext), itemIdMatch(mItemId), null);
+            mModel.getModelDbController().updateItem(mItemId, mWriter.get().getValues(mContext));
+            updateItemArrays(mItem, mItemId);
+        }
+    }
+
+    private class UpdatePositionRunnable extends UpdateItemBaseRunnable {
+        private final ItemInfo mItem;
+        private final int mItemId;
+        private final boolean mIncludeSpans;
+
+        UpdatePositionRunnable(ItemInfo item, boolean includeSpans) {
+            mItem = item;
+            mItemId = item.id;
+            mIncludeSpans = includeSpans;
+        }
+
+        @Override
+        public void runImpl() {
+            // Read the position on the background thread, as it might have been updated since
+            ModelDbController dbController = mModel.getModelDbController();
+            if (mIncludeSpans) {
+                dbController.updateItemPositionAndSpan(mItemId, mItem.container, mItem.screenId,
+                        mItem.cellX, mItem.cellY, mItem.rank, mItem.spanX, mItem.spanY);
+            } else {
+                dbController.updateItemPosition(mItemId, mItem.container, mItem.screenId,
+                        mItem.cellX, mItem.cellY, mItem.rank);
+            }
             updateItemArrays(mItem, mItemId);
         }
     }
@@ -442,8 +491,7 @@ public class ModelWriter {
                 for (int i = 0; i < count; i++) {
                     ItemInfo item = mItems.get(i);
                     final int itemId = item.id;
-                    mModel.getModelDbController().update(
-                            TABLE_NAME, mValues.get(i), itemIdMatch(itemId), null);
+                    mModel.getModelDbController().updateItem(itemId, mValues.get(i));
                     updateItemArrays(item, itemId);
                 }
                 t.commit();
@@ -462,46 +510,80 @@ public class ModelWriter {
         }
 
         protected void updateItemArrays(ItemInfo item, int itemId) {
-            // Lock on mBgLock *after* the db operation
-            synchronized (mBgDataModel) {
-                checkItemInfoLocked(itemId, item, mStackTrace);
-
-                if (item.container != Favorites.CONTAINER_DESKTOP &&
-                        item.container != Favorites.CONTAINER_HOTSEAT) {
-                    // Item is in a folder, make sure this folder exists
-                    if (!mBgDataModel.folders.containsKey(item.container)) {
-                        // An items container is being set to a that of an item which is not in
-                        // the list of Folders.
-                        String msg = "item: " + item + " container being set to: " +
-                                item.container + ", not in the list of folders";
-                        Log.e(TAG, msg);
-                    }
+            ModelWriter.this.updateItemArrays(item, itemId, mStackTrace, mVerifier);
+        }
+    }
+
+    private class PendingItemUpdate extends PendingUpdate {
+        private final ItemInfo mItem;
+        private final StackTraceElement[] mStackTrace;
+        private ModelVerifier mVerifier = new ModelVerifier();
+
+        PendingItemUpdate(ItemInfo item, ContentValues values) {
+            super(item.id, mBgDataModel.lastLoadId, values);
+            mItem = item;
+            mStackTrace = new Throwable().getStackTrace();
+        }
+
+        @Override
+        protected void mergeOlder(@NonNull PendingUpdate older) {
+            super.mergeOlder(older);
+            if (older instanceof PendingItemUpdate) {
+                // Verify against the bind which was current when the first update was made
+                mVerifier = ((PendingItemUpdate) older).mVerifier;
+            }
+        }
+
+        @Override
+        protected void onWritten() {
+            updateItemArrays(mItem, itemId, mStackTrace, mVerifier);
+        }
+    }
+
+    private void updateItemArrays(ItemInfo item, int itemId, StackTraceElement[] stackTrace,
+            ModelVerifier verifier) {
+        // Lock on mBgLock *after* the db operation
+        synchronized (mBgDataModel) {
+            checkItemInfoLocked(itemId, item, stackTrace);
+
+            if (item.container != Favorites.CONTAINER_DESKTOP &&
+                    item.container != Favorites.CONTAINER_HOTSEAT) {
+                // Item is in a folder, make sure this folder exists
+                if (!mBgDataModel.folders.containsKey(item.container)) {
+                    // An items container is being set to a that of an item which is not in
+                    // the list of Folders.
+                    String msg = "item: " + item + " container being set to: " +
+                            item.container + ", not in the list of folders";
+                    Log.e(TAG, msg);
                 }
+            }
 
-                // Items are added/removed from the corresponding FolderInfo elsewhere, such
-                // as in Workspace.onDrop. Here, we just add/remove them from the list of items
-                // that are on the desktop, as appropriate
-                ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
-                if (modelItem != null &&
-                        (modelItem.container == Favorites.CONTAINER_DESKTOP ||
-                                modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
-                    switch (modelItem.itemType) {
-                        case Favorites.ITEM_TYPE_APPLICATION:
-                        case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
-                        case Favorites.ITEM_TYPE_FOLDER:
-                        case Favorites.ITEM_TYPE_APP_PAIR:
-                            if (!mBgDataModel.workspaceItems.contains(modelItem)) {
-                                mBgDataModel.workspaceItems.add(modelItem);
-                            }
-                            break;
-                        default:
-                            break;
-                    }
-                } else {
-                    mBgDataModel.workspaceItems.remove(modelItem);
+            // Items are added/removed from the corresponding FolderInfo elsewhere, such
+            // as in Workspace.onDrop. Here, we just add/remove them from the list of items
+            // that are on the desktop, as appropriate
+            ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
+            if (modelItem != null) {
+                mBgDataModel.updateItemIndex(modelItem);
+            }
+            if (modelItem != null &&
+                    (modelItem.container == Favorites.CONTAINER_DESKTOP ||
+                            modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
+                switch (modelItem.itemType) {
+                    case Favorites.ITEM_TYPE_APPLICATION:
+                    case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
+                    case Favorites.ITEM_TYPE_FOLDER:
+                    case Favorites.ITEM_TYPE_APP_PAIR:
+                        if (!mBgDataModel.workspaceItems.contains(modelItem)) {
+                            mBgDataModel.workspaceItems.add(modelItem);
+                        }
+                        break;
+                    default:
+                        break;
                 }
-                mVerifier.verifyModel();
+            } else {
+                mBgDataModel.workspaceItems.remove(modelItem);
             }
+            verifier.verifyModel();
         }
     }
 
@@ -511,14 +593,19 @@ public class ModelWriter {
 
         @Override
         public final void run() {
+            // Updates queued after this task was posted must still be written before it runs
+            mModel.getItemUpdateQueue().flushOnModelThread();
             if (mLoadId != mModel.getLastLoadId()) {
                 Log.d(TAG, "Model changed before the task could execute");
                 return;
             }
             runImpl();
+            mBgDataModel.publishSnapshot();
         }
 
         public final void executeOnModelThread() {
+            // Write coalesced updates first, so that this task observes them
+            mModel.getItemUpdateQueue().flush();
             MODEL_EXECUTOR.execute(this);
         }
 
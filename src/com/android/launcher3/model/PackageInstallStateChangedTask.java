@@ -27,8 +27,10 @@ import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.util.InstantAppResolver;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Handles changes due to a sessions updates for a currently installing app.
@@ -73,7 +75,8 @@ public class PackageInstallStateChangedTask extends BaseModelUpdateTask {
 
         synchronized (dataModel) {
             final HashSet<ItemInfo> updates = new HashSet<>();
-            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user, si -> {
+            final Set<String> packages = Collections.singleton(mInstallInfo.packageName);
+            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user, packages, si -> {
                 if (si.hasPromiseIconUi()
                         && mInstallInfo.packageName.equals(si.getTargetPackage())) {
                     si.setProgressLevel(mInstallInfo);
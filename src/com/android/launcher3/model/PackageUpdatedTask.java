@@ -52,6 +52,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewDiskCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,6 +61,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -80,6 +82,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
     public static final int OP_SUSPEND = 5; // package suspended
     public static final int OP_UNSUSPEND = 6; // package unsuspended
     public static final int OP_USER_AVAILABILITY_CHANGE = 7; // user available/unavailable
+    public static final int OP_RELOAD = 8; // unchanged package refreshed from the cached state
 
     private final int mOp;
 
@@ -150,6 +153,19 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                 // Since package was just updated, the target must be available now.
                 flagOp = FlagOp.NO_OP.removeFlag(WorkspaceItemInfo.FLAG_DISABLED_NOT_AVAILABLE);
                 break;
+            case OP_RELOAD:
+                // The packages didn't change, so the cached icons are still valid and the widgets
+                // are refreshed once by the caller instead of once per package.
+                try (SafeCloseable t =
+                             appsList.trackRemoves(a -> removedComponents.add(a.componentName))) {
+                    for (int i = 0; i < N; i++) {
+                        if (DEBUG) Log.d(TAG, "mAllAppsList.updatePackage " + packages[i]);
+                        activitiesLists.put(
+                                packages[i], appsList.updatePackage(context, packages[i], mUser));
+                    }
+                }
+                flagOp = FlagOp.NO_OP.removeFlag(WorkspaceItemInfo.FLAG_DISABLED_NOT_AVAILABLE);
+                break;
             case OP_REMOVE: {
                 for (int i = 0; i < N; i++) {
                     FileLog.d(TAG, "Removing app icon" + packages[i]);
@@ -201,9 +217,10 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             final ArrayList<LauncherAppWidgetInfo> widgets = new ArrayList<>();
 
             // For system apps, package manager send OP_UPDATE when an app is enabled.
-            final boolean isNewApkAvailable = mOp == OP_ADD || mOp == OP_UPDATE;
+            final boolean isNewApkAvailable =
+                    mOp == OP_ADD || mOp == OP_UPDATE || mOp == OP_RELOAD;
             synchronized (dataModel) {
-                dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                Consumer<WorkspaceItemInfo> updateOp = si -> {
 
                     boolean infoUpdated = false;
                     boolean shortcutUpdated = false;
@@ -287,9 +304,17 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                         updatedWorkspaceItems.add(si);
                     }
                     if (infoUpdated && si.id != ItemInfo.NO_ID) {
+                        // The target may have changed, re-index before the next lookup
+                        dataModel.updateItemIndex(si);
                         getModelWriter().updateItemInDatabase(si);
                     }
-                });
+                };
+                if (mOp == OP_USER_AVAILABILITY_CHANGE) {
+                    dataModel.forAllWorkspaceItemInfos(mUser, updateOp);
+                } else {
+                    // Only items of the updated packages can match, use the package index.
+                    dataModel.forAllWorkspaceItemInfos(mUser, packageSet, updateOp);
+                }
 
                 for (LauncherAppWidgetInfo widgetInfo : dataModel.appWidgets) {
                     if (mUser.equals(widgetInfo.user)
@@ -323,6 +348,16 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             }
         }
 
+        if (mOp == OP_ADD || mOp == OP_UPDATE || mOp == OP_REMOVE) {
+            // Previews of the old package are never served again, delete them to free space
+            WidgetPreviewDiskCache previewCache = WidgetPreviewDiskCache.INSTANCE.getNoCreate();
+            if (previewCache != null) {
+                for (int i = 0; i < N; i++) {
+                    previewCache.removePackage(packages[i], mUser);
+                }
+            }
+        }
+
         final HashSet<String> removedPackages = new HashSet<>();
         if (mOp == OP_REMOVE) {
             // Mark all packages in the broadcast to be removed
@@ -330,7 +365,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
 
             // No need to update the removedComponents as
             // removedPackages is a super-set of removedComponents
-        } else if (mOp == OP_UPDATE) {
+        } else if (mOp == OP_UPDATE || mOp == OP_RELOAD) {
             // Mark disabled packages in the broadcast to be removed
             final LauncherApps launcherApps = context.getSystemService(LauncherApps.class);
             for (int i=0; i<N; i++) {
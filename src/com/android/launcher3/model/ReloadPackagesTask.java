@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ComponentName;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Refreshes the items of some packages of a user in place, instead of reloading and rebinding
+ * the whole model.
+ *
+ * The workspace items already mirror the database, so only the state coming from the package
+ * manager, the icon cache and the user state is refreshed, and only the changed items are bound.
+ * The packages themselves didn't change, so their icons are not generated again and their widget
+ * previews are kept.
+ */
+public class ReloadPackagesTask extends BaseModelUpdateTask {
+
+    private static final String TAG = "ReloadPackagesTask";
+
+    @NonNull
+    private final UserHandle mUser;
+
+    @Nullable
+    private final Set<String> mPackages;
+
+    /**
+     * @param packages the packages to reload, or null to reload every package of the
+     *                 {@param user} which has items in the model or launcher activities
+     */
+    public ReloadPackagesTask(@NonNull UserHandle user, @Nullable Set<String> packages) {
+        mUser = user;
+        mPackages = packages;
+    }
+
+    @Override
+    public void execute(@NonNull LauncherAppState app, @NonNull BgDataModel dataModel,
+            @NonNull AllAppsList apps) {
+        Set<String> packages = mPackages != null
+                ? mPackages : collectUserPackages(app, dataModel, apps);
+        FileLog.d(TAG, "Reloading " + packages.size() + " packages for " + mUser);
+
+        if (mPackages == null) {
+            // Refresh the quiet mode state of all the items of the user
+            executeSubTask(new PackageUpdatedTask(
+                    PackageUpdatedTask.OP_USER_AVAILABILITY_CHANGE, mUser));
+        }
+        if (!packages.isEmpty()) {
+            // Adds missing activities and removes stale ones, using the cached icons and labels
+            executeSubTask(new PackageUpdatedTask(PackageUpdatedTask.OP_RELOAD, mUser,
+                    packages.toArray(new String[0])));
+            // Refreshes the widgets and shortcuts once, rather than once per package
+            dataModel.widgetsModel.update(app, null);
+            bindUpdatedWidgets(dataModel);
+        }
+        if (mPackages == null) {
+            // Verifies pinned shortcuts, which could not be checked while the user was locked
+            boolean isUnlocked = app.getContext().getSystemService(UserManager.class)
+                    .isUserUnlocked(mUser);
+            executeSubTask(new UserLockStateChangedTask(mUser, isUnlocked));
+        }
+    }
+
+    /**
+     * Returns the installed packages of the user which have launcher activities or items in the
+     * model. Packages which are not installed, like pending installs, are left as they are.
+     */
+    private Set<String> collectUserPackages(@NonNull LauncherAppState app,
+            @NonNull BgDataModel dataModel, @NonNull AllAppsList apps) {
+        LauncherApps launcherApps = app.getContext().getSystemService(LauncherApps.class);
+        Set<String> packages = new HashSet<>();
+        for (LauncherActivityInfo info : launcherApps.getActivityList(null, mUser)) {
+            packages.add(info.getComponentName().getPackageName());
+        }
+
+        Set<String> otherPackages = new HashSet<>();
+        for (AppInfo info : apps.data) {
+            if (mUser.equals(info.user)) {
+                otherPackages.add(info.componentName.getPackageName());
+            }
+        }
+        synchronized (dataModel) {
+            for (ItemInfo info : dataModel.itemsIdMap) {
+                if (!mUser.equals(info.user)) {
+                    continue;
+                }
+                ComponentName cn = info instanceof LauncherAppWidgetInfo
+                        ? ((LauncherAppWidgetInfo) info).providerName
+                        : info.getTargetComponent();
+                if (cn != null) {
+                    otherPackages.add(cn.getPackageName());
+                }
+            }
+        }
+        otherPackages.removeAll(packages);
+        for (String packageName : otherPackages) {
+            if (launcherApps.isPackageEnabled(packageName, mUser)) {
+                packages.add(packageName);
+            }
+        }
+        return packages;
+    }
+}
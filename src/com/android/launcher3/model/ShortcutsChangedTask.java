@@ -108,6 +108,7 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
                         .filter(itemInfo -> sid.equals(itemInfo.getDeepShortcutId()))
                         .forEach(workspaceItemInfo -> {
                             workspaceItemInfo.updateFromDeepShortcutInfo(fullDetails, context);
+                            dataModel.updateItemIndex(workspaceItemInfo);
                             app.getIconCache().getShortcutIcon(workspaceItemInfo, fullDetails);
                             updatedWorkspaceItemInfos.add(workspaceItemInfo);
                         });
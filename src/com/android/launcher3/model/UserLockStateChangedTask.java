@@ -90,6 +90,7 @@ public class UserLockStateChangedTask extends BaseModelUpdateTask {
                         }
                         si.runtimeStatusFlags &= ~FLAG_DISABLED_LOCKED_USER;
                         si.updateFromDeepShortcutInfo(shortcut, context);
+                        dataModel.updateItemIndex(si);
                         app.getIconCache().getShortcutIcon(si, shortcut);
                     } else {
                         si.runtimeStatusFlags |= FLAG_DISABLED_LOCKED_USER;
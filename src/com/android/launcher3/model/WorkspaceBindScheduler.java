@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.view.Display.DEFAULT_DISPLAY;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.data.ItemInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits workspace items into bind chunks and keeps track of how binding them lines up with
+ * frames on the UI thread.
+ *
+ * When {@link FeatureFlags#ENABLE_ADAPTIVE_BINDING} is enabled, chunks are sized so that their
+ * estimated cost fits in a fraction of a frame, using the measured cost of binding each kind of
+ * item on this device. Every chunk is posted separately, so pending input and frames are handled
+ * between chunks. Otherwise items are split in fixed size chunks.
+ */
+public class WorkspaceBindScheduler implements FrameCallback {
+
+    private static final String TAG = "WorkspaceBindScheduler";
+
+    // Fraction of a frame which can be spent binding items, leaving time for layout and drawing
+    private static final float FRAME_BUDGET_FRACTION = 0.5f;
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    // Cost estimates are shared across binds, so that a rebind starts from measured values
+    private static final BindCostModel sCostModel = new BindCostModel();
+
+    private final boolean mAdaptive;
+    private final long mFrameBudgetNanos;
+    private final BindCostModel mCostModel;
+
+    // Stats, only accessed on the UI thread
+    private long mFrameWorkNanos;
+    private boolean mFrameCallbackPosted;
+    private int mBoundItems;
+    private int mFrames;
+    private int mFramesOverBudget;
+
+    public WorkspaceBindScheduler(Context context) {
+        this(FeatureFlags.ENABLE_ADAPTIVE_BINDING.get(), getFrameBudgetNanos(context), sCostModel);
+    }
+
+    @VisibleForTesting
+    WorkspaceBindScheduler(boolean adaptive, long frameBudgetNanos, BindCostModel costModel) {
+        mAdaptive = adaptive;
+        mFrameBudgetNanos = frameBudgetNanos;
+        mCostModel = costModel;
+    }
+
+    /**
+     * Splits the {@param items} in bind chunks, keeping their order. {@param fixedChunkSize} is
+     * used when adaptive binding is disabled.
+     */
+    @NonNull
+    public List<List<ItemInfo>> split(List<? extends ItemInfo> items, int fixedChunkSize) {
+        List<List<ItemInfo>> chunks = new ArrayList<>();
+        int count = items.size();
+        int start = 0;
+        while (start < count) {
+            int end = mAdaptive ? getAdaptiveChunkEnd(items, start)
+                    : Math.min(start + fixedChunkSize, count);
+            chunks.add(new ArrayList<>(items.subList(start, end)));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private int getAdaptiveChunkEnd(List<? extends ItemInfo> items, int start) {
+        // Always bind at least one item, even if it alone is over budget
+        long cost = mCostModel.estimate(items.get(start));
+        int end = start + 1;
+        while (end < items.size()) {
+            cost += mCostModel.estimate(items.get(end));
+            if (cost > mFrameBudgetNanos) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Binds the {@param chunk} returned by {@link #split} and records how long it took
+     */
+    @UiThread
+    public void bindChunk(Callbacks callbacks, List<ItemInfo> chunk) {
+        if (!mAdaptive) {
+            callbacks.bindItems(chunk, false);
+            return;
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        callbacks.bindItems(chunk, false);
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+
+        mCostModel.record(chunk, elapsed);
+        mBoundItems += chunk.size();
+        mFrameWorkNanos += elapsed;
+        if (!mFrameCallbackPosted && Looper.myLooper() != null) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (mFrameWorkNanos == 0) {
+            return;
+        }
+        onFrameCompleted();
+        // Keep counting frames until binding stops doing work
+        mFrameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void onFrameCompleted() {
+        mFrames++;
+        if (mFrameWorkNanos > mFrameBudgetNanos) {
+            mFramesOverBudget++;
+        }
+        mFrameWorkNanos = 0;
+    }
+
+    /**
+     * Called once all the items have been bound, to report the binding stats
+     */
+    @UiThread
+    public void onBindComplete() {
+        if (!mAdaptive) {
+            return;
+        }
+        if (mFrameWorkNanos > 0) {
+            onFrameCompleted();
+        }
+        Log.d(TAG, String.format("Bound %d items in %d frames, %d over the %.1fms budget",
+                mBoundItems, mFrames, mFramesOverBudget, mFrameBudgetNanos / 1_000_000f));
+    }
+
+    @VisibleForTesting
+    int getFrames() {
+        return mFrames;
+    }
+
+    @VisibleForTesting
+    int getFramesOverBudget() {
+        return mFramesOverBudget;
+    }
+
+    private static long getFrameBudgetNanos(Context context) {
+        Display display = context.getSystemService(DisplayManager.class)
+                .getDisplay(DEFAULT_DISPLAY);
+        float refreshRate = display != null && display.getRefreshRate() > 0
+                ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+        return (long) (FRAME_BUDGET_FRACTION * 1_000_000_000L / refreshRate);
+    }
+
+    /**
+     * Exponentially smoothed estimate of the cost of binding an item, per kind of item
+     */
+    @VisibleForTesting
+    static class BindCostModel {
+
+        private static final int KIND_ICON = 0;
+        private static final int KIND_FOLDER = 1;
+        private static final int KIND_WIDGET = 2;
+        private static final int KIND_OTHER = 3;
+
+        // Weight of a new measurement in the estimate
+        private static final float SMOOTHING = 0.25f;
+
+        private final long[] mEstimates = new long[] {
+                500_000,    // KIND_ICON
+                1_500_000,  // KIND_FOLDER
+                5_000_000,  // KIND_WIDGET
+                1_000_000   // KIND_OTHER
+        };
+
+        synchronized long estimate(ItemInfo item) {
+            return mEstimates[getKind(item)];
+        }
+
+        /**
+         * Updates the estimates of the kinds of items in {@param chunk}, scaling them by how far
+         * off the estimate for the whole chunk was from the {@param measuredNanos}
+         */
+        synchronized void record(List<ItemInfo> chunk, long measuredNanos) {
+            long[] counts = new long[mEstimates.length];
+            long estimated = 0;
+            for (ItemInfo item : chunk) {
+                int kind = getKind(item);
+                counts[kind]++;
+                estimated += mEstimates[kind];
+            }
+            if (estimated <= 0) {
+                return;
+            }
+            float scale = (float) measuredNanos / estimated;
+            for (int kind = 0; kind < mEstimates.length; kind++) {
+                if (counts[kind] > 0) {
+                    long measured = (long) (mEstimates[kind] * scale);
+                    mEstimates[kind] = Math.max(1,
+                            (long) (mEstimates[kind] + SMOOTHING * (measured - mEstimates[kind])));
+                }
+            }
+        }
+
+        private static int getKind(ItemInfo item) {
+            switch (item.itemType) {
+                case Favorites.ITEM_TYPE_APPLICATION:
+                case Favorites.ITEM_TYPE_SHORTCUT:
+                case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
+                    return KIND_ICON;
+                case Favorites.ITEM_TYPE_FOLDER:
+                case Favorites.ITEM_TYPE_APP_PAIR:
+                    return KIND_FOLDER;
+                case Favorites.ITEM_TYPE_APPWIDGET:
+                case Favorites.ITEM_TYPE_CUSTOM_APPWIDGET:
+                    return KIND_WIDGET;
+                default:
+                    return KIND_OTHER;
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_ADAPTIVE_ICON;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_LOCKED_USER;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_NOT_AVAILABLE;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SAFEMODE;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_SHOW_DOWNLOAD_PROGRESS_MASK;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_SYSTEM_MASK;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ChangedPackages;
+import android.database.Cursor;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.shortcuts.ShortcutKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A compact binary snapshot of the workspace items loaded in {@link BgDataModel}. When nothing
+ * has changed since the last successful load, {@link LoaderTask} can rebuild the workspace from
+ * the snapshot instead of walking the {@link LoaderCursor}, which parses intents and checks
+ * every target package.
+ *
+ * <p>A snapshot is only valid within the same boot. It is keyed on the state of the favorites
+ * table, the user profiles and their quiet mode, the grid size and the package manager change
+ * sequence number.
+ */
+public class WorkspaceSnapshot {
+
+    private static final String TAG = "WorkspaceSnapshot";
+
+    private static final int MAGIC = 0x4C33534E;
+    private static final int VERSION = 1;
+    // Size of the fields common to all items
+    private static final int MIN_ITEM_BYTES = 10 * Integer.BYTES + Long.BYTES;
+
+    /** Runtime flags which are only derived from the target package, and can be carried over */
+    private static final int PERSISTED_RUNTIME_FLAGS =
+            FLAG_DISABLED_SUSPENDED | FLAG_SYSTEM_MASK | FLAG_ADAPTIVE_ICON;
+
+    /** Runtime flags which depend on a transient state, and prevent writing a snapshot */
+    private static final int TRANSIENT_RUNTIME_FLAGS = FLAG_DISABLED_SAFEMODE
+            | FLAG_DISABLED_NOT_AVAILABLE | FLAG_DISABLED_LOCKED_USER
+            | FLAG_SHOW_DOWNLOAD_PROGRESS_MASK;
+
+    private static final String[] VERIFICATION_PROJECTION = new String[] {
+            Favorites._ID, Favorites.ITEM_TYPE, Favorites.CONTAINER, Favorites.SCREEN,
+            Favorites.CELLX, Favorites.CELLY, Favorites.SPANX, Favorites.SPANY,
+            Favorites.INTENT, Favorites.APPWIDGET_ID};
+
+    public final String dbName;
+    public final List<Item> items;
+
+    private WorkspaceSnapshot(String dbName, List<Item> items) {
+        this.dbName = dbName;
+        this.items = items;
+    }
+
+    /**
+     * Writes a snapshot of the {@code dataModel} to {@code file}, or deletes any existing snapshot
+     * if the model contains items which can't be restored without the cursor.
+     */
+    @WorkerThread
+    static void write(@NonNull Context context, @NonNull File file, @NonNull String dbName,
+            @NonNull String dbStateToken, @NonNull BgDataModel dataModel,
+            @NonNull UserManagerState userManagerState) {
+        ChangedPackages changedPackages = context.getPackageManager().getChangedPackages(0);
+        int packageSequence = changedPackages == null ? 0 : changedPackages.getSequenceNumber();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] key = createKey(context, dbName, dbStateToken, userManagerState);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(packageSequence);
+
+            UserCache userCache = UserCache.INSTANCE.get(context);
+            synchronized (dataModel) {
+                out.writeInt(dataModel.itemsIdMap.size());
+                for (ItemInfo info : dataModel.itemsIdMap) {
+                    if (!writeItem(out, info, userCache)) {
+                        Log.d(TAG, "Unable to snapshot " + info);
+                        file.delete();
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to serialize workspace snapshot", e);
+            return;
+        }
+
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream fos = null;
+        try {
+            fos = atomicFile.startWrite();
+            fos.write(bytes.toByteArray());
+            atomicFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write workspace snapshot", e);
+            if (fos != null) {
+                atomicFile.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * Reads a previously written snapshot, if it is still valid for the current state
+     */
+    @WorkerThread
+    @Nullable
+    static WorkspaceSnapshot read(@NonNull Context context, @NonNull File file,
+            @NonNull String dbName, @NonNull String dbStateToken,
+            @NonNull UserManagerState userManagerState) {
+        try (FileInputStream fis = new AtomicFile(file).openRead();
+                FileChannel channel = fis.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] key = readBytes(buffer);
+            if (!Arrays.equals(key, createKey(context, dbName, dbStateToken, userManagerState))) {
+                return null;
+            }
+            // Returns null if no package has changed since the provided sequence number
+            if (context.getPackageManager().getChangedPackages(buffer.getInt()) != null) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_ITEM_BYTES) {
+                throw new IllegalArgumentException("Invalid item count " + count);
+            }
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(readItem(buffer));
+            }
+            return new WorkspaceSnapshot(dbName, Collections.unmodifiableList(items));
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.e(TAG, "Unable to read workspace snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the type, position, span and target of every item in the {@code dataModel}
+     * match the database. This only reads a few columns, and is used to reconcile a snapshot load.
+     */
+    @WorkerThread
+    static boolean matchesDatabase(
+            @NonNull ModelDbController dbController, @NonNull BgDataModel dataModel) {
+        try (Cursor c = dbController.query(
+                Favorites.TABLE_NAME, VERIFICATION_PROJECTION, null, null, null)) {
+            synchronized (dataModel) {
+                if (c.getCount() != dataModel.itemsIdMap.size()) {
+                    return false;
+                }
+                while (c.moveToNext()) {
+                    ItemInfo info = dataModel.itemsIdMap.get(c.getInt(0));
+                    if (info == null
+                            || info.itemType != c.getInt(1)
+                            || info.container != c.getInt(2)
+                            || info.screenId != c.getInt(3)
+                            || info.cellX != c.getInt(4)
+                            || info.cellY != c.getInt(5)
+                            || info.spanX != c.getInt(6)
+                            || info.spanY != c.getInt(7)
+                            || !matchesTarget(info, c.getString(8), c.getInt(9))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean matchesTarget(ItemInfo info, @Nullable String intentUri,
+            int appWidgetId) {
+        if (info instanceof LauncherAppWidgetInfo) {
+            return ((LauncherAppWidgetInfo) info).appWidgetId == appWidgetId;
+        }
+        if (!(info instanceof WorkspaceItemInfo)) {
+            return true;
+        }
+        Intent intent = info.getIntent();
+        if (intent == null || intentUri == null) {
+            return intent == null && intentUri == null;
+        }
+        try {
+            Intent dbIntent = Intent.parseUri(intentUri, 0);
+            if (!Objects.equals(dbIntent.getComponent(), intent.getComponent())) {
+                return false;
+            }
+            return info.itemType != Favorites.ITEM_TYPE_DEEP_SHORTCUT
+                    || ShortcutKey.fromIntent(dbIntent, info.user).equals(
+                            ShortcutKey.fromIntent(intent, info.user));
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static byte[] createKey(Context context, String dbName, String dbStateToken,
+            UserManagerState userManagerState) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(dbName);
+            out.writeUTF(dbStateToken);
+            out.writeInt(Settings.Global.getInt(
+                    context.getContentResolver(), Settings.Global.BOOT_COUNT, -1));
+
+            InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(context);
+            out.writeInt(idp.numColumns);
+            out.writeInt(idp.numRows);
+            out.writeInt(idp.numDatabaseHotseatIcons);
+
+            int userCount = userManagerState.allUsers.size();
+            out.writeInt(userCount);
+            for (int i = 0; i < userCount; i++) {
+                long serial = userManagerState.allUsers.keyAt(i);
+                out.writeLong(serial);
+                out.writeBoolean(userManagerState.isUserQuiet(serial));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean writeItem(DataOutputStream out, ItemInfo info, UserCache userCache)
+            throws IOException {
+        out.writeInt(info.itemType);
+        out.writeInt(info.id);
+        out.writeInt(info.container);
+        out.writeInt(info.screenId);
+        out.writeInt(info.cellX);
+        out.writeInt(info.cellY);
+        out.writeInt(info.spanX);
+        out.writeInt(info.spanY);
+        out.writeInt(info.rank);
+        out.writeInt(info.options);
+        out.writeLong(userCache.getSerialNumberForUser(info.user));
+
+        switch (info.itemType) {
+            case Favorites.ITEM_TYPE_APPLICATION:
+            case Favorites.ITEM_TYPE_DEEP_SHORTCUT: {
+                WorkspaceItemInfo wai = (WorkspaceItemInfo) info;
+                if (wai.status != 0 || (wai.runtimeStatusFlags & TRANSIENT_RUNTIME_FLAGS) != 0
+                        || wai.getIntent() == null) {
+                    return false;
+                }
+                out.writeInt(wai.runtimeStatusFlags & PERSISTED_RUNTIME_FLAGS);
+                writeString(out, wai.getIntent().toUri(0));
+                return true;
+            }
+            case Favorites.ITEM_TYPE_FOLDER:
+            case Favorites.ITEM_TYPE_APP_PAIR:
+                writeString(out, info.title == null ? "" : info.title.toString());
+                return true;
+            case Favorites.ITEM_TYPE_APPWIDGET: {
+                LauncherAppWidgetInfo widget = (LauncherAppWidgetInfo) info;
+                if (widget.restoreStatus != LauncherAppWidgetInfo.RESTORE_COMPLETED
+                        || widget.providerName == null) {
+                    return false;
+                }
+                out.writeInt(widget.appWidgetId);
+                out.writeInt(widget.sourceContainer);
+                writeString(out, widget.providerName.flattenToString());
+                return true;
+            }
+            default:
+                // Legacy shortcuts and custom widgets depend on data stored in the cursor.
+                return false;
+        }
+    }
+
+    private static Item readItem(ByteBuffer buffer) {
+        Item item = new Item();
+        item.itemType = buffer.getInt();
+        item.id = buffer.getInt();
+        item.container = buffer.getInt();
+        item.screenId = buffer.getInt();
+        item.cellX = buffer.getInt();
+        item.cellY = buffer.getInt();
+        item.spanX = buffer.getInt();
+        item.spanY = buffer.getInt();
+        item.rank = buffer.getInt();
+        item.options = buffer.getInt();
+        item.userSerial = buffer.getLong();
+        switch (item.itemType) {
+            case Favorites.ITEM_TYPE_APPLICATION:
+            case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
+                item.runtimeStatusFlags = buffer.getInt();
+                item.intentUri = readString(buffer);
+                break;
+            case Favorites.ITEM_TYPE_FOLDER:
+            case Favorites.ITEM_TYPE_APP_PAIR:
+                item.title = readString(buffer);
+                break;
+            case Favorites.ITEM_TYPE_APPWIDGET:
+                item.appWidgetId = buffer.getInt();
+                item.appWidgetSource = buffer.getInt();
+                item.appWidgetProvider = readString(buffer);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected item type " + item.itemType);
+        }
+        return item;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Applies the properties common to all items
+     */
+    static void applyCommonProperties(Item item, ItemInfo info, UserHandle user) {
+        info.id = item.id;
+        info.container = item.container;
+        info.screenId = item.screenId;
+        info.cellX = item.cellX;
+        info.cellY = item.cellY;
+        info.spanX = item.spanX;
+        info.spanY = item.spanY;
+        info.rank = item.rank;
+        info.options = item.options;
+        info.user = user;
+    }
+
+    /**
+     * Returns true if the item is placed directly on the workspace or hotseat
+     */
+    static boolean isOnWorkspaceOrHotseat(Item item) {
+        return item.container == Favorites.CONTAINER_DESKTOP
+                || item.container == Favorites.CONTAINER_HOTSEAT;
+    }
+
+    /**
+     * A single persisted item. Only the fields relevant to {@link #itemType} are set.
+     */
+    public static class Item {
+        public int itemType;
+        public int id;
+        public int container;
+        public int screenId;
+        public int cellX;
+        public int cellY;
+        public int spanX;
+        public int spanY;
+        public int rank;
+        public int options;
+        public long userSerial;
+
+        public int runtimeStatusFlags;
+        public String intentUri;
+
+        public String title;
+
+        public int appWidgetId;
+        public int appWidgetSource;
+        public String appWidgetProvider;
+    }
+}
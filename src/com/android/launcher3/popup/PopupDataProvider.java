@@ -35,6 +35,7 @@ import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -205,6 +206,21 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
         mChangeListener.onWidgetsBound();
     }
 
+    /**
+     * Replaces the widgets of the packages and categories in {@param changedWidgets} with their
+     * new entries, keeping the entries of the other ones.
+     */
+    public void updateWidgets(Map<PackageUserKey, List<WidgetsListBaseEntry>> changedWidgets) {
+        List<WidgetsListBaseEntry> allWidgets = new ArrayList<>(mAllWidgets.size());
+        for (WidgetsListBaseEntry entry : mAllWidgets) {
+            if (!changedWidgets.containsKey(PackageUserKey.fromPackageItemInfo(entry.mPkgItem))) {
+                allWidgets.add(entry);
+            }
+        }
+        changedWidgets.values().forEach(allWidgets::addAll);
+        setAllWidgets(allWidgets);
+    }
+
     public void setChangeListener(PopupDataChangeListener listener) {
         mChangeListener = listener == null ? PopupDataChangeListener.INSTANCE : listener;
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.util.Executors.getSearchExecutor;
+import static com.android.launcher3.util.LogConfig.SEARCH_LOGGING;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.Utilities;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the searches of a {@link SearchAlgorithm} on {@link
+ * com.android.launcher3.util.Executors#getSearchExecutor()}, so that they don't wait for model
+ * updates. Starting a search cancels the one in progress, which stops scanning as soon as it
+ * checks its {@link CancellationSignal}.
+ *
+ * @param <T> Search Result type
+ */
+@MainThread
+public class SearchTaskRunner<T> {
+
+    private static final boolean DEBUG_LATENCY = Utilities.isPropertyEnabled(SEARCH_LOGGING);
+
+    /**
+     * A search over data which doesn't change while searching
+     */
+    public interface SearchTask<T> {
+
+        /**
+         * Returns the results of the search, or null if {@param signal} was cancelled
+         */
+        @WorkerThread
+        @Nullable
+        ArrayList<T> search(CancellationSignal signal);
+    }
+
+    private final String mName;
+    private final Handler mResultHandler;
+
+    @Nullable
+    private CancellationSignal mActiveSignal;
+
+    public SearchTaskRunner(String name, Handler resultHandler) {
+        mName = name;
+        mResultHandler = resultHandler;
+    }
+
+    /**
+     * Cancels the search in progress and runs {@param task}, posting its results to
+     * {@param callback}
+     */
+    public void run(String query, SearchTask<T> task, SearchCallback<T> callback) {
+        cancelActiveSearch();
+        CancellationSignal signal = new CancellationSignal();
+        mActiveSignal = signal;
+        long queuedNanos = System.nanoTime();
+        getSearchExecutor().execute(() -> {
+            if (signal.isCanceled()) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            ArrayList<T> result;
+            Trace.beginSection(mName);
+            try {
+                result = task.search(signal);
+            } finally {
+                Trace.endSection();
+            }
+            if (DEBUG_LATENCY) {
+                Log.d(SEARCH_LOGGING, mName + " query length=" + query.length()
+                        + " wait=" + (startNanos - queuedNanos) / 1000 + "us"
+                        + " compute=" + (System.nanoTime() - startNanos) / 1000 + "us"
+                        + (result == null ? " cancelled" : " results=" + result.size()));
+            }
+            if (result != null) {
+                mResultHandler.post(() -> {
+                    if (!signal.isCanceled()) {
+                        callback.onSearchResult(query, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the search in progress. If {@param interruptActiveRequests}, results which were
+     * already posted are also dropped.
+     */
+    public void cancel(boolean interruptActiveRequests) {
+        if (interruptActiveRequests) {
+            cancelActiveSearch();
+            mResultHandler.removeCallbacksAndMessages(null);
+        }
+    }
+
+    private void cancelActiveSearch() {
+        if (mActiveSignal != null) {
+            mActiveSignal.cancel();
+            mActiveSignal = null;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import android.text.TextUtils;
 import com.android.launcher3.util.IntArray;
 
 import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.stream.IntStream;
 
 /**
@@ -47,6 +49,7 @@ public class StringMatcherUtility {
             return target.toLowerCase().contains(query);
         }
 
+        boolean simpleQuery = isSimple(query, 0, queryLength);
         int lastType;
         int thisType = Character.UNASSIGNED;
         int nextType = Character.getType(target.codePointAt(0));
@@ -58,13 +61,132 @@ public class StringMatcherUtility {
             nextType = i < (targetLength - 1)
                     ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
             if (matcher.isBreak(thisType, lastType, nextType)
-                    && matcher.matches(query, target.substring(i, i + queryLength))) {
+                    && matcher.matches(query, target, i,
+                            simpleQuery && isSimple(target, i, i + queryLength))) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Same as {@link #matches(String, String, StringMatcher)}, without allocating when the query
+     * and the parts of the target it is compared with only contain ASCII letters, digits and
+     * spaces.
+     */
+    public static boolean matches(MatchQuery query, MatchTarget target, StringMatcher matcher) {
+        String queryString = query.mQuery;
+        int queryLength = queryString.length();
+        int targetLength = target.mTarget.length();
+        if (targetLength < queryLength || queryLength <= 0) {
+            return false;
+        }
+
+        if (query.mFuzzy) {
+            return target.mLowerCase.contains(queryString);
+        }
+
+        int end = targetLength - queryLength;
+        int[] matchStarts = target.mMatchStarts;
+        int[] complexCounts = target.mComplexCounts;
+        for (int start : matchStarts) {
+            if (start > end) {
+                return false;
+            }
+            boolean simple = query.mSimple
+                    && complexCounts[start + queryLength] == complexCounts[start];
+            if (matcher.matches(queryString, target.mTarget, start, simple)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if {@param s} only contains ASCII letters, digits and spaces between
+     * {@param start} and {@param end}.
+     */
+    private static boolean isSimple(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isSimple(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSimple(char c) {
+        return c == ' ' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * A query prepared once for matching against many {@link MatchTarget}s
+     */
+    public static class MatchQuery {
+
+        final String mQuery;
+        final boolean mFuzzy;
+        final boolean mSimple;
+
+        public MatchQuery(String query) {
+            mQuery = query;
+            mFuzzy = requestSimpleFuzzySearch(query);
+            mSimple = isSimple(query, 0, query.length());
+        }
+
+        public String getQuery() {
+            return mQuery;
+        }
+
+        public boolean isFuzzy() {
+            return mFuzzy;
+        }
+    }
+
+    /**
+     * A target string prepared once for matching many queries without allocating. The character
+     * types of the target are only computed here to find the indices at which a query can match.
+     */
+    public static class MatchTarget {
+
+        final String mTarget;
+        // Used to match queries requesting a simple fuzzy search
+        final String mLowerCase;
+        // Indices at which a query is compared with the target
+        final int[] mMatchStarts;
+        // Number of characters before each index which are not simple
+        final int[] mComplexCounts;
+
+        public MatchTarget(String target, StringMatcher matcher) {
+            mTarget = target;
+            mLowerCase = target.toLowerCase();
+
+            int targetLength = target.length();
+            IntArray matchStarts = new IntArray();
+            mComplexCounts = new int[targetLength + 1];
+            int lastType;
+            int thisType = Character.UNASSIGNED;
+            int nextType = targetLength > 0
+                    ? Character.getType(target.codePointAt(0)) : Character.UNASSIGNED;
+            for (int i = 0; i < targetLength; i++) {
+                lastType = thisType;
+                thisType = nextType;
+                nextType = i < (targetLength - 1)
+                        ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
+                if (matcher.isBreak(thisType, lastType, nextType)) {
+                    matchStarts.add(i);
+                }
+                mComplexCounts[i + 1] = mComplexCounts[i] + (isSimple(target.charAt(i)) ? 0 : 1);
+            }
+            mMatchStarts = matchStarts.toArray();
+        }
+
+        public String getTarget() {
+            return mTarget;
+        }
+    }
+
     /**
      * Returns a list of breakpoints wherever the string contains a break. For example:
      * "t-mobile" would have breakpoints at [0, 1]
@@ -106,8 +228,14 @@ public class StringMatcherUtility {
     public static class StringMatcher {
 
         private static final char MAX_UNICODE = '\uFFFF';
+        private static final String SIMPLE_CHARS = " 0123456789abcdefghijklmnopqrstuvwxyz";
+
+        // Whether the collator of the last checked locale compares simple characters ignoring case
+        private static Locale sCheckedLocale;
+        private static boolean sIgnoreCaseForSimpleChars;
 
         private final Collator mCollator;
+        private final boolean mIgnoreCaseForSimpleChars;
 
         StringMatcher() {
             // On android N and above, Collator uses ICU implementation which has a much better
@@ -115,6 +243,40 @@ public class StringMatcherUtility {
             mCollator = Collator.getInstance();
             mCollator.setStrength(Collator.PRIMARY);
             mCollator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+            mIgnoreCaseForSimpleChars = canIgnoreCaseForSimpleChars(mCollator);
+        }
+
+        private static synchronized boolean canIgnoreCaseForSimpleChars(Collator collator) {
+            Locale locale = Locale.getDefault();
+            if (!locale.equals(sCheckedLocale)) {
+                sIgnoreCaseForSimpleChars = checkSimpleChars(collator);
+                sCheckedLocale = locale;
+            }
+            return sIgnoreCaseForSimpleChars;
+        }
+
+        /**
+         * Returns true if the collator finds every simple character different from all the others
+         * and from an empty string, and every letter equal to its upper case. Strings of simple
+         * characters of the same length can then be compared ignoring case instead, which is not
+         * the case in some locales, e.g. in Turkish "i" is different from "I".
+         */
+        private static boolean checkSimpleChars(Collator collator) {
+            String[] chars = new String[SIMPLE_CHARS.length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = String.valueOf(SIMPLE_CHARS.charAt(i));
+                if (collator.compare(chars[i], "") == 0 || collator.compare(
+                        chars[i], chars[i].toUpperCase(Locale.ROOT)) != 0) {
+                    return false;
+                }
+            }
+            Arrays.sort(chars, collator);
+            for (int i = 1; i < chars.length; i++) {
+                if (collator.compare(chars[i - 1], chars[i]) == 0) {
+                    return false;
+                }
+            }
+            return true;
         }
 
         /**
@@ -135,6 +297,19 @@ public class StringMatcherUtility {
             }
         }
 
+        /**
+         * Same as {@link #matches(String, String)} with the substring of {@param target} at
+         * {@param start} of the length of {@param query}. When {@param simple}, both only contain
+         * ASCII letters, digits and spaces, and are compared without allocating if possible.
+         */
+        boolean matches(String query, String target, int start, boolean simple) {
+            int queryLength = query.length();
+            if (simple && mIgnoreCaseForSimpleChars) {
+                return target.regionMatches(true, start, query, 0, queryLength);
+            }
+            return matches(query, target.substring(start, start + queryLength));
+        }
+
         public static StringMatcher getInstance() {
             return new StringMatcher();
         }
@@ -214,9 +389,10 @@ public class StringMatcherUtility {
     }
 
     /**
-     * Matching optimization to search in Chinese.
+     * Matching optimization to search in Chinese. Returns true if {@param s} is matched anywhere
+     * in the target instead of at break points.
      */
-    private static boolean requestSimpleFuzzySearch(String s) {
+    public static boolean requestSimpleFuzzySearch(String s) {
         for (int i = 0; i < s.length(); ) {
             int codepoint = s.codePointAt(i);
             i += Character.charCount(codepoint);
@@ -86,6 +86,14 @@ public class Executors {
     public static final LooperExecutor MODEL_EXECUTOR =
             new LooperExecutor(createAndStartNewLooper("launcher-loader"));
 
+    /**
+     * Returns the executor used for searching apps and widgets while the user types,
+     * independently of the model tasks. Its thread is only started on first use.
+     */
+    public static LooperExecutor getSearchExecutor() {
+        return SearchExecutorHolder.INSTANCE;
+    }
+
     /**
      * Returns and caches a single thread executor for a given package.
      *
@@ -97,6 +105,11 @@ public class Executors {
                         createAndStartNewLooper(p, Process.THREAD_PRIORITY_DEFAULT)));
     }
 
+    private static class SearchExecutorHolder {
+        static final LooperExecutor INSTANCE = new LooperExecutor(
+                createAndStartNewLooper("launcher-search", Process.THREAD_PRIORITY_FOREGROUND));
+    }
+
     /**
      * A simple ThreadFactory to set the thread name and priority when used with executors.
      */
@@ -6,6 +6,9 @@ import com.android.launcher3.model.data.ItemInfo;
 
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * {@link #cells} is the only state of the grid, and can be modified directly. Span searches
+ * convert it to one bitmask per row first, so that the search is done on whole rows at once.
  */
 public class GridOccupancy extends AbsGridOccupancy {
 
@@ -14,6 +17,9 @@ public class GridOccupancy extends AbsGridOccupancy {
 
     public final boolean[][] cells;
 
+    // Bit x of mRows[y] is set if the cell (x, y) is occupied, rebuilt from cells for each search
+    private long[] mRows;
+
     public GridOccupancy(int countX, int countY) {
         mCountX = countX;
         mCountY = countY;
@@ -30,14 +36,34 @@ public class GridOccupancy extends AbsGridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
-        return super.findVacantCell(vacantOut, cells, mCountX, mCountY, spanX, spanY);
+        if (mCountX > Long.SIZE) {
+            return super.findVacantCell(vacantOut, cells, mCountX, mCountY, spanX, spanY);
+        }
+        if (mRows == null) {
+            mRows = new long[mCountY];
+        }
+        for (int y = 0; y < mCountY; y++) {
+            long row = 0;
+            for (int x = 0; x < mCountX; x++) {
+                if (cells[x][y]) {
+                    row |= 1L << x;
+                }
+            }
+            mRows[y] = row;
+        }
+        return super.findVacantCell(vacantOut, mRows, mCountX, mCountY, spanX, spanY);
+    }
+
+    /**
+     * Returns true if the grid has {@param countX} columns and {@param countY} rows
+     */
+    public boolean hasSize(int countX, int countY) {
+        return mCountX == countX && mCountY == countY;
     }
 
     public void copyTo(GridOccupancy dest) {
         for (int i = 0; i < mCountX; i++) {
-            for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
-            }
+            System.arraycopy(cells[i], 0, dest.cells[i], 0, mCountY);
         }
     }
 
@@ -59,8 +85,11 @@ public class GridOccupancy extends AbsGridOccupancy {
 
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
         if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
+        int x2 = Math.min(cellX + spanX, mCountX);
+        int y2 = Math.min(cellY + spanY, mCountY);
+        if (cellX >= x2 || cellY >= y2) return;
+        for (int x = cellX; x < x2; x++) {
+            for (int y = cellY; y < y2; y++) {
                 cells[x][y] = value;
             }
         }
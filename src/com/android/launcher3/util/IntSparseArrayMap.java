@@ -38,6 +38,14 @@ public class IntSparseArrayMap<E> extends SparseArray<E> implements Iterable<E>
         return (IntSparseArrayMap<E>) super.clone();
     }
 
+    /**
+     * Returns a copy of this map which throws {@link UnsupportedOperationException} on any
+     * attempt to modify it
+     */
+    public IntSparseArrayMap<E> unmodifiableCopy() {
+        return new UnmodifiableIntSparseArrayMap<>(this);
+    }
+
     @Override
     public Iterator<E> iterator() {
         return new ValueIterator();
@@ -62,4 +70,53 @@ public class IntSparseArrayMap<E> extends SparseArray<E> implements Iterable<E>
             throw new UnsupportedOperationException();
         }
     }
+
+    private static class UnmodifiableIntSparseArrayMap<E> extends IntSparseArrayMap<E> {
+
+        UnmodifiableIntSparseArrayMap(IntSparseArrayMap<E> source) {
+            for (int i = 0; i < source.size(); i++) {
+                super.append(source.keyAt(i), source.valueAt(i));
+            }
+        }
+
+        @Override
+        public void put(int key, E value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void append(int key, E value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(int key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(int key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeAt(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeAtRange(int index, int size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setValueAt(int index, E value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -16,6 +16,8 @@
 package com.android.launcher3.util;
 
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -53,6 +55,33 @@ public class ViewCache {
         return result;
     }
 
+    /**
+     * Fills the cache of {@param layoutId} with up to {@param size} views, inflating one view each
+     * time the main looper is idle so that no frame is delayed.
+     *
+     * @return a runnable which stops inflating views, when they are not needed anymore
+     */
+    public Runnable prewarm(int layoutId, int size, Context context, ViewGroup parent) {
+        CacheEntry cacheEntry = mCache.get(layoutId);
+        if (cacheEntry == null || cacheEntry.mMaxSize < size) {
+            cacheEntry = new CacheEntry(size);
+            mCache.put(layoutId, cacheEntry);
+        }
+        CacheEntry entry = cacheEntry;
+        IdleHandler idleHandler = () -> {
+            if (mCache.get(layoutId) != entry || entry.mCurrentSize >= entry.mMaxSize) {
+                return false;
+            }
+            View view = LayoutInflater.from(context).inflate(layoutId, parent, false);
+            view.setTag(R.id.cache_entry_tag_id, entry);
+            entry.mViews[entry.mCurrentSize] = view;
+            entry.mCurrentSize++;
+            return entry.mCurrentSize < entry.mMaxSize;
+        };
+        Looper.getMainLooper().getQueue().addIdleHandler(idleHandler);
+        return () -> Looper.getMainLooper().getQueue().removeIdleHandler(idleHandler);
+    }
+
     public void recycleView(int layoutId, View view) {
         CacheEntry entry = mCache.get(layoutId);
         if (entry != view.getTag(R.id.cache_entry_tag_id)) {
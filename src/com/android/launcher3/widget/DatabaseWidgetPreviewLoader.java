@@ -15,24 +15,33 @@
  */
 package com.android.launcher3.widget;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_DOWNSAMPLED_WIDGET_PREVIEWS;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WIDGET_PREVIEW_DISK_CACHE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
 import android.os.Handler;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.Size;
+import android.util.TypedValue;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -45,9 +54,12 @@ import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.pm.ShortcutConfigActivityInfo;
 import com.android.launcher3.util.Executors;
+import com.android.launcher3.util.Themes;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
@@ -55,9 +67,14 @@ import java.util.function.Consumer;
 public class DatabaseWidgetPreviewLoader {
 
     private static final String TAG = "WidgetPreviewLoader";
+    private static final int PREVIEW_BOX_COLOR = Color.WHITE;
 
     private final Context mContext;
     private final float mPreviewBoxCornerRadius;
+    @Nullable
+    private final WidgetPreviewDiskCache mDiskCache;
+    @Nullable
+    private final WidgetPreviewBitmapPool mBitmapPool;
 
     public DatabaseWidgetPreviewLoader(Context context) {
         mContext = context;
@@ -65,6 +82,10 @@ public class DatabaseWidgetPreviewLoader {
         mPreviewBoxCornerRadius = previewCornerRadius > 0
                 ? previewCornerRadius
                 : mContext.getResources().getDimension(R.dimen.widget_preview_corner_radius);
+        mDiskCache = ENABLE_WIDGET_PREVIEW_DISK_CACHE.get()
+                ? WidgetPreviewDiskCache.INSTANCE.get(context) : null;
+        mBitmapPool = ENABLE_DOWNSAMPLED_WIDGET_PREVIEWS.get()
+                ? WidgetPreviewBitmapPool.INSTANCE.get(context) : null;
     }
 
     /**
@@ -80,13 +101,50 @@ public class DatabaseWidgetPreviewLoader {
             @NonNull Consumer<Bitmap> callback) {
         Handler handler = Executors.UI_HELPER_EXECUTOR.getHandler();
         HandlerRunnable<Bitmap> request = new HandlerRunnable<>(handler,
-                () -> generatePreview(item, previewSize.getWidth(), previewSize.getHeight()),
+                () -> mDiskCache != null
+                        ? loadOrGeneratePreview(mDiskCache, item, previewSize)
+                        : generatePreview(item, previewSize.getWidth(), previewSize.getHeight()),
                 MAIN_EXECUTOR,
                 callback);
         Utilities.postAsyncCallback(handler, request);
         return request;
     }
 
+    /**
+     * Returns the preview stored in {@param diskCache}, or generates and stores it
+     */
+    private Bitmap loadOrGeneratePreview(WidgetPreviewDiskCache diskCache, WidgetItem item,
+            Size previewSize) {
+        String key = diskCache.getKey(item, previewSize, getRenderKey(item));
+        Bitmap preview = key == null ? null : diskCache.get(key);
+        if (preview == null) {
+            preview = generatePreview(item, previewSize.getWidth(), previewSize.getHeight());
+            if (key != null) {
+                diskCache.put(key, preview);
+            }
+        }
+        return preview;
+    }
+
+    /**
+     * Returns a description of everything other than the widget item and preview size which
+     * changes how its preview is generated, including the icon and wallpaper theme state
+     */
+    private String getRenderKey(WidgetItem item) {
+        Resources res = mContext.getResources();
+        Configuration config = res.getConfiguration();
+        DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
+        String iconState = LauncherAppState.getInstance(mContext).getIconCache()
+                .getIconSystemState(item.componentName.getPackageName());
+        return (config.uiMode & Configuration.UI_MODE_NIGHT_MASK) + "/" + config.densityDpi
+                + "/" + dp.iconSizePx + "/" + dp.allAppsIconSizePx + "/" + mPreviewBoxCornerRadius
+                + "/" + iconState + "/" + Themes.isThemedIconEnabled(mContext)
+                + "/" + Integer.toHexString(Themes.getColorAccent(mContext))
+                + "/" + Integer.toHexString(PREVIEW_BOX_COLOR)
+                + "/" + res.getDimension(R.dimen.widget_preview_shadow_blur)
+                + "/" + res.getDimension(R.dimen.widget_preview_key_shadow_distance);
+    }
+
     /**
      * Returns a generated preview for a widget and if the preview should be saved in persistent
      * storage.
@@ -113,7 +171,14 @@ public class DatabaseWidgetPreviewLoader {
         if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
 
         Drawable drawable = null;
-        if (info.previewImage != 0) {
+        DecodedPreview decodedPreview = null;
+        if (info.previewImage != 0 && mBitmapPool != null) {
+            decodedPreview = decodePreviewImage(mBitmapPool, info, maxPreviewWidth);
+            if (decodedPreview != null) {
+                drawable = new BitmapDrawable(mContext.getResources(), decodedPreview.bitmap);
+            }
+        }
+        if (info.previewImage != 0 && decodedPreview == null) {
             try {
                 drawable = info.loadPreviewImage(mContext, 0);
             } catch (OutOfMemoryError e) {
@@ -141,7 +206,10 @@ public class DatabaseWidgetPreviewLoader {
 
         DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
 
-        if (widgetPreviewExists && drawable.getIntrinsicWidth() > 0
+        if (decodedPreview != null) {
+            previewWidth = decodedPreview.intrinsicWidth;
+            previewHeight = decodedPreview.intrinsicHeight;
+        } else if (widgetPreviewExists && drawable.getIntrinsicWidth() > 0
                 && drawable.getIntrinsicHeight() > 0) {
             previewWidth = drawable.getIntrinsicWidth();
             previewHeight = drawable.getIntrinsicHeight();
@@ -167,7 +235,7 @@ public class DatabaseWidgetPreviewLoader {
         final int previewHeightF = previewHeight;
         final Drawable drawableF = drawable;
 
-        return BitmapRenderer.createHardwareBitmap(previewWidth, previewHeight, c -> {
+        Bitmap preview = BitmapRenderer.createHardwareBitmap(previewWidth, previewHeight, c -> {
             // Draw the scaled preview into the final bitmap
             if (widgetPreviewExists) {
                 drawableF.setBounds(0, 0, previewWidthF, previewHeightF);
@@ -183,7 +251,7 @@ public class DatabaseWidgetPreviewLoader {
                             previewWidthF, /* bottom= */ previewHeightF);
 
                     p.setStyle(Paint.Style.FILL);
-                    p.setColor(Color.WHITE);
+                    p.setColor(PREVIEW_BOX_COLOR);
                     float roundedCorner = mContext.getResources().getDimension(
                             android.R.dimen.system_app_widget_background_radius);
                     c.drawRoundRect(boxRect, roundedCorner, roundedCorner, p);
@@ -229,12 +297,87 @@ public class DatabaseWidgetPreviewLoader {
                 }
             }
         });
+        if (decodedPreview != null) {
+            // The decoded image has been drawn into the preview, and can be decoded into again
+            mBitmapPool.release(decodedPreview.bitmap);
+        }
+        return preview;
+    }
+
+    /**
+     * Decodes the preview image of {@param info} into a bitmap from {@param pool}, sampled down to
+     * the smallest size which still covers {@param maxPreviewWidth}. Returns null if the preview
+     * image is not a plain bitmap, which is then loaded as a drawable instead.
+     */
+    @Nullable
+    private DecodedPreview decodePreviewImage(WidgetPreviewBitmapPool pool,
+            LauncherAppWidgetProviderInfo info, int maxPreviewWidth) {
+        Resources res;
+        try {
+            res = mContext.getPackageManager().getResourcesForApplication(
+                    info.providerInfo.applicationInfo);
+        } catch (NameNotFoundException e) {
+            return null;
+        }
+
+        TypedValue value = new TypedValue();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = res.openRawResource(info.previewImage, value)) {
+            BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException | Resources.NotFoundException e) {
+            return null;
+        }
+        // Nine patches and drawables defined in xml are loaded as drawables
+        if (options.outWidth <= 0 || options.outHeight <= 0
+                || (value.string != null && value.string.toString().endsWith(".9.png"))) {
+            return null;
+        }
+
+        // Size of the drawable which would have been loaded from the resources
+        int sourceDensity = value.density == TypedValue.DENSITY_DEFAULT
+                ? DisplayMetrics.DENSITY_DEFAULT : value.density;
+        float densityScale = value.density == TypedValue.DENSITY_NONE
+                ? 1f : res.getDisplayMetrics().densityDpi / (float) sourceDensity;
+        int intrinsicWidth = Math.max((int) (options.outWidth * densityScale + 0.5f), 1);
+        int intrinsicHeight = Math.max((int) (options.outHeight * densityScale + 0.5f), 1);
+
+        // Sample down as long as the image still has a pixel for each pixel of the preview
+        int previewWidth = Math.min(intrinsicWidth, maxPreviewWidth);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= previewWidth) {
+            sampleSize *= 2;
+        }
+        int sampledWidth = (options.outWidth + sampleSize - 1) / sampleSize;
+        int sampledHeight = (options.outHeight + sampleSize - 1) / sampleSize;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = pool.acquire(sampledWidth * sampledHeight * Integer.BYTES);
+        Bitmap bitmap;
+        try (InputStream in = res.openRawResource(info.previewImage)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException | IllegalArgumentException | OutOfMemoryError e) {
+            Log.w(TAG, "Can't decode widget preview for: " + info.provider, e);
+            bitmap = null;
+        }
+        if (bitmap == null) {
+            pool.release(options.inBitmap);
+            return null;
+        }
+        if (bitmap != options.inBitmap) {
+            pool.release(options.inBitmap);
+        }
+        return new DecodedPreview(bitmap, intrinsicWidth, intrinsicHeight);
     }
 
     private RectF drawBoxWithShadow(Canvas c, int width, int height) {
         Resources res = mContext.getResources();
 
-        ShadowGenerator.Builder builder = new ShadowGenerator.Builder(Color.WHITE);
+        ShadowGenerator.Builder builder = new ShadowGenerator.Builder(PREVIEW_BOX_COLOR);
         builder.shadowBlur = res.getDimension(R.dimen.widget_preview_shadow_blur);
         builder.radius = mPreviewBoxCornerRadius;
         builder.keyShadowDistance = res.getDimension(R.dimen.widget_preview_key_shadow_distance);
@@ -281,4 +424,18 @@ public class DatabaseWidgetPreviewLoader {
             throw new RuntimeException(e);
         }
     }
+
+    private static class DecodedPreview {
+
+        final Bitmap bitmap;
+        // Size of the preview image when loaded as a drawable
+        final int intrinsicWidth;
+        final int intrinsicHeight;
+
+        DecodedPreview(Bitmap bitmap, int intrinsicWidth, int intrinsicHeight) {
+            this.bitmap = bitmap;
+            this.intrinsicWidth = intrinsicWidth;
+            this.intrinsicHeight = intrinsicHeight;
+        }
+    }
 }
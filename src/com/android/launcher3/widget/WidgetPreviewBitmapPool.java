@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Pool of mutable bitmaps which widget preview images are decoded into, so that decoding the
+ * previews while scrolling the widget picker reuses the same few buffers instead of allocating
+ * new ones.
+ *
+ * Bitmaps are bucketed by the power of two of their allocation size, and bitmaps allocated by the
+ * pool have an allocation size which is exactly a power of two, so any bitmap taken from a bucket
+ * can be reconfigured to hold the requested size.
+ */
+public class WidgetPreviewBitmapPool {
+
+    public static final MainThreadInitializedObject<WidgetPreviewBitmapPool> INSTANCE =
+            new MainThreadInitializedObject<>(c -> new WidgetPreviewBitmapPool(MAX_POOLED_BYTES));
+
+    private static final long MAX_POOLED_BYTES = 16 * 1024 * 1024;
+    private static final int BUCKET_COUNT = Integer.SIZE;
+    // Number of larger buckets to look into when the bucket of the requested size is empty
+    private static final int MAX_BUCKET_OFFSET = 1;
+
+    private final long mMaxPooledBytes;
+    // Bucket i holds bitmaps with an allocation size of at least 2^i bytes
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Bitmap>[] mBuckets = new ArrayList[BUCKET_COUNT];
+    private final Set<Bitmap> mInUse = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long mPooledBytes;
+    private long mInUseBytes;
+    private long mPeakBytes;
+    private int mAllocations;
+    private int mReuses;
+
+    @VisibleForTesting
+    WidgetPreviewBitmapPool(long maxPooledBytes) {
+        mMaxPooledBytes = maxPooledBytes;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns a mutable {@link Bitmap.Config#ARGB_8888} bitmap with an allocation of at least
+     * {@param byteCount} bytes, to decode into. It should be given back with
+     * {@link #release(Bitmap)} once it is not used anymore.
+     */
+    @NonNull
+    public synchronized Bitmap acquire(int byteCount) {
+        int bucket = Math.max(2, ceilLog2(byteCount));
+        for (int i = bucket; i < Math.min(bucket + MAX_BUCKET_OFFSET + 1, BUCKET_COUNT); i++) {
+            ArrayList<Bitmap> bitmaps = mBuckets[i];
+            if (!bitmaps.isEmpty()) {
+                Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+                mPooledBytes -= bitmap.getAllocationByteCount();
+                markInUse(bitmap);
+                mReuses++;
+                return bitmap;
+            }
+        }
+
+        // Allocate 2^bucket bytes, as a bitmap which is as close to a square as possible
+        int pixelsLog2 = bucket - 2;
+        int width = 1 << ((pixelsLog2 + 1) / 2);
+        int height = 1 << (pixelsLog2 / 2);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        markInUse(bitmap);
+        mAllocations++;
+        mPeakBytes = Math.max(mPeakBytes, mInUseBytes + mPooledBytes);
+        return bitmap;
+    }
+
+    /**
+     * Gives back a bitmap which is not used anymore, so that it can be decoded into again
+     */
+    public synchronized void release(@NonNull Bitmap bitmap) {
+        int bytes = bitmap.getAllocationByteCount();
+        if (mInUse.remove(bitmap)) {
+            mInUseBytes -= bytes;
+        }
+        if (bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() != Bitmap.Config.ARGB_8888
+                || mPooledBytes + bytes > mMaxPooledBytes) {
+            bitmap.recycle();
+            return;
+        }
+        mBuckets[floorLog2(bytes)].add(bitmap);
+        mPooledBytes += bytes;
+        mPeakBytes = Math.max(mPeakBytes, mInUseBytes + mPooledBytes);
+    }
+
+    /**
+     * Releases all the pooled bitmaps, when widget previews are not being decoded anymore
+     */
+    public synchronized void trim() {
+        for (ArrayList<Bitmap> bitmaps : mBuckets) {
+            for (Bitmap bitmap : bitmaps) {
+                bitmap.recycle();
+            }
+            bitmaps.clear();
+        }
+        mPooledBytes = 0;
+    }
+
+    @VisibleForTesting
+    synchronized long getPooledBytes() {
+        return mPooledBytes;
+    }
+
+    @VisibleForTesting
+    synchronized int getAllocations() {
+        return mAllocations;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "WidgetPreviewBitmapPool:"
+                + " allocations=" + mAllocations
+                + " reuses=" + mReuses
+                + " inUseBytes=" + mInUseBytes
+                + " pooledBytes=" + mPooledBytes
+                + " peakBytes=" + mPeakBytes);
+    }
+
+    private void markInUse(Bitmap bitmap) {
+        mInUse.add(bitmap);
+        mInUseBytes += bitmap.getAllocationByteCount();
+    }
+
+    private static int ceilLog2(int value) {
+        return value <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private static int floorLog2(int value) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(value);
+    }
+}
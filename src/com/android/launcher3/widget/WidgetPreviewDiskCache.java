@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of the widget previews generated by {@link DatabaseWidgetPreviewLoader}, so
+ * that they are not generated again every time the widget picker is opened.
+ *
+ * Previews are stored as raw pixels, one file per preview, and read back through a memory mapped
+ * buffer without decoding. A preview is keyed by its provider, user, the last update time of its
+ * package, its size and how it is rendered, so previews of updated packages are never served.
+ * Files of a package are also deleted when the package changes, and the least recently used files
+ * are deleted when the cache grows over {@link #MAX_SIZE_BYTES}.
+ */
+public class WidgetPreviewDiskCache {
+
+    public static final MainThreadInitializedObject<WidgetPreviewDiskCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewDiskCache::new);
+
+    private static final String TAG = "WidgetPreviewDiskCache";
+    private static final String DIR_NAME = "widget_previews";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_SIZE_BYTES = 32 * 1024 * 1024;
+    // Width and height of the preview
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // Length of the hex SHA-256 hash ending each file name
+    private static final int HASH_LENGTH = 64;
+
+    private final File mDir;
+    private final long mMaxSizeBytes;
+    private final PackageManager mPackageManager;
+    private final UserCache mUserCache;
+
+    // Last update time of each package, read from the package manager once
+    private final Map<String, Long> mPackageUpdateTimes = new HashMap<>();
+    // Size of each file by name in least recently used order, loaded from the directory lazily
+    private LinkedHashMap<String, Long> mFiles;
+    private long mTotalSize;
+
+    private WidgetPreviewDiskCache(Context context) {
+        this(context, new File(context.getCacheDir(), DIR_NAME), MAX_SIZE_BYTES);
+    }
+
+    @VisibleForTesting
+    WidgetPreviewDiskCache(Context context, File dir, long maxSizeBytes) {
+        mDir = dir;
+        mMaxSizeBytes = maxSizeBytes;
+        mPackageManager = context.getPackageManager();
+        mUserCache = UserCache.INSTANCE.get(context);
+    }
+
+    /**
+     * Returns the key of the preview of {@param item} at {@param previewSize}, rendered as
+     * described by {@param renderKey}, or null if the package of the item is not found.
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized String getKey(@NonNull WidgetItem item, @NonNull Size previewSize,
+            @NonNull String renderKey) {
+        ComponentName component = item.componentName;
+        String packageName = component.getPackageName();
+        Long updateTime = mPackageUpdateTimes.get(packageName);
+        if (updateTime == null) {
+            try {
+                updateTime = mPackageManager.getPackageInfo(packageName,
+                        PackageManager.GET_UNINSTALLED_PACKAGES).lastUpdateTime;
+            } catch (NameNotFoundException e) {
+                return null;
+            }
+            mPackageUpdateTimes.put(packageName, updateTime);
+        }
+        String key = component.flattenToString() + "/" + updateTime + "/"
+                + previewSize.getWidth() + "x" + previewSize.getHeight() + "/"
+                + (item.widgetInfo != null ? "widget" : "shortcut") + "/" + renderKey;
+        return getFilePrefix(packageName, item.user) + hash(key);
+    }
+
+    /**
+     * Returns the preview stored for {@param key}, or null if there is none
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized Bitmap get(@NonNull String key) {
+        loadFilesIfNeeded();
+        if (mFiles.get(key) == null) {
+            return null;
+        }
+        File file = new File(mDir, key);
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width <= 0 || height <= 0
+                    || buffer.remaining() != (long) width * height * Integer.BYTES) {
+                throw new IOException("Invalid preview size " + width + "x" + height);
+            }
+            Bitmap pixels = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            pixels.copyPixelsFromBuffer(buffer.slice());
+            Bitmap preview = pixels.copy(Bitmap.Config.HARDWARE, false);
+            if (preview == null) {
+                preview = pixels;
+            } else {
+                pixels.recycle();
+            }
+            // Persist the recent use so that the eviction order survives restarts
+            file.setLastModified(System.currentTimeMillis());
+            return preview;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read widget preview " + key, e);
+            delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@param preview} for {@param key}, evicting the least recently used previews if
+     * needed
+     */
+    @WorkerThread
+    public synchronized void put(@NonNull String key, @NonNull Bitmap preview) {
+        long size = HEADER_SIZE + (long) preview.getWidth() * preview.getHeight() * Integer.BYTES;
+        if (size > mMaxSizeBytes) {
+            return;
+        }
+        loadFilesIfNeeded();
+        Bitmap pixels = preview.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.copy(Bitmap.Config.ARGB_8888, false) : preview;
+        if (pixels == null || pixels.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(pixels.getWidth()).putInt(pixels.getHeight());
+        pixels.copyPixelsToBuffer(buffer);
+        if (pixels != preview) {
+            pixels.recycle();
+        }
+        buffer.flip();
+
+        mDir.mkdirs();
+        File temp = new File(mDir, key + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp);
+             FileChannel channel = out.getChannel()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write widget preview " + key, e);
+            temp.delete();
+            return;
+        }
+        delete(key);
+        if (!temp.renameTo(new File(mDir, key))) {
+            temp.delete();
+            return;
+        }
+        mFiles.put(key, size);
+        mTotalSize += size;
+        evictIfNeeded();
+    }
+
+    /**
+     * Deletes the previews of {@param packageName} for {@param user}, when the package is updated
+     * or removed
+     */
+    public synchronized void removePackage(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        mPackageUpdateTimes.remove(packageName);
+        loadFilesIfNeeded();
+        String prefix = getFilePrefix(packageName, user);
+        Iterator<Map.Entry<String, Long>> it = mFiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            String name = entry.getKey();
+            if (name.startsWith(prefix) && name.length() == prefix.length() + HASH_LENGTH) {
+                new File(mDir, name).delete();
+                mTotalSize -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized long getTotalSize() {
+        loadFilesIfNeeded();
+        return mTotalSize;
+    }
+
+    private void loadFilesIfNeeded() {
+        if (mFiles != null) {
+            return;
+        }
+        mFiles = new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+        mTotalSize = 0;
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Add the files from the least recently used
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+        for (int i : order) {
+            File file = files[i];
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left over from a write which didn't complete
+                file.delete();
+                continue;
+            }
+            long size = file.length();
+            mFiles.put(file.getName(), size);
+            mTotalSize += size;
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> it = mFiles.entrySet().iterator();
+        while (mTotalSize > mMaxSizeBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            new File(mDir, entry.getKey()).delete();
+            mTotalSize -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    private void delete(String key) {
+        Long size = mFiles.remove(key);
+        if (size != null) {
+            mTotalSize -= size;
+        }
+        new File(mDir, key).delete();
+    }
+
+    private String getFilePrefix(String packageName, UserHandle user) {
+        return packageName + "_" + mUserCache.getSerialNumberForUser(user) + "_";
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.android.launcher3.widget.picker;
 import static android.view.View.MeasureSpec.makeMeasureSpec;
 
 import static com.android.launcher3.LauncherAnimUtils.VIEW_TRANSLATE_Y;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ASYNC_WIDGET_PICKER_LIST;
 import static com.android.launcher3.config.FeatureFlags.LARGE_SCREEN_WIDGET_PICKER;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGETSTRAY_SEARCHED;
 import static com.android.launcher3.testing.shared.TestProtocol.NORMAL_STATE_ORDINAL;
@@ -43,6 +44,7 @@ import android.view.WindowInsets;
 import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 import android.widget.Button;
+import android.widget.TableRow;
 import android.widget.TextView;
 import android.window.BackEvent;
 
@@ -70,6 +72,7 @@ import com.android.launcher3.views.StickyHeaderLayout;
 import com.android.launcher3.views.WidgetsEduView;
 import com.android.launcher3.widget.BaseWidgetSheet;
 import com.android.launcher3.widget.LauncherWidgetHolder.ProviderChangedListener;
+import com.android.launcher3.widget.WidgetPreviewBitmapPool;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.search.SearchModeListener;
 import com.android.launcher3.widget.picker.search.WidgetsSearchBar;
@@ -99,6 +102,8 @@ public class WidgetsFullSheet extends BaseWidgetSheet
     private static final float RECOMMENDATION_TABLE_HEIGHT_RATIO = 0.75f;
     private static final String KEY_WIDGETS_EDUCATION_DIALOG_SEEN =
             "launcher.widgets_education_dialog_seen";
+    // Number of widget cells inflated while the sheet is idle, to expand packages without inflating
+    private static final int WIDGET_CELL_POOL_SIZE = 12;
 
     private final UserManagerState mUserManagerState = new UserManagerState();
     private final UserHandle mCurrentUser = Process.myUserHandle();
@@ -111,6 +116,7 @@ public class WidgetsFullSheet extends BaseWidgetSheet
     protected boolean mHasRecommendedWidgets;
     protected final SparseArray<AdapterHolder> mAdapters = new SparseArray();
     @Nullable private ArrowTipView mLatestEducationalTip;
+    @Nullable private Runnable mCancelWidgetCellPrewarm;
     private final OnLayoutChangeListener mLayoutChangeListenerToShowTips =
             new OnLayoutChangeListener() {
                 @Override
@@ -351,12 +357,21 @@ public class WidgetsFullSheet extends BaseWidgetSheet
         mActivityContext.getAppWidgetHolder().addProviderChangeListener(this);
         notifyWidgetProvidersChanged();
         onRecommendedWidgetsBound();
+        if (ENABLE_ASYNC_WIDGET_PICKER_LIST.get()) {
+            mCancelWidgetCellPrewarm = mActivityContext.getViewCache().prewarm(
+                    R.layout.widget_cell, WIDGET_CELL_POOL_SIZE, getContext(),
+                    new TableRow(getContext()));
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mActivityContext.getAppWidgetHolder().removeProviderChangeListener(this);
+        if (mCancelWidgetCellPrewarm != null) {
+            mCancelWidgetCellPrewarm.run();
+            mCancelWidgetCellPrewarm = null;
+        }
         mAdapters.get(AdapterHolder.PRIMARY).mWidgetsRecyclerView
                 .removeOnAttachStateChangeListener(mBindScrollbarInSearchMode);
         if (mHasWorkProfile) {
@@ -763,6 +778,10 @@ public class WidgetsFullSheet extends BaseWidgetSheet
     @Override
     protected void onCloseComplete() {
         super.onCloseComplete();
+        WidgetPreviewBitmapPool bitmapPool = WidgetPreviewBitmapPool.INSTANCE.getNoCreate();
+        if (bitmapPool != null) {
+            bitmapPool.trim();
+        }
         removeCallbacks(mShowEducationTipTask);
         if (mLatestEducationalTip != null) {
             mLatestEducationalTip.close(true);
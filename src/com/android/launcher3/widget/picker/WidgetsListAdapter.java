@@ -15,10 +15,13 @@
  */
 package com.android.launcher3.widget.picker;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ASYNC_WIDGET_PICKER_LIST;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGETSTRAY_APP_EXPANDED;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_DEFAULT;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_FIRST;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_LAST;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 import static com.android.launcher3.widget.BaseWidgetSheet.DEFAULT_MAX_HORIZONTAL_SPANS;
 
 import android.content.Context;
@@ -91,6 +94,10 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
 
     private final List<WidgetsListBaseEntry> mAllEntries = new ArrayList<>();
     private ArrayList<WidgetsListBaseEntry> mVisibleEntries = new ArrayList<>();
+    // Entries replacing mVisibleEntries once their diff, computed in the background, is dispatched
+    @Nullable private List<WidgetsListBaseEntry> mPendingVisibleEntries = null;
+    // Incremented on every update of the visible entries, to drop outdated background diffs
+    private int mVisibleEntriesUpdateId;
     @Nullable private PackageUserKey mWidgetsContentVisiblePackageUserKey = null;
 
     private Predicate<WidgetsListBaseEntry> mHeaderAndSelectedContentFilter = entry ->
@@ -154,7 +161,12 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
      */
     public boolean hasVisibleEntries() {
         // Account for the 1st space entry
-        return getItemCount() > 1;
+        return getLatestVisibleEntries().size() > 1;
+    }
+
+    /** Returns the visible entries, including the ones which are not dispatched yet. */
+    private List<WidgetsListBaseEntry> getLatestVisibleEntries() {
+        return mPendingVisibleEntries != null ? mPendingVisibleEntries : mVisibleEntries;
     }
 
     /** Returns all items that will be drawn in a recycler view. */
@@ -211,8 +223,32 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
                 })
                 .collect(Collectors.toList());
 
+        int updateId = ++mVisibleEntriesUpdateId;
+        if (ENABLE_ASYNC_WIDGET_PICKER_LIST.get() && !mVisibleEntries.isEmpty()) {
+            // Diff the entries in the background, keeping the current entries until the result is
+            // dispatched, as they are still shown by the recycler view
+            mPendingVisibleEntries = newVisibleEntries;
+            List<WidgetsListBaseEntry> oldVisibleEntries = new ArrayList<>(mVisibleEntries);
+            UI_HELPER_EXECUTOR.execute(() -> {
+                DiffResult diffResult = DiffUtil.calculateDiff(
+                        new WidgetsDiffCallback(oldVisibleEntries, newVisibleEntries), false);
+                MAIN_EXECUTOR.execute(() -> {
+                    if (updateId == mVisibleEntriesUpdateId) {
+                        setVisibleEntries(newVisibleEntries, diffResult, topForPackageUserKey);
+                    }
+                });
+            });
+            return;
+        }
+
         DiffResult diffResult = DiffUtil.calculateDiff(
                 new WidgetsDiffCallback(mVisibleEntries, newVisibleEntries), false);
+        setVisibleEntries(newVisibleEntries, diffResult, topForPackageUserKey);
+    }
+
+    private void setVisibleEntries(List<WidgetsListBaseEntry> newVisibleEntries,
+            DiffResult diffResult, OptionalInt topForPackageUserKey) {
+        mPendingVisibleEntries = null;
         mVisibleEntries.clear();
         mVisibleEntries.addAll(newVisibleEntries);
         diffResult.dispatchUpdatesTo(this);
@@ -273,7 +309,7 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
      * first header in the new list that gets generated as we search.
      */
     void selectFirstHeaderEntry() {
-        mVisibleEntries.stream()
+        getLatestVisibleEntries().stream()
                 .filter(entry -> entry instanceof WidgetsListHeaderEntry)
                 .findFirst()
                 .ifPresent(entry ->
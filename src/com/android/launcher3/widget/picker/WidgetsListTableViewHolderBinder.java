@@ -15,6 +15,8 @@
  */
 package com.android.launcher3.widget.picker;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ASYNC_WIDGET_PICKER_LIST;
+
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.util.Log;
@@ -138,6 +140,9 @@ public final class WidgetsListTableViewHolderBinder
         // Hide extra table rows.
         for (int i = widgetItemsTable.size(); i < table.getChildCount(); i++) {
             table.getChildAt(i).setVisibility(View.GONE);
+            if (ENABLE_ASYNC_WIDGET_PICKER_LIST.get()) {
+                recycleWidgetCells((TableRow) table.getChildAt(i), 0);
+            }
         }
 
         for (int i = 0; i < widgetItemsTable.size(); i++) {
@@ -151,13 +156,20 @@ public final class WidgetsListTableViewHolderBinder
                 table.addView(tableRow);
             }
             if (tableRow.getChildCount() > widgetItems.size()) {
-                for (int j = widgetItems.size(); j < tableRow.getChildCount(); j++) {
-                    tableRow.getChildAt(j).setVisibility(View.GONE);
+                if (ENABLE_ASYNC_WIDGET_PICKER_LIST.get()) {
+                    recycleWidgetCells(tableRow, widgetItems.size());
+                } else {
+                    for (int j = widgetItems.size(); j < tableRow.getChildCount(); j++) {
+                        tableRow.getChildAt(j).setVisibility(View.GONE);
+                    }
                 }
             } else {
                 for (int j = tableRow.getChildCount(); j < widgetItems.size(); j++) {
-                    WidgetCell widget = (WidgetCell) mLayoutInflater.inflate(
-                            R.layout.widget_cell, tableRow, false);
+                    WidgetCell widget = ENABLE_ASYNC_WIDGET_PICKER_LIST.get()
+                            ? mActivityContext.getViewCache().getView(
+                                    R.layout.widget_cell, mContext, tableRow)
+                            : (WidgetCell) mLayoutInflater.inflate(
+                                    R.layout.widget_cell, tableRow, false);
                     // set up touch.
                     View preview = widget.findViewById(R.id.widget_preview_container);
                     preview.setOnClickListener(mIconClickListener);
@@ -169,6 +181,19 @@ public final class WidgetsListTableViewHolderBinder
         }
     }
 
+    /**
+     * Removes the widget cells of {@code tableRow} from {@code startIndex}, and gives them back to
+     * the view cache so that the next expanded table can use them instead of inflating new ones.
+     */
+    private void recycleWidgetCells(TableRow tableRow, int startIndex) {
+        for (int j = tableRow.getChildCount() - 1; j >= startIndex; j--) {
+            WidgetCell widget = (WidgetCell) tableRow.getChildAt(j);
+            tableRow.removeViewAt(j);
+            widget.clear();
+            mActivityContext.getViewCache().recycleView(R.layout.widget_cell, widget);
+        }
+    }
+
     @Override
     public void unbindViewHolder(WidgetsRowViewHolder holder) {
         int numOfRows = holder.tableContainer.getChildCount();
@@ -16,14 +16,19 @@
 
 package com.android.launcher3.widget.picker.search;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_SEARCH_EXECUTOR;
 import static com.android.launcher3.search.StringMatcherUtility.matches;
 
+import android.os.CancellationSignal;
 import android.os.Handler;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
+import com.android.launcher3.search.SearchTaskRunner;
 import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
@@ -40,23 +45,31 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
 
     private final Handler mResultHandler;
     private final PopupDataProvider mDataProvider;
+    private final SearchTaskRunner<WidgetsListBaseEntry> mSearchRunner;
 
     public SimpleWidgetsSearchAlgorithm(PopupDataProvider dataProvider) {
         mResultHandler = new Handler();
         mDataProvider = dataProvider;
+        mSearchRunner = new SearchTaskRunner<>("WidgetSearch", mResultHandler);
     }
 
     @Override
     public void doSearch(String query, SearchCallback<WidgetsListBaseEntry> callback) {
+        if (ENABLE_SEARCH_EXECUTOR.get()) {
+            // The bound widgets are replaced rather than modified, so they can be searched from
+            // the search thread
+            List<WidgetsListBaseEntry> allWidgets = mDataProvider.getAllWidgets();
+            mSearchRunner.run(query,
+                    signal -> getFilteredWidgets(allWidgets, query, signal), callback);
+            return;
+        }
         ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
         mResultHandler.post(() -> callback.onSearchResult(query, result));
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
-        if (interruptActiveRequests) {
-            mResultHandler.removeCallbacksAndMessages(/*token= */null);
-        }
+        mSearchRunner.cancel(interruptActiveRequests);
     }
 
     /**
@@ -64,19 +77,34 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
      */
     public static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
             PopupDataProvider dataProvider, String input) {
+        return getFilteredWidgets(dataProvider.getAllWidgets(), input, null);
+    }
+
+    /**
+     * Returns entries for the widgets in {@param allWidgets} matching {@param input}, or null if
+     * {@param signal} was cancelled during the search
+     */
+    @Nullable
+    private static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
+            List<WidgetsListBaseEntry> allWidgets, String input,
+            @Nullable CancellationSignal signal) {
         ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
-        dataProvider.getAllWidgets().stream()
-                .filter(entry -> entry instanceof WidgetsListHeaderEntry)
-                .forEach(headerEntry -> {
-                    List<WidgetItem> matchedWidgetItems = filterWidgetItems(
-                            input, headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets);
-                    if (matchedWidgetItems.size() > 0) {
-                        results.add(WidgetsListHeaderEntry.createForSearch(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                        results.add(new WidgetsListContentEntry(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                    }
-                });
+        for (WidgetsListBaseEntry headerEntry : allWidgets) {
+            if (!(headerEntry instanceof WidgetsListHeaderEntry)) {
+                continue;
+            }
+            if (signal != null && signal.isCanceled()) {
+                return null;
+            }
+            List<WidgetItem> matchedWidgetItems = filterWidgetItems(
+                    input, headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets);
+            if (matchedWidgetItems.size() > 0) {
+                results.add(WidgetsListHeaderEntry.createForSearch(headerEntry.mPkgItem,
+                        headerEntry.mTitleSectionName, matchedWidgetItems));
+                results.add(new WidgetsListContentEntry(headerEntry.mPkgItem,
+                        headerEntry.mTitleSectionName, matchedWidgetItems));
+            }
+        }
         return results;
     }
 
@@ -3,6 +3,7 @@ package com.android.launcher3.model;
 
 import static android.appwidget.AppWidgetProviderInfo.WIDGET_FEATURE_HIDE_FROM_PICKER;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_MODEL;
 import static com.android.launcher3.pm.ShortcutConfigActivityInfo.queryList;
 import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
 
@@ -44,7 +45,9 @@ import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +72,13 @@ public class WidgetsModel {
     /* Map of widgets and shortcuts that are tracked per package. */
     private final Map<PackageItemInfo, List<WidgetItem>> mWidgetsList = new HashMap<>();
 
+    /* Header and content entries of each package, kept between incremental updates. */
+    private final Map<PackageItemInfo, Pair<WidgetsListHeaderEntry, WidgetsListContentEntry>>
+            mPickerEntries = new HashMap<>();
+    /* Packages and categories whose widgets changed since the picker entries were last read. */
+    private final Set<PackageItemInfo> mChangedPackageItems = new HashSet<>();
+    private boolean mAllPackageItemsChanged = true;
+
     /**
      * Returns a list of {@link WidgetsListBaseEntry}. All {@link WidgetItem} in a single row
      * are sorted (based on label and user), but the overall list of
@@ -78,6 +88,15 @@ public class WidgetsModel {
      */
     public synchronized ArrayList<WidgetsListBaseEntry> getWidgetsListForPicker(Context context) {
         ArrayList<WidgetsListBaseEntry> result = new ArrayList<>();
+        if (ENABLE_INCREMENTAL_WIDGETS_MODEL.get()) {
+            updatePickerEntries(context);
+            for (Pair<WidgetsListHeaderEntry, WidgetsListContentEntry> entries
+                    : mPickerEntries.values()) {
+                result.add(entries.first);
+                result.add(entries.second);
+            }
+            return result;
+        }
         AlphabeticIndexCompat indexer = new AlphabeticIndexCompat(context);
 
         for (Map.Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsList.entrySet()) {
@@ -91,6 +110,60 @@ public class WidgetsModel {
         return result;
     }
 
+    /**
+     * Returns the picker entries of the packages and categories whose widgets changed since the
+     * picker entries were last read, with no entries for the ones which don't have widgets
+     * anymore. Returns null if all the entries changed, and should be read with
+     * {@link #getWidgetsListForPicker(Context)} instead.
+     */
+    @Nullable
+    public synchronized Map<PackageUserKey, List<WidgetsListBaseEntry>> getChangedWidgetsForPicker(
+            Context context) {
+        if (mAllPackageItemsChanged) {
+            return null;
+        }
+        List<PackageItemInfo> changedPackageItems = new ArrayList<>(mChangedPackageItems);
+        updatePickerEntries(context);
+        Map<PackageUserKey, List<WidgetsListBaseEntry>> result = new HashMap<>();
+        for (PackageItemInfo pkgItem : changedPackageItems) {
+            List<WidgetsListBaseEntry> changedEntries = new ArrayList<>();
+            Pair<WidgetsListHeaderEntry, WidgetsListContentEntry> entries =
+                    mPickerEntries.get(pkgItem);
+            if (entries != null) {
+                changedEntries.add(entries.first);
+                changedEntries.add(entries.second);
+            }
+            result.put(PackageUserKey.fromPackageItemInfo(pkgItem), changedEntries);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the picker entries of the changed packages and categories again, or of all of them
+     * if they all changed, and drops the entries of the ones which don't have widgets anymore.
+     */
+    private void updatePickerEntries(Context context) {
+        if (!mAllPackageItemsChanged && mChangedPackageItems.isEmpty()) {
+            return;
+        }
+        AlphabeticIndexCompat indexer = new AlphabeticIndexCompat(context);
+        for (Map.Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsList.entrySet()) {
+            PackageItemInfo pkgItem = entry.getKey();
+            if (!mAllPackageItemsChanged && !mChangedPackageItems.contains(pkgItem)) {
+                continue;
+            }
+            List<WidgetItem> widgetItems = entry.getValue();
+            String sectionName = (pkgItem.title == null) ? "" :
+                    indexer.computeSectionName(pkgItem.title);
+            mPickerEntries.put(pkgItem, Pair.create(
+                    WidgetsListHeaderEntry.create(pkgItem, sectionName, widgetItems),
+                    new WidgetsListContentEntry(pkgItem, sectionName, widgetItems)));
+        }
+        mPickerEntries.keySet().retainAll(mWidgetsList.keySet());
+        mChangedPackageItems.clear();
+        mAllPackageItemsChanged = false;
+    }
+
     /** Returns a mapping of packages to their widgets without static shortcuts. */
     public synchronized Map<PackageUserKey, List<WidgetItem>> getAllWidgetsWithoutShortcuts() {
         Map<PackageUserKey, List<WidgetItem>> packagesToWidgets = new HashMap<>();
@@ -114,7 +187,20 @@ public class WidgetsModel {
     public List<ComponentWithLabelAndIcon> update(
             LauncherAppState app, @Nullable PackageUserKey packageUser) {
         Preconditions.assertWorkerThread();
+        return updateImpl(app, packageUser);
+    }
+
+    /**
+     * Same as {@link #update} for all the packages, called by the parallel loader from one of
+     * its phase threads while the model thread is blocked on the loader.
+     */
+    public List<ComponentWithLabelAndIcon> updateAllFromLoaderPhase(LauncherAppState app) {
+        Preconditions.assertNonUiThread();
+        return updateImpl(app, null);
+    }
 
+    private List<ComponentWithLabelAndIcon> updateImpl(
+            LauncherAppState app, @Nullable PackageUserKey packageUser) {
         Context context = app.getContext();
         final ArrayList<WidgetItem> widgetsAndShortcuts = new ArrayList<>();
         List<ComponentWithLabelAndIcon> updatedItems = new ArrayList<>();
@@ -164,6 +250,25 @@ public class WidgetsModel {
         // {@link mPackageItemInfos} to locate the key to be used for {@link #mWidgetsList}
         PackageItemInfoCache packageItemInfoCache = new PackageItemInfoCache();
 
+        if (packageUser != null && ENABLE_INCREMENTAL_WIDGETS_MODEL.get()) {
+            updatePackageWidgetsAndShortcuts(rawWidgetsShortcuts, app, packageUser,
+                    packageItemInfoCache);
+        } else {
+            mAllPackageItemsChanged = true;
+            replaceWidgetsAndShortcuts(rawWidgetsShortcuts, app, packageUser,
+                    packageItemInfoCache);
+        }
+
+        // Update each package entry
+        IconCache iconCache = app.getIconCache();
+        for (PackageItemInfo p : packageItemInfoCache.values()) {
+            iconCache.getTitleAndIconForApp(p, true /* userLowResIcon */);
+        }
+    }
+
+    private void replaceWidgetsAndShortcuts(ArrayList<WidgetItem> rawWidgetsShortcuts,
+            LauncherAppState app, @Nullable PackageUserKey packageUser,
+            PackageItemInfoCache packageItemInfoCache) {
         if (packageUser == null) {
             // Clear the list if this is an update on all widgets and shortcuts.
             mWidgetsList.clear();
@@ -178,18 +283,74 @@ public class WidgetsModel {
                 .flatMap(widgetItem -> getPackageUserKeys(app.getContext(), widgetItem).stream()
                         .map(key -> new Pair<>(packageItemInfoCache.getOrCreate(key), widgetItem)))
                 .collect(groupingBy(pair -> pair.first, mapping(pair -> pair.second, toList()))));
+    }
 
-        // Update each package entry
-        IconCache iconCache = app.getIconCache();
-        for (PackageItemInfo p : packageItemInfoCache.values()) {
-            iconCache.getTitleAndIconForApp(p, true /* userLowResIcon */);
+    /**
+     * Replaces the widgets and shortcuts of {@param packageUser} only, in the entry of the package
+     * and in the entries of the categories they are in, and marks these entries as changed. The
+     * lists of {@link #mWidgetsList} are replaced instead of being modified, as they can be read
+     * without the lock through {@link #getWidgetProviderInfoByProviderName}.
+     */
+    private void updatePackageWidgetsAndShortcuts(ArrayList<WidgetItem> rawWidgetsShortcuts,
+            LauncherAppState app, PackageUserKey packageUser,
+            PackageItemInfoCache packageItemInfoCache) {
+        Iterator<Entry<PackageItemInfo, List<WidgetItem>>> it = mWidgetsList.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<PackageItemInfo, List<WidgetItem>> entry = it.next();
+            PackageItemInfo pkgItem = entry.getKey();
+            if (!packageUser.mUser.equals(pkgItem.user)) {
+                continue;
+            }
+            List<WidgetItem> items;
+            if (pkgItem.widgetCategory == NO_CATEGORY) {
+                if (!packageUser.mPackageName.equals(pkgItem.packageName)) {
+                    continue;
+                }
+                items = Collections.emptyList();
+            } else {
+                items = entry.getValue().stream()
+                        .filter(item -> !packageUser.mPackageName.equals(
+                                item.componentName.getPackageName()))
+                        .collect(toList());
+                if (items.size() == entry.getValue().size()) {
+                    continue;
+                }
+            }
+            mChangedPackageItems.add(pkgItem);
+            if (items.isEmpty()) {
+                it.remove();
+            } else {
+                entry.setValue(items);
+            }
         }
+
+        WidgetValidityCheck validityCheck = new WidgetValidityCheck(app);
+        Map<PackageItemInfo, List<WidgetItem>> addedItems = new HashMap<>();
+        for (WidgetItem widgetItem : rawWidgetsShortcuts) {
+            if (!validityCheck.test(widgetItem)) {
+                continue;
+            }
+            for (PackageUserKey key : getPackageUserKeys(app.getContext(), widgetItem)) {
+                addedItems.computeIfAbsent(packageItemInfoCache.getOrCreate(key),
+                        k -> new ArrayList<>()).add(widgetItem);
+            }
+        }
+        addedItems.forEach((pkgItem, added) -> {
+            List<WidgetItem> current = mWidgetsList.get(pkgItem);
+            List<WidgetItem> items = current == null ? added : new ArrayList<>(current);
+            if (current != null) {
+                items.addAll(added);
+            }
+            mWidgetsList.put(pkgItem, items);
+            mChangedPackageItems.add(pkgItem);
+        });
     }
 
-    public void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
+    public synchronized void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
             LauncherAppState app) {
         for (Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsList.entrySet()) {
             if (packageNames.contains(entry.getKey().packageName)) {
+                mChangedPackageItems.add(entry.getKey());
                 List<WidgetItem> items = entry.getValue();
                 int count = items.size();
                 for (int i = 0; i < count; i++) {
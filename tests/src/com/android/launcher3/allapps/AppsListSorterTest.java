@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Tests for {@link AppsListSorter}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppsListSorterTest {
+
+    private static final Comparator<AppInfo> COMPARATOR =
+            Comparator.<AppInfo, String>comparing(info -> info.title.toString())
+                    .thenComparing(info -> info.componentName);
+
+    private final List<AppInfo> mSorted = new ArrayList<>();
+    private final AppsListSorter mSorter = new AppsListSorter(mSorted);
+
+    @Test
+    public void update_keepsAppsSorted() {
+        Random random = new Random(1);
+        List<AppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            apps.add(newApp(random));
+        }
+        assertSorted(apps, null);
+
+        for (int round = 0; round < 50; round++) {
+            // Install, uninstall and rename a few apps, renaming them in place like the model
+            for (int i = random.nextInt(3); i > 0; i--) {
+                apps.add(newApp(random));
+            }
+            for (int i = random.nextInt(3); i > 0 && !apps.isEmpty(); i--) {
+                apps.remove(random.nextInt(apps.size()));
+            }
+            for (int i = random.nextInt(3); i > 0 && !apps.isEmpty(); i--) {
+                apps.get(random.nextInt(apps.size())).title = randomTitle(random);
+            }
+            assertSorted(apps, null);
+        }
+    }
+
+    @Test
+    public void update_filtersApps() {
+        Random random = new Random(2);
+        List<AppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            apps.add(newApp(random));
+        }
+        Predicate<ItemInfo> startsWithA = info -> info.title.toString().startsWith("a");
+        assertSorted(apps, startsWithA);
+
+        apps.add(newApp(random));
+        apps.get(0).title = "a" + apps.get(0).title;
+        assertSorted(apps, startsWithA);
+        assertSorted(apps, null);
+    }
+
+    private void assertSorted(List<AppInfo> apps, Predicate<ItemInfo> filter) {
+        mSorter.update(apps.toArray(new AppInfo[0]), COMPARATOR, filter);
+        List<AppInfo> expected = new ArrayList<>();
+        for (AppInfo app : apps) {
+            if (filter == null || filter.test(app)) {
+                expected.add(app);
+            }
+        }
+        expected.sort(COMPARATOR);
+        assertEquals(expected, mSorted);
+    }
+
+    private static AppInfo newApp(Random random) {
+        AppInfo info = new AppInfo();
+        info.title = randomTitle(random);
+        info.sectionName = info.title.toString().substring(0, 1);
+        info.componentName = new ComponentName("com.example", "Activity" + random.nextInt());
+        return info;
+    }
+
+    private static String randomTitle(Random random) {
+        return (char) ('a' + random.nextInt(4)) + "pp " + random.nextInt(20);
+    }
+}
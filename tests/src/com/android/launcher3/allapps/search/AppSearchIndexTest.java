@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link AppSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexTest {
+
+    private static final String[] WORDS = {"play", "Store", "you", "Tube", "g", "Mail", "maps",
+            "2048", "LEGO®", "cats&dogs", "T-Mobile", "Agar.io", "élan", "Ünit", "电子", "邮件",
+            "photo", "Editor", "calc", "Pro", "x", "Wallet", "über", "ＦＵＬＬ"};
+    private static final String[] QUERIES = {"play", "tube", "mail", "2048", "lego", "dogs",
+            "mobile", "io", "elan", "unit", "电子", "邮件", "photo editor", "über", "pro", "full",
+            "zzz"};
+
+    @Test
+    public void typedQueries_matchLinearSearch() {
+        List<AppInfo> apps = newApps(500, new Random(1));
+        AppSearchIndex index = new AppSearchIndex();
+        index.update(apps);
+        for (String query : QUERIES) {
+            for (int length = 1; length <= query.length(); length++) {
+                assertSameResult(apps, index, query.substring(0, length));
+            }
+            // Deleting characters starts over from all the apps
+            for (int length = query.length() - 1; length > 0; length--) {
+                assertSameResult(apps, index, query.substring(0, length));
+            }
+        }
+    }
+
+    @Test
+    public void update_indexesChangedApps() {
+        List<AppInfo> apps = newApps(100, new Random(2));
+        AppSearchIndex index = new AppSearchIndex();
+        index.update(apps);
+        assertSameResult(apps, index, "p");
+
+        apps.get(0).title = "Photo Booth";
+        apps.remove(1);
+        apps.add(newApp("pinball"));
+        index.update(apps);
+        assertSameResult(apps, index, "p");
+        assertSameResult(apps, index, "ph");
+        assertSameResult(apps, index, "pin");
+    }
+
+    private static void assertSameResult(List<AppInfo> apps, AppSearchIndex index, String query) {
+        List<AdapterItem> expected = DefaultAppSearchAlgorithm.getTitleMatchResult(apps, query);
+        index.update(apps);
+        List<AdapterItem> actual = index.search(query.toLowerCase());
+        assertEquals(query, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(query, expected.get(i).itemInfo, actual.get(i).itemInfo);
+        }
+    }
+
+    private static List<AppInfo> newApps(int count, Random random) {
+        List<AppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            for (int words = random.nextInt(3); words > 0; words--) {
+                title.append(random.nextBoolean() ? " " : "")
+                        .append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            apps.add(newApp(title.toString()));
+        }
+        return apps;
+    }
+
+    private static AppInfo newApp(String title) {
+        AppInfo info = new AppInfo();
+        info.title = title;
+        return info;
+    }
+}
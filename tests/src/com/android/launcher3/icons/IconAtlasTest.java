@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.Themes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link IconAtlas}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconAtlasTest {
+
+    // Roughly a full first screen and hotseat
+    private static final int MAX_ICONS = 30;
+
+    private Context mContext;
+    private IconCache mIconCache;
+    private int mIconBitmapSize;
+    private File mFile;
+    private List<LauncherActivityInfo> mActivities;
+
+    @Before
+    public void setup() throws Exception {
+        mContext = getInstrumentation().getTargetContext();
+        assumeFalse(Themes.isThemedIconEnabled(mContext));
+
+        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        mIconBitmapSize = idp.iconBitmapSize;
+        // In memory icon cache
+        mIconCache = new IconCache(mContext, idp, null, new LauncherIconProvider(mContext));
+        mFile = File.createTempFile("icon_atlas", null, mContext.getCacheDir());
+
+        // Only apps with their own icon are added to the atlas
+        mActivities = new ArrayList<>();
+        for (LauncherActivityInfo lai : mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, Process.myUserHandle())) {
+            AppInfo info = new AppInfo(lai, lai.getUser(), false);
+            mIconCache.getTitleAndIcon(info, lai, false);
+            if (mActivities.size() < MAX_ICONS
+                    && !mIconCache.isDefaultIcon(info.bitmap, info.user)) {
+                mActivities.add(lai);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mFile != null) {
+            new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize).delete();
+        }
+    }
+
+    @Test
+    public void loadIcons_restoresWrittenIcons() {
+        List<WorkspaceItemInfo> items = loadWorkspaceItems();
+        new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize).write(items);
+
+        List<IconRequestInfo<WorkspaceItemInfo>> requests = newRequests(false);
+        List<IconRequestInfo<WorkspaceItemInfo>> pending = new ArrayList<>(requests);
+        int loaded = new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize)
+                .loadIcons(pending);
+
+        assertEquals(items.size(), loaded);
+        assertTrue(pending.isEmpty());
+        for (int i = 0; i < items.size(); i++) {
+            WorkspaceItemInfo expected = items.get(i);
+            WorkspaceItemInfo actual = requests.get(i).itemInfo;
+            assertEquals(expected.title.toString(), actual.title.toString());
+            assertEquals(expected.bitmap.color, actual.bitmap.color);
+            assertTrue(actual.bitmap.icon.sameAs(
+                    expected.bitmap.icon.copy(actual.bitmap.icon.getConfig(), false)));
+        }
+    }
+
+    @Test
+    public void loadIcons_skipsLowResRequests() {
+        new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize).write(loadWorkspaceItems());
+
+        List<IconRequestInfo<WorkspaceItemInfo>> requests = newRequests(true);
+        assertEquals(0, new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize)
+                .loadIcons(requests));
+        assertEquals(mActivities.size(), requests.size());
+    }
+
+    @Test
+    public void loadIcons_ignoresAtlasOfOtherIconSize() {
+        new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize).write(loadWorkspaceItems());
+
+        List<IconRequestInfo<WorkspaceItemInfo>> requests = newRequests(false);
+        assertEquals(0, new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize + 1)
+                .loadIcons(requests));
+        assertEquals(mActivities.size(), requests.size());
+    }
+
+    @Test
+    public void write_skipsUnchangedAtlas() {
+        List<WorkspaceItemInfo> items = loadWorkspaceItems();
+        IconAtlas atlas = new IconAtlas(mContext, mIconCache, mFile, mIconBitmapSize);
+        atlas.write(items);
+        assertTrue(mFile.setLastModified(0));
+
+        atlas.write(items);
+        assertEquals(0, mFile.lastModified());
+
+        atlas.write(items.subList(1, items.size()));
+        assertFalse(mFile.lastModified() == 0);
+    }
+
+    private List<WorkspaceItemInfo> loadWorkspaceItems() {
+        List<WorkspaceItemInfo> items = new ArrayList<>();
+        for (LauncherActivityInfo lai : mActivities) {
+            AppInfo info = new AppInfo(lai, lai.getUser(), false);
+            mIconCache.getTitleAndIcon(info, lai, false);
+            items.add(info.makeWorkspaceItem(mContext));
+        }
+        return items;
+    }
+
+    private List<IconRequestInfo<WorkspaceItemInfo>> newRequests(boolean useLowResIcon) {
+        List<IconRequestInfo<WorkspaceItemInfo>> requests = new ArrayList<>();
+        for (LauncherActivityInfo lai : mActivities) {
+            WorkspaceItemInfo info = new AppInfo(lai, lai.getUser(), false)
+                    .makeWorkspaceItem(mContext);
+            requests.add(new IconRequestInfo<>(info, lai, useLowResIcon));
+        }
+        return requests;
+    }
+}
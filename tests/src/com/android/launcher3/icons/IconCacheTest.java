@@ -17,19 +17,33 @@ package com.android.launcher3.icons;
 
 import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_CONCURRENT_ICON_CACHE;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ICON_CACHE_STATS;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PARALLEL_ICON_LOADING;
 import static com.android.launcher3.icons.IconCache.EXTRA_SHORTCUT_BADGE_OVERRIDE_PACKAGE;
+import static com.android.launcher3.icons.IconCacheStats.SOURCE_DATABASE;
+import static com.android.launcher3.icons.IconCacheStats.SOURCE_GENERATED;
+import static com.android.launcher3.icons.IconCacheStats.SOURCE_MEMORY;
+import static com.android.launcher3.icons.IconCacheStats.STAGE_BITMAP;
+import static com.android.launcher3.icons.IconCacheStats.STAGE_PACKAGE_MANAGER;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
 import android.content.pm.ShortcutInfo.Builder;
 import android.os.PersistableBundle;
+import android.os.Process;
+import android.os.UserHandle;
 import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
@@ -38,14 +52,20 @@ import androidx.test.filters.SmallTest;
 
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.settings.SettingsActivity;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @SmallTest
 @RunWith(AndroidJUnit4.class)
 public class IconCacheTest {
@@ -60,12 +80,89 @@ public class IconCacheTest {
         mContext = getInstrumentation().getTargetContext();
         mMyComponent = new ComponentName(mContext, SettingsActivity.class);
 
+        mIconCache = newIconCache();
+    }
+
+    private IconCache newIconCache() {
         // In memory icon cache
-        mIconCache = new IconCache(mContext,
+        return new IconCache(mContext,
                 InvariantDeviceProfile.INSTANCE.get(mContext), null,
                 new LauncherIconProvider(mContext));
     }
 
+    @Test
+    public void getTitleAndIcon_reusesPublishedEntryUntilRemoved() {
+        UserHandle user = Process.myUserHandle();
+        LauncherActivityInfo lai = mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, user).get(0);
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_CONCURRENT_ICON_CACHE, true)) {
+            AppInfo first = loadAppInfo(lai);
+            AppInfo second = loadAppInfo(lai);
+            assertSame(first.bitmap, second.bitmap);
+
+            mIconCache.remove(lai.getComponentName(), user);
+            AppInfo third = loadAppInfo(lai);
+            assertNotSame(first.bitmap, third.bitmap);
+            assertEquals(first.title, third.title);
+        }
+    }
+
+    @Test
+    public void getTitleAndIcon_recordsLookupSource() {
+        LauncherActivityInfo lai = mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, Process.myUserHandle()).get(0);
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_ICON_CACHE_STATS, true)) {
+            IconCacheStats stats = mIconCache.getStats();
+            // The in-memory icon database is empty, so the first lookup creates the icon
+            loadAppInfo(lai);
+            assertEquals(1, stats.getCount(SOURCE_GENERATED));
+            assertEquals(1, stats.getCount(STAGE_PACKAGE_MANAGER));
+            assertEquals(1, stats.getCount(STAGE_BITMAP));
+
+            loadAppInfo(lai);
+            assertEquals(1, stats.getCount(SOURCE_MEMORY));
+            assertEquals(0, stats.getCount(SOURCE_DATABASE));
+            assertEquals(1, stats.getCount(SOURCE_GENERATED));
+        }
+    }
+
+    @Test
+    public void getTitlesAndIconsInBulk_parallelFallbackMatchesSerial() {
+        UserHandle user = Process.myUserHandle();
+        List<LauncherActivityInfo> activities = mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, user);
+        // The in-memory icon database is empty, so every icon is rendered by the fallback
+        List<IconRequestInfo<AppInfo>> serial = newBulkRequest(activities, user);
+        newIconCache().getTitlesAndIconsInBulk(serial);
+        List<IconRequestInfo<AppInfo>> parallel = newBulkRequest(activities, user);
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_PARALLEL_ICON_LOADING, true)) {
+            newIconCache().getTitlesAndIconsInBulk(parallel);
+        }
+
+        for (int i = 0; i < serial.size(); i++) {
+            AppInfo expected = serial.get(i).itemInfo;
+            AppInfo actual = parallel.get(i).itemInfo;
+            assertEquals(expected.title.toString(), actual.title.toString());
+            assertEquals(expected.bitmap.color, actual.bitmap.color);
+            assertEquals(expected.bitmap.icon.getWidth(), actual.bitmap.icon.getWidth());
+        }
+    }
+
+    private AppInfo loadAppInfo(LauncherActivityInfo lai) {
+        AppInfo info = new AppInfo(lai, lai.getUser(), false);
+        mIconCache.getTitleAndIcon(info, lai, false);
+        return info;
+    }
+
+    private static List<IconRequestInfo<AppInfo>> newBulkRequest(
+            List<LauncherActivityInfo> activities, UserHandle user) {
+        List<IconRequestInfo<AppInfo>> requests = new ArrayList<>();
+        for (LauncherActivityInfo lai : activities) {
+            requests.add(new IconRequestInfo<>(new AppInfo(lai, user, false), lai, false));
+        }
+        return requests;
+    }
+
     @Test
     public void getShortcutInfoBadge_nullComponent_overrideAllowed() throws Exception {
         String overridePackage = "com.android.settings";
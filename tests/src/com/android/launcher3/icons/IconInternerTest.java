@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.icons.BitmapInfo.FLAG_NO_BADGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.FlagOp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link IconInterner}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconInternerTest {
+
+    private static final int ICON_SIZE = 10;
+    private static final long ICON_BYTES = ICON_SIZE * ICON_SIZE * 4;
+
+    private final IconInterner mInterner = new IconInterner();
+
+    @Test
+    public void identicalIcons_shareBitmap() {
+        BitmapInfo first = mInterner.intern(key(1), icon(Color.RED));
+        BitmapInfo second = mInterner.intern(key(2), icon(Color.RED));
+
+        assertSame(first.icon, second.icon);
+        assertEquals(ICON_BYTES, mInterner.getSavedBytes());
+    }
+
+    @Test
+    public void differentIcons_areNotShared() {
+        BitmapInfo first = mInterner.intern(key(1), icon(Color.RED));
+        BitmapInfo second = mInterner.intern(key(2), icon(Color.BLUE));
+
+        assertNotSame(first.icon, second.icon);
+        assertEquals(0, mInterner.getSavedBytes());
+    }
+
+    @Test
+    public void sharedIcon_keepsFlags() {
+        BitmapInfo first = mInterner.intern(key(1), icon(Color.RED));
+        BitmapInfo second = mInterner.intern(key(2),
+                icon(Color.RED).withFlags(FlagOp.NO_OP.addFlag(FLAG_NO_BADGE)));
+
+        assertSame(first.icon, second.icon);
+        assertEquals(FLAG_NO_BADGE, second.flags & FLAG_NO_BADGE);
+        assertEquals(0, first.flags & FLAG_NO_BADGE);
+    }
+
+    @Test
+    public void releasedOwners_dropSharedIcon() {
+        BitmapInfo first = mInterner.intern(key(1), icon(Color.RED));
+        mInterner.intern(key(2), icon(Color.RED));
+
+        mInterner.release(key(1));
+        assertEquals(0, mInterner.getSavedBytes());
+        mInterner.release(key(2));
+
+        // The next identical icon is not shared with the released one
+        BitmapInfo third = mInterner.intern(key(3), icon(Color.RED));
+        assertNotSame(first.icon, third.icon);
+    }
+
+    @Test
+    public void reinternedOwner_releasesPreviousIcon() {
+        mInterner.intern(key(1), icon(Color.RED));
+        mInterner.intern(key(2), icon(Color.RED));
+
+        mInterner.intern(key(2), icon(Color.BLUE));
+        assertEquals(0, mInterner.getSavedBytes());
+    }
+
+    @Test
+    public void releasePackage_releasesAllComponents() {
+        mInterner.intern(key(1), icon(Color.RED));
+        mInterner.intern(new ComponentKey(new ComponentName("com.example.app1", "Other"),
+                Process.myUserHandle()), icon(Color.RED));
+        assertEquals(ICON_BYTES, mInterner.getSavedBytes());
+
+        mInterner.releasePackage("com.example.app1", Process.myUserHandle());
+        assertEquals(0, mInterner.getSavedBytes());
+    }
+
+    @Test
+    public void matchReleasedBeforeFinish_isNotShared() {
+        BitmapInfo first = mInterner.intern(key(1), icon(Color.RED));
+        IconInterner.PendingIcon pending = mInterner.prepare(key(2), icon(Color.RED));
+        pending.compare();
+
+        mInterner.release(key(1));
+        BitmapInfo second = mInterner.finish(pending);
+        assertNotSame(first.icon, second.icon);
+        assertEquals(0, mInterner.getSavedBytes());
+    }
+
+    private static ComponentKey key(int index) {
+        return new ComponentKey(new ComponentName("com.example.app" + index, "Activity"),
+                Process.myUserHandle());
+    }
+
+    private static BitmapInfo icon(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        return BitmapInfo.of(bitmap, color);
+    }
+}
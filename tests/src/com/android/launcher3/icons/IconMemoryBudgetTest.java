@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.util.ComponentKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link IconMemoryBudget}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconMemoryBudgetTest {
+
+    // 10x10 ARGB_8888 icons with the entry overhead
+    private static final long HIGH_RES_ENTRY_BYTES = 528;
+    private static final long LOW_RES_ENTRY_BYTES = 128;
+
+    private final List<ComponentKey> mDowngraded = new ArrayList<>();
+    private final List<ComponentKey> mEvicted = new ArrayList<>();
+
+    private IconMemoryBudget mBudget;
+
+    @Before
+    public void setup() {
+        mBudget = new IconMemoryBudget(2 * HIGH_RES_ENTRY_BYTES, 2 * LOW_RES_ENTRY_BYTES,
+                (key, evicted) -> (evicted ? mEvicted : mDowngraded).add(key));
+    }
+
+    @Test
+    public void highResOverBudget_downgradesLeastRecentlyUsed() {
+        CacheEntry first = highResEntry();
+        CacheEntry second = highResEntry();
+        mBudget.onEntryUsed(key(1), first);
+        mBudget.onEntryUsed(key(2), second);
+        // Using the first entry again makes the second one the least recently used
+        mBudget.onEntryUsed(key(1), first);
+        mBudget.onEntryUsed(key(3), highResEntry());
+
+        assertEquals(List.of(key(2)), mDowngraded);
+        assertTrue(second.bitmap.isNullOrLowRes());
+        assertFalse(first.bitmap.isNullOrLowRes());
+        assertTrue(mEvicted.isEmpty());
+    }
+
+    @Test
+    public void lowResOverBudget_evictsLeastRecentlyUsed() {
+        for (int i = 1; i <= 3; i++) {
+            mBudget.onEntryUsed(key(i), lowResEntry());
+        }
+        assertEquals(List.of(key(1)), mEvicted);
+        assertTrue(mDowngraded.isEmpty());
+    }
+
+    @Test
+    public void entryOverBudget_isKeptUntilNextUse() {
+        IconMemoryBudget budget = new IconMemoryBudget(0, 0,
+                (key, evicted) -> (evicted ? mEvicted : mDowngraded).add(key));
+        CacheEntry entry = highResEntry();
+        budget.onEntryUsed(key(1), entry);
+        assertFalse(entry.bitmap.isNullOrLowRes());
+
+        budget.onEntryUsed(key(2), highResEntry());
+        assertEquals(List.of(key(1)), mDowngraded);
+        assertEquals(List.of(key(1)), mEvicted);
+    }
+
+    @Test
+    public void hitsAndMisses_areCountedPerEntryInstance() {
+        CacheEntry entry = highResEntry();
+        mBudget.onEntryUsed(key(1), entry);
+        mBudget.onEntryUsed(key(1), entry);
+        // The cache loaded the entry again
+        mBudget.onEntryUsed(key(1), highResEntry());
+
+        assertEquals(1, mBudget.getHitCount());
+        assertEquals(2, mBudget.getMissCount());
+    }
+
+    @Test
+    public void lockFreeHits_areCountedAndUpdateLeastRecentlyUsed() {
+        CacheEntry first = highResEntry();
+        CacheEntry second = highResEntry();
+        IconMemoryBudget.TrackedEntry tracked = mBudget.onEntryUsed(key(1), first);
+        mBudget.onEntryUsed(key(2), second);
+        // Reading the first entry without the lock makes the second one the least recently used
+        mBudget.onEntryHit(tracked);
+        mBudget.onEntryUsed(key(3), highResEntry());
+
+        assertEquals(List.of(key(2)), mDowngraded);
+        assertFalse(first.bitmap.isNullOrLowRes());
+        assertEquals(1, mBudget.getHitCount());
+    }
+
+    @Test
+    public void sharedBitmap_isCountedOnce() {
+        Bitmap icon = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        for (int i = 1; i <= 3; i++) {
+            CacheEntry entry = new CacheEntry();
+            entry.bitmap = BitmapInfo.fromBitmap(icon);
+            entry.title = "";
+            mBudget.onEntryUsed(key(i), entry);
+        }
+        assertTrue(mDowngraded.isEmpty());
+        assertEquals(HIGH_RES_ENTRY_BYTES + 2 * LOW_RES_ENTRY_BYTES, mBudget.getHighResBytes());
+
+        mBudget.remove(key(1));
+        mBudget.remove(key(2));
+        assertEquals(HIGH_RES_ENTRY_BYTES, mBudget.getHighResBytes());
+        mBudget.remove(key(3));
+        assertEquals(0, mBudget.getHighResBytes());
+    }
+
+    @Test
+    public void trimMemory_downgradesBeforeEvicting() {
+        CacheEntry first = highResEntry();
+        CacheEntry second = highResEntry();
+        mBudget.onEntryUsed(key(1), first);
+        mBudget.onEntryUsed(key(2), second);
+
+        mBudget.onTrimMemory(TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(List.of(key(1), key(2)), mDowngraded);
+        assertTrue(first.bitmap.isNullOrLowRes());
+        assertTrue(second.bitmap.isNullOrLowRes());
+        assertTrue(mEvicted.isEmpty());
+
+        mBudget.onTrimMemory(TRIM_MEMORY_COMPLETE);
+        assertEquals(List.of(key(1), key(2)), mEvicted);
+    }
+
+    @Test
+    public void removedPackage_isNotEvicted() {
+        mBudget.onEntryUsed(key(1), lowResEntry());
+        mBudget.removePackage(key(1).componentName.getPackageName(), Process.myUserHandle());
+
+        mBudget.onTrimMemory(TRIM_MEMORY_COMPLETE);
+        assertTrue(mEvicted.isEmpty());
+    }
+
+    private static ComponentKey key(int index) {
+        return new ComponentKey(new ComponentName("com.example.app" + index, "Activity"),
+                Process.myUserHandle());
+    }
+
+    private static CacheEntry highResEntry() {
+        CacheEntry entry = new CacheEntry();
+        entry.bitmap = BitmapInfo.fromBitmap(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        entry.title = "";
+        return entry;
+    }
+
+    private static CacheEntry lowResEntry() {
+        CacheEntry entry = new CacheEntry();
+        entry.bitmap = BitmapInfo.LOW_RES_INFO;
+        entry.title = "";
+        return entry;
+    }
+}
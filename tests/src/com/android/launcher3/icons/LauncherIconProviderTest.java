@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PERSISTED_MONO_ICONS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+import com.android.launcher3.util.Themes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link LauncherIconProvider}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LauncherIconProviderTest {
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+
+    @Test
+    public void persistedMonoIcons_systemStateIgnoresThemedIcons() {
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_PERSISTED_MONO_ICONS, true)) {
+            assertTrue(LauncherIcons.isMonoIconEnabled(mContext));
+
+            LauncherIconProvider withTheme = new LauncherIconProvider(mContext);
+            withTheme.setIconThemeSupported(true);
+            assertEquals(withTheme.getSystemIconState(),
+                    new LauncherIconProvider(mContext).getSystemIconState());
+        }
+    }
+
+    @Test
+    public void monoIcons_followThemedIconsByDefault() {
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_PERSISTED_MONO_ICONS, false)) {
+            assertEquals(Themes.isThemedIconEnabled(mContext),
+                    LauncherIcons.isMonoIconEnabled(mContext));
+        }
+    }
+}
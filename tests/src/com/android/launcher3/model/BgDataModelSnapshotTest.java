@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.os.Process.myUserHandle;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_MODEL_SNAPSHOTS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.BgDataModel.Snapshot;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link BgDataModel.Snapshot}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BgDataModelSnapshotTest {
+
+    private Context mContext;
+    private BgDataModel mDataModel;
+    private SafeCloseable mFlagOverride;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mDataModel = new BgDataModel();
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_MODEL_SNAPSHOTS, true);
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void changesAreOnlyVisibleOncePublished() {
+        Snapshot initial = mDataModel.getSnapshot();
+        mDataModel.addItem(mContext, newItem(1), false);
+        assertSame(initial, mDataModel.getSnapshot());
+
+        mDataModel.publishSnapshot();
+        Snapshot published = mDataModel.getSnapshot();
+        assertEquals(initial.version + 1, published.version);
+        assertEquals(1, published.workspaceItems.size());
+        assertEquals(1, published.itemsIdMap.size());
+        assertSame(published, mDataModel.getSnapshot());
+    }
+
+    @Test
+    public void publishedSnapshot_isNotAffectedByLaterChanges() {
+        mDataModel.addItem(mContext, newItem(1), false);
+        mDataModel.publishSnapshot();
+        Snapshot snapshot = mDataModel.getSnapshot();
+
+        mDataModel.addItem(mContext, newItem(2), false);
+        mDataModel.removeItem(mContext, mDataModel.itemsIdMap.get(1));
+
+        assertEquals(1, snapshot.workspaceItems.size());
+        assertEquals(1, snapshot.workspaceItems.get(0).id);
+        try {
+            snapshot.workspaceItems.clear();
+            fail("Snapshot lists should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            snapshot.itemsIdMap.put(2, newItem(2));
+            fail("Snapshot maps should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void snapshotsAreNotPublished_whenFlagDisabled() {
+        mFlagOverride.close();
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_MODEL_SNAPSHOTS, false);
+
+        Snapshot initial = mDataModel.getSnapshot();
+        mDataModel.addItem(mContext, newItem(1), false);
+        mDataModel.publishSnapshot();
+        assertSame(initial, mDataModel.getSnapshot());
+    }
+
+    private static WorkspaceItemInfo newItem(int id) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = Favorites.ITEM_TYPE_APPLICATION;
+        info.container = Favorites.CONTAINER_DESKTOP;
+        info.user = myUserHandle();
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName("com.example", "com.example.Main" + id));
+        return info;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.provider.LauncherDbUtils.itemIdMatch;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link FavoritesStatementCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class FavoritesStatementCacheTest {
+
+    private static final int ITEM_COUNT = 1000;
+
+    private DatabaseHelper mDbHelper;
+    private SQLiteDatabase mDb;
+    private FavoritesStatementCache mCache;
+
+    @Before
+    public void setup() {
+        Context context = getInstrumentation().getTargetContext();
+        // In-memory database, seeded with 1000 favorites
+        mDbHelper = new DatabaseHelper(context, null,
+                UserCache.INSTANCE.get(context)::getSerialNumberForUser, () -> { });
+        mDb = mDbHelper.getWritableDatabase();
+        mDb.beginTransaction();
+        try {
+            for (int i = 1; i <= ITEM_COUNT; i++) {
+                ContentValues values = new ContentValues();
+                values.put(Favorites._ID, i);
+                values.put(Favorites.ITEM_TYPE, Favorites.ITEM_TYPE_APPLICATION);
+                values.put(Favorites.CONTAINER, Favorites.CONTAINER_DESKTOP);
+                values.put(Favorites.SCREEN, i / 30);
+                values.put(Favorites.CELLX, i % 6);
+                values.put(Favorites.CELLY, (i / 6) % 5);
+                values.put(Favorites.SPANX, 1);
+                values.put(Favorites.SPANY, 1);
+                values.put(Favorites.INTENT, "#Intent;component=com.example/.App" + i + ";end");
+                mDb.insert(Favorites.TABLE_NAME, null, values);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        mCache = new FavoritesStatementCache(mDb);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.close();
+        mDbHelper.close();
+    }
+
+    @Test
+    public void updatePosition_updatesSingleRow() {
+        assertEquals(1, mCache.updatePosition(10, Favorites.CONTAINER_HOTSEAT, 2, 3, 4, 5, 100));
+        assertEquals(0, mCache.updatePosition(ITEM_COUNT + 1, 0, 0, 0, 0, 0, 100));
+
+        try (Cursor c = mDb.query(Favorites.TABLE_NAME, new String[] {Favorites.CONTAINER,
+                Favorites.SCREEN, Favorites.CELLX, Favorites.CELLY, Favorites.RANK,
+                Favorites.MODIFIED}, itemIdMatch(10), null, null, null, null)) {
+            c.moveToNext();
+            assertEquals(Favorites.CONTAINER_HOTSEAT, c.getInt(0));
+            assertEquals(2, c.getInt(1));
+            assertEquals(3, c.getInt(2));
+            assertEquals(4, c.getInt(3));
+            assertEquals(5, c.getInt(4));
+            assertEquals(100, c.getLong(5));
+        }
+    }
+
+    @Test
+    public void insertUpdateAndDelete_useColumnValues() {
+        ContentValues values = new ContentValues();
+        values.put(Favorites._ID, ITEM_COUNT + 1);
+        values.put(Favorites.TITLE, "title");
+        values.put(Favorites.ITEM_TYPE, Favorites.ITEM_TYPE_FOLDER);
+        assertEquals(ITEM_COUNT + 1, mCache.insert(values));
+
+        ContentValues update = new ContentValues();
+        update.put(Favorites.TITLE, "new title");
+        update.putNull(Favorites.INTENT);
+        assertEquals(1, mCache.update(ITEM_COUNT + 1, update));
+        try (Cursor c = mDb.query(Favorites.TABLE_NAME, new String[] {Favorites.TITLE},
+                itemIdMatch(ITEM_COUNT + 1), null, null, null, null)) {
+            c.moveToNext();
+            assertEquals("new title", c.getString(0));
+        }
+
+        assertEquals(1, mCache.delete(ITEM_COUNT + 1));
+        assertEquals(ITEM_COUNT, getFavoriteCount());
+    }
+
+    private int getFavoriteCount() {
+        try (Cursor c = mDb.query(Favorites.TABLE_NAME, null, null, null, null, null, null)) {
+            return c.getCount();
+        }
+    }
+}
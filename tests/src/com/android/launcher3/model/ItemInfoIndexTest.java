@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.os.Process.myUserHandle;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link ItemInfoIndex} through {@link BgDataModel}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ItemInfoIndexTest {
+
+    private static final int ITEM_COUNT = 2000;
+    private static final int PACKAGE_COUNT = 400;
+    private static final int SCREEN_COUNT = 20;
+    private static final int UPDATED_PACKAGE_COUNT = 40;
+
+    private Context mContext;
+    private BgDataModel mDataModel;
+    private UserHandle mUser;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mDataModel = new BgDataModel();
+        mUser = myUserHandle();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            mDataModel.addItem(mContext, newItem(i + 1, packageName(i % PACKAGE_COUNT),
+                    i % SCREEN_COUNT), false);
+        }
+    }
+
+    @Test
+    public void packageLookup_matchesLinearScan() {
+        Set<String> packages = updatedPackages();
+        assertEquals(idsOf(scanForPackages(packages)), idsOf(lookupForPackages(packages)));
+    }
+
+    @Test
+    public void screenLookup_reflectsUpdatedItems() {
+        ItemInfo item = mDataModel.itemsIdMap.get(1);
+        int oldScreen = item.screenId;
+        int oldCount = mDataModel.getItemsOnScreen(oldScreen).size();
+
+        item.screenId = SCREEN_COUNT;
+        mDataModel.updateItemIndex(item);
+
+        assertEquals(oldCount - 1, mDataModel.getItemsOnScreen(oldScreen).size());
+        assertEquals(1, mDataModel.getItemsOnScreen(SCREEN_COUNT).size());
+    }
+
+    @Test
+    public void packageLookup_reflectsIntentChangedInPlaceByModelTask() throws Exception {
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        try {
+            modelHelper.setupDefaultLayoutProvider(new LauncherLayoutBuilder()
+                    .atWorkspace(0, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY));
+            modelHelper.loadModelSync();
+            BgDataModel dataModel = modelHelper.getBgDataModel();
+            WorkspaceItemInfo item = (WorkspaceItemInfo) dataModel.itemsIdMap.valueAt(0);
+            String newPackage = packageName(PACKAGE_COUNT);
+
+            modelHelper.getModel().updateAndBindWorkspaceItem(() -> {
+                item.intent = newIntent(newPackage);
+                return item;
+            });
+
+            runOnExecutorSync(MODEL_EXECUTOR, () -> {
+                assertTrue(dataModel.getItemsForPackages(
+                        Collections.singleton(newPackage), item.user).contains(item));
+                assertTrue(dataModel.getItemsForPackages(
+                        Collections.singleton(TEST_PACKAGE), item.user).isEmpty());
+            });
+        } finally {
+            modelHelper.destroy();
+        }
+    }
+
+    @Test
+    public void removedItems_areNotReturned() {
+        ItemInfo item = mDataModel.itemsIdMap.get(1);
+        mDataModel.removeItem(mContext, item);
+
+        Set<String> packages = new HashSet<>();
+        packages.add(item.getTargetComponent().getPackageName());
+        assertTrue(idsOf(lookupForPackages(packages)).stream().noneMatch(id -> id == item.id));
+        assertTrue(mDataModel.getItemsInContainer(Favorites.CONTAINER_DESKTOP)
+                .stream().noneMatch(i -> i.id == item.id));
+    }
+
+    private List<WorkspaceItemInfo> scanForPackages(Set<String> packages) {
+        List<WorkspaceItemInfo> result = new ArrayList<>();
+        synchronized (mDataModel) {
+            mDataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                if (packages.contains(si.getTargetComponent().getPackageName())) {
+                    result.add(si);
+                }
+            });
+        }
+        return result;
+    }
+
+    private List<WorkspaceItemInfo> lookupForPackages(Set<String> packages) {
+        List<WorkspaceItemInfo> result = new ArrayList<>();
+        synchronized (mDataModel) {
+            mDataModel.forAllWorkspaceItemInfos(mUser, packages, result::add);
+        }
+        return result;
+    }
+
+    private Set<String> updatedPackages() {
+        Set<String> packages = new HashSet<>();
+        for (int i = 0; i < UPDATED_PACKAGE_COUNT; i++) {
+            packages.add(packageName(i * (PACKAGE_COUNT / UPDATED_PACKAGE_COUNT)));
+        }
+        return packages;
+    }
+
+    private static Set<Integer> idsOf(List<? extends ItemInfo> items) {
+        Set<Integer> ids = new HashSet<>();
+        items.forEach(item -> ids.add(item.id));
+        return ids;
+    }
+
+    private static String packageName(int index) {
+        return "com.example.app" + index;
+    }
+
+    private WorkspaceItemInfo newItem(int id, String packageName, int screenId) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = Favorites.ITEM_TYPE_APPLICATION;
+        info.container = Favorites.CONTAINER_DESKTOP;
+        info.screenId = screenId;
+        info.user = mUser;
+        info.intent = newIntent(packageName);
+        return info;
+    }
+
+    private static Intent newIntent(String packageName) {
+        return new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(packageName, packageName + ".Main"));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WRITE_BEHIND_UPDATES;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY2;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.LauncherModel.ModelUpdateTask;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.celllayout.CellPosMapper;
+import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.ItemUpdateQueue.PendingUpdate;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link ItemUpdateQueue}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ItemUpdateQueueTest {
+
+    private LauncherModelHelper mModelHelper;
+    private SafeCloseable mFlagOverride;
+    private LauncherModel mModel;
+    private BgDataModel mDataModel;
+    private ModelWriter mWriter;
+    private ItemInfo mItem;
+
+    @Before
+    public void setup() throws Exception {
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_WRITE_BEHIND_UPDATES, true);
+        mModelHelper = new LauncherModelHelper();
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder()
+                .atWorkspace(0, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY)
+                .atWorkspace(1, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY2);
+        mModelHelper.setupDefaultLayoutProvider(builder);
+        mModelHelper.loadModelSync();
+        mModel = mModelHelper.getModel();
+        mDataModel = mModelHelper.getBgDataModel();
+        mWriter = mModel.getWriter(false /* hasVerticalHotseat */, false /* verifyChanges */,
+                CellPosMapper.DEFAULT, new Callbacks() { });
+        mItem = mDataModel.itemsIdMap.valueAt(0);
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void repeatedUpdates_areMergedIntoOneWrite() {
+        AtomicInteger writes = new AtomicInteger();
+        ContentValues first = new ContentValues();
+        first.put(Favorites.CELLX, 3);
+        first.put(Favorites.CELLY, 3);
+        ContentValues second = new ContentValues();
+        second.put(Favorites.CELLX, 4);
+
+        ItemUpdateQueue queue = mModel.getItemUpdateQueue();
+        queue.enqueue(newUpdate(mDataModel.lastLoadId, first, writes));
+        queue.enqueue(newUpdate(mDataModel.lastLoadId, second, writes));
+        flushAndWait();
+
+        assertEquals(1, writes.get());
+        assertArrayEquals(new int[] {4, 3}, readCell(mItem.id));
+    }
+
+    @Test
+    public void updatesFromStaleLoad_areDropped() {
+        AtomicInteger writes = new AtomicInteger();
+        ContentValues values = new ContentValues();
+        values.put(Favorites.CELLX, 3);
+
+        mModel.getItemUpdateQueue().enqueue(newUpdate(mDataModel.lastLoadId - 1, values, writes));
+        flushAndWait();
+
+        assertEquals(0, writes.get());
+        assertArrayEquals(new int[] {mItem.cellX, mItem.cellY}, readCell(mItem.id));
+    }
+
+    @Test
+    public void deleteAfterUpdate_removesItem() {
+        mWriter.moveItemInDatabase(mItem, mItem.container, mItem.screenId, 3, 3);
+        mWriter.deleteItemFromDatabase(mItem, "test");
+        flushAndWait();
+
+        assertNull(readCell(mItem.id));
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            assertNull(mDataModel.itemsIdMap.get(mItem.id));
+            assertFalse(mDataModel.workspaceItems.contains(mItem));
+        });
+    }
+
+    @Test
+    public void pendingUpdates_areWrittenBeforeModelUpdateTask() {
+        mWriter.moveItemInDatabase(mItem, mItem.container, mItem.screenId, 3, 3);
+
+        AtomicReference<int[]> cellInTask = new AtomicReference<>();
+        mModel.enqueueModelUpdateTask(new ModelUpdateTask() {
+            @Override
+            public void init(@NonNull LauncherAppState app, @NonNull LauncherModel model,
+                    @NonNull BgDataModel dataModel, @NonNull AllAppsList allAppsList,
+                    @NonNull Executor uiExecutor) { }
+
+            @Override
+            public void run() {
+                cellInTask.set(readCellOnModelThread(mItem.id));
+            }
+        });
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertArrayEquals(new int[] {3, 3}, cellInTask.get());
+    }
+
+    @Test
+    public void pendingUpdates_areWrittenBeforeLoader() throws Exception {
+        int itemId = mItem.id;
+        mWriter.moveItemInDatabase(mItem, mItem.container, mItem.screenId, 3, 3);
+
+        mModel.forceReload();
+        mModelHelper.loadModelSync();
+
+        ItemInfo reloaded = mDataModel.itemsIdMap.get(itemId);
+        assertEquals(3, reloaded.cellX);
+        assertEquals(3, reloaded.cellY);
+    }
+
+    @Test
+    public void updatesDuringUndo_areHeldUntilCommit() {
+        int[] originalCell = {mItem.cellX, mItem.cellY};
+        mWriter.prepareToUndoDelete();
+        mWriter.moveItemInDatabase(mItem, mItem.container, mItem.screenId, 3, 3);
+        flushAndWait();
+        assertArrayEquals(originalCell, readCell(mItem.id));
+
+        mWriter.commitDelete();
+        flushAndWait();
+        assertArrayEquals(new int[] {3, 3}, readCell(mItem.id));
+    }
+
+    @Test
+    public void abortDelete_keepsUpdatesQueuedBeforeUndo() {
+        ItemInfo other = mDataModel.itemsIdMap.valueAt(1);
+        int[] otherCell = {other.cellX, other.cellY};
+        mWriter.moveItemInDatabase(mItem, mItem.container, mItem.screenId, 3, 3);
+
+        mWriter.prepareToUndoDelete();
+        mWriter.moveItemInDatabase(other, other.container, other.screenId, 4, 4);
+        mWriter.abortDelete();
+        flushAndWait();
+
+        assertArrayEquals(new int[] {3, 3}, readCell(mItem.id));
+        assertArrayEquals(otherCell, readCell(other.id));
+    }
+
+    private PendingUpdate newUpdate(int loadId, ContentValues values, AtomicInteger writes) {
+        return new PendingUpdate(mItem.id, loadId, values) {
+            @Override
+            protected void onWritten() {
+                writes.incrementAndGet();
+            }
+        };
+    }
+
+    private void flushAndWait() {
+        mModel.getItemUpdateQueue().flush();
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+    }
+
+    private int[] readCell(int itemId) {
+        AtomicReference<int[]> cell = new AtomicReference<>();
+        runOnExecutorSync(MODEL_EXECUTOR, () -> cell.set(readCellOnModelThread(itemId)));
+        return cell.get();
+    }
+
+    private int[] readCellOnModelThread(int itemId) {
+        try (Cursor c = mModel.getModelDbController().query(Favorites.TABLE_NAME,
+                new String[] {Favorites.CELLX, Favorites.CELLY},
+                Favorites._ID + "=" + itemId, null, null)) {
+            return c.moveToNext() ? new int[] {c.getInt(0), c.getInt(1)} : null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.LoaderTaskGraph.Phase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for {@link LoaderTaskGraph}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LoaderTaskGraphTest {
+
+    @Test
+    public void dependentPhasesRunAfterTheirDependencies() {
+        List<String> order = new ArrayList<>();
+        LoaderTaskGraph graph = new LoaderTaskGraph(Runnable::run, () -> { });
+        Phase<Integer> first = graph.addPhase("first", () -> {
+            order.add("first");
+            return 1;
+        });
+        Phase<Integer> second = graph.addPhase("second", () -> {
+            order.add("second");
+            return 2;
+        }, first);
+        Phase<Integer> independent = graph.addPhase("independent", () -> {
+            order.add("independent");
+            return 3;
+        });
+        graph.start();
+
+        assertEquals(2, (int) graph.await(second));
+        assertEquals(1, (int) graph.await(first));
+        assertEquals(3, (int) graph.await(independent));
+        assertThat(order.indexOf("first")).isLessThan(order.indexOf("second"));
+    }
+
+    @Test
+    public void failureIsPropagatedToDependents() {
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+        LoaderTaskGraph graph = new LoaderTaskGraph(Runnable::run, () -> { });
+        Phase<Void> failing = graph.addPhase("failing", () -> {
+            throw new IllegalStateException("failed");
+        });
+        Phase<Void> dependent = graph.addPhase("dependent", () -> {
+            dependentRan.set(true);
+            return null;
+        }, failing);
+        graph.start();
+
+        try {
+            graph.await(dependent);
+            fail("Expected the failure to be propagated");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertFalse(dependentRan.get());
+    }
+
+    @Test
+    public void cancelAndWait_skipsPendingPhases() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+        CountDownLatch slowPhaseLatch = new CountDownLatch(1);
+        LoaderTaskGraph graph = new LoaderTaskGraph(executor, () -> { });
+        Phase<Void> slow = graph.addPhase("slow", () -> {
+            try {
+                slowPhaseLatch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        });
+        Phase<Void> dependent = graph.addPhase("dependent", () -> {
+            dependentRan.set(true);
+            return null;
+        }, slow);
+
+        graph.start();
+        graph.cancel();
+        slowPhaseLatch.countDown();
+        graph.cancelAndWait();
+
+        try {
+            graph.await(dependent);
+            fail("Expected the dependent phase to be cancelled");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        assertFalse(dependentRan.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void timingSummary_reportsCriticalPath() {
+        LoaderTaskGraph graph = new LoaderTaskGraph(Runnable::run, () -> { });
+        Phase<Void> apps = graph.addPhase("apps", () -> null);
+        graph.addPhase("shortcuts", () -> null, apps);
+        graph.start();
+
+        List<String> summary = graph.getTimingSummary();
+        assertEquals(3, summary.size());
+        assertThat(summary.get(2)).startsWith("critical path: apps -> shortcuts");
+    }
+}
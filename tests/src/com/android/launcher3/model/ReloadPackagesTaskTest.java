@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static android.os.Process.myUserHandle;
+
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_NOT_AVAILABLE;
+import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_QUIET_USER;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY2;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+/**
+ * Tests for {@link ReloadPackagesTask}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ReloadPackagesTaskTest {
+
+    private static final String PENDING_APP = TEST_PACKAGE + ".pending";
+
+    private LauncherModelHelper mModelHelper;
+
+    @Before
+    public void setup() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+        mModelHelper.createInstallerSession(PENDING_APP);
+
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder()
+                .atWorkspace(0, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY)
+                .atWorkspace(1, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY2)
+                .atWorkspace(2, 0, 1).putApp(PENDING_APP, TEST_ACTIVITY);
+        mModelHelper.setupDefaultLayoutProvider(builder);
+        mModelHelper.loadModelSync();
+        assertEquals(3, mModelHelper.getBgDataModel().itemsIdMap.size());
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void reloadUser_refreshesQuietState() {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            setFlagOnAllItems(FLAG_DISABLED_QUIET_USER);
+            mModelHelper.getModel().enqueueModelUpdateTask(
+                    new ReloadPackagesTask(myUserHandle(), null));
+
+            for (ItemInfo info : mModelHelper.getBgDataModel().itemsIdMap) {
+                assertFalse(((WorkspaceItemInfo) info).hasStatusFlag(FLAG_DISABLED_QUIET_USER));
+            }
+        });
+        assertEquals(3, mModelHelper.getBgDataModel().itemsIdMap.size());
+    }
+
+    @Test
+    public void reloadPackages_onlyUpdatesRequestedPackages() {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            setFlagOnAllItems(FLAG_DISABLED_NOT_AVAILABLE);
+            mModelHelper.getModel().enqueueModelUpdateTask(new ReloadPackagesTask(
+                    myUserHandle(), Collections.singleton(TEST_PACKAGE)));
+
+            for (ItemInfo info : mModelHelper.getBgDataModel().itemsIdMap) {
+                boolean isTestPackage = TEST_PACKAGE.equals(
+                        info.getTargetComponent().getPackageName());
+                assertEquals(!isTestPackage,
+                        ((WorkspaceItemInfo) info).hasStatusFlag(FLAG_DISABLED_NOT_AVAILABLE));
+            }
+        });
+        assertTrue(mModelHelper.getBgDataModel().itemsIdMap.size() > 0);
+    }
+
+    private void setFlagOnAllItems(int flag) {
+        for (ItemInfo info : mModelHelper.getBgDataModel().itemsIdMap) {
+            ((WorkspaceItemInfo) info).runtimeStatusFlags |= flag;
+        }
+    }
+}
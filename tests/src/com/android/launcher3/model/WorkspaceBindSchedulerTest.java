@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.WorkspaceBindScheduler.BindCostModel;
+import com.android.launcher3.model.data.ItemInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link WorkspaceBindScheduler}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WorkspaceBindSchedulerTest {
+
+    private static final long BUDGET_NANOS = 8_000_000;
+
+    @Test
+    public void fixedChunks_whenNotAdaptive() {
+        WorkspaceBindScheduler scheduler =
+                new WorkspaceBindScheduler(false, BUDGET_NANOS, new BindCostModel());
+        List<List<ItemInfo>> chunks =
+                scheduler.split(items(Favorites.ITEM_TYPE_APPLICATION, 20), 6);
+
+        assertEquals(4, chunks.size());
+        assertEquals(6, chunks.get(0).size());
+        assertEquals(2, chunks.get(3).size());
+    }
+
+    @Test
+    public void adaptiveChunks_fitBudgetAndKeepOrder() {
+        WorkspaceBindScheduler scheduler =
+                new WorkspaceBindScheduler(true, BUDGET_NANOS, new BindCostModel());
+        List<ItemInfo> items = items(Favorites.ITEM_TYPE_APPLICATION, 40);
+        List<List<ItemInfo>> chunks = scheduler.split(items, 6);
+
+        // 500us per icon by default, so 16 icons fit in 8ms
+        assertEquals(16, chunks.get(0).size());
+        List<ItemInfo> joined = new ArrayList<>();
+        chunks.forEach(joined::addAll);
+        assertEquals(items, joined);
+    }
+
+    @Test
+    public void adaptiveChunks_alwaysBindExpensiveItems() {
+        WorkspaceBindScheduler scheduler =
+                new WorkspaceBindScheduler(true, 1_000_000, new BindCostModel());
+        List<List<ItemInfo>> chunks = scheduler.split(items(Favorites.ITEM_TYPE_APPWIDGET, 3), 1);
+
+        assertEquals(3, chunks.size());
+    }
+
+    @Test
+    public void measuredCost_resizesChunks() {
+        BindCostModel costModel = new BindCostModel();
+        WorkspaceBindScheduler scheduler =
+                new WorkspaceBindScheduler(true, BUDGET_NANOS, costModel);
+        List<ItemInfo> icons = items(Favorites.ITEM_TYPE_APPLICATION, 40);
+        int initialSize = scheduler.split(icons, 6).get(0).size();
+
+        // Icons are much slower to bind than estimated
+        for (int i = 0; i < 10; i++) {
+            costModel.record(icons.subList(0, 4), 20_000_000);
+        }
+        assertTrue(scheduler.split(icons, 6).get(0).size() < initialSize);
+    }
+
+    @Test
+    public void bindChunk_bindsItems() {
+        WorkspaceBindScheduler scheduler =
+                new WorkspaceBindScheduler(true, BUDGET_NANOS, new BindCostModel());
+        List<ItemInfo> bound = new ArrayList<>();
+        Callbacks callbacks = new Callbacks() {
+            @Override
+            public void bindItems(List<ItemInfo> shortcuts, boolean forceAnimateIcons) {
+                bound.addAll(shortcuts);
+            }
+        };
+        List<ItemInfo> items = items(Favorites.ITEM_TYPE_FOLDER, 10);
+        scheduler.split(items, 6).forEach(chunk -> scheduler.bindChunk(callbacks, chunk));
+        scheduler.onBindComplete();
+
+        assertEquals(items, bound);
+        assertTrue(scheduler.getFrames() >= 1);
+    }
+
+    private static List<ItemInfo> items(int itemType, int count) {
+        List<ItemInfo> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ItemInfo item = new ItemInfo();
+            item.id = i + 1;
+            item.itemType = itemType;
+            item.container = Favorites.CONTAINER_DESKTOP;
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY2;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.UserManager;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link WorkspaceSnapshot}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WorkspaceSnapshotTest {
+
+    private static final String DB_NAME = "launcher.db";
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private BgDataModel mDataModel;
+    private ModelDbController mDbController;
+    private UserManagerState mUserManagerState;
+    private File mFile;
+
+    @Before
+    public void setup() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder()
+                .atWorkspace(0, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY)
+                .atWorkspace(1, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY2);
+        mModelHelper.setupDefaultLayoutProvider(builder);
+        mModelHelper.loadModelSync();
+        mDataModel = mModelHelper.getBgDataModel();
+        mDbController = mModelHelper.getModel().getModelDbController();
+        assertEquals(2, mDataModel.itemsIdMap.size());
+
+        mUserManagerState = new UserManagerState();
+        mUserManagerState.init(UserCache.INSTANCE.get(mContext),
+                mContext.getSystemService(UserManager.class));
+        mFile = File.createTempFile("workspace", ".snapshot", mContext.getCacheDir());
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void writeAndRead_restoresAllItems() {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            String token = mDbController.getFavoritesStateToken();
+            write(token);
+            WorkspaceSnapshot snapshot = read(token);
+
+            assertNotNull(snapshot);
+            assertEquals(DB_NAME, snapshot.dbName);
+            assertEquals(mDataModel.itemsIdMap.size(), snapshot.items.size());
+            for (WorkspaceSnapshot.Item item : snapshot.items) {
+                ItemInfo info = mDataModel.itemsIdMap.get(item.id);
+                assertNotNull(info);
+                assertEquals(info.itemType, item.itemType);
+                assertEquals(info.container, item.container);
+                assertEquals(info.screenId, item.screenId);
+                assertEquals(info.cellX, item.cellX);
+                assertEquals(info.cellY, item.cellY);
+                assertEquals(info.spanX, item.spanX);
+                assertEquals(info.spanY, item.spanY);
+                assertEquals(info.getIntent().toUri(0), item.intentUri);
+            }
+        });
+    }
+
+    @Test
+    public void read_rejectsMagicOrVersionMismatch() throws Exception {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> write(mDbController.getFavoritesStateToken()));
+        byte[] original = Files.readAllBytes(mFile.toPath());
+
+        // Magic
+        overwriteInt(0, 0);
+        runOnExecutorSync(MODEL_EXECUTOR,
+                () -> assertNull(read(mDbController.getFavoritesStateToken())));
+
+        // Version
+        Files.write(mFile.toPath(), original);
+        overwriteInt(Integer.BYTES, Integer.MAX_VALUE);
+        runOnExecutorSync(MODEL_EXECUTOR,
+                () -> assertNull(read(mDbController.getFavoritesStateToken())));
+    }
+
+    @Test
+    public void read_rejectsChangedFavorites() {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            String token = mDbController.getFavoritesStateToken();
+            write(token);
+
+            mDbController.deleteItem(mDataModel.itemsIdMap.keyAt(0));
+            String newToken = mDbController.getFavoritesStateToken();
+            assertNotEquals(token, newToken);
+            assertNull(read(newToken));
+        });
+    }
+
+    @Test
+    public void read_rejectsTruncatedOrCorruptFile() throws Exception {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> write(mDbController.getFavoritesStateToken()));
+        byte[] original = Files.readAllBytes(mFile.toPath());
+
+        Files.write(mFile.toPath(), Arrays.copyOf(original, original.length - 8));
+        runOnExecutorSync(MODEL_EXECUTOR,
+                () -> assertNull(read(mDbController.getFavoritesStateToken())));
+
+        // The length of the key
+        Files.write(mFile.toPath(), original);
+        overwriteInt(2 * Integer.BYTES, Integer.MAX_VALUE);
+        runOnExecutorSync(MODEL_EXECUTOR,
+                () -> assertNull(read(mDbController.getFavoritesStateToken())));
+    }
+
+    @Test
+    public void matchesDatabase_detectsMovedResizedOrDeletedItems() {
+        runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            assertTrue(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+            ItemInfo info = mDataModel.itemsIdMap.valueAt(0);
+
+            mDbController.updateItemPosition(info.id, info.container, info.screenId,
+                    info.cellX, info.cellY + 1, info.rank);
+            assertFalse(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+
+            mDbController.updateItemPositionAndSpan(info.id, info.container, info.screenId,
+                    info.cellX, info.cellY, info.rank, info.spanX + 1, info.spanY);
+            assertFalse(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+
+            ContentValues values = new ContentValues();
+            values.put(Favorites.SPANX, info.spanX);
+            values.put(Favorites.INTENT, mDataModel.itemsIdMap.valueAt(1).getIntent().toUri(0));
+            mDbController.updateItem(info.id, values);
+            assertFalse(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+
+            values.put(Favorites.INTENT, info.getIntent().toUri(0));
+            mDbController.updateItem(info.id, values);
+            assertTrue(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+
+            mDbController.deleteItem(info.id);
+            assertFalse(WorkspaceSnapshot.matchesDatabase(mDbController, mDataModel));
+        });
+    }
+
+    private void write(String token) {
+        WorkspaceSnapshot.write(mContext, mFile, DB_NAME, token, mDataModel, mUserManagerState);
+        assertTrue(mFile.exists());
+    }
+
+    private WorkspaceSnapshot read(String token) {
+        return WorkspaceSnapshot.read(mContext, mFile, DB_NAME, token, mUserManagerState);
+    }
+
+    private void overwriteInt(long offset, int value) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.seek(offset);
+            file.writeInt(value);
+        }
+    }
+}
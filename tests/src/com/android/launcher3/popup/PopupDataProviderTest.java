@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.popup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.PackageUserKey;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link PopupDataProvider}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PopupDataProviderTest {
+
+    private static final UserHandle USER = Process.myUserHandle();
+
+    private final PopupDataProvider mProvider = new PopupDataProvider(updatedDots -> { });
+
+    @Test
+    public void updateWidgets_replacesOnlyChangedPackages() {
+        List<WidgetsListBaseEntry> allWidgets = new ArrayList<>();
+        allWidgets.addAll(newEntries("com.example.a"));
+        allWidgets.addAll(newEntries("com.example.b"));
+        allWidgets.addAll(newEntries("com.example.c"));
+        mProvider.setAllWidgets(allWidgets);
+
+        List<WidgetsListBaseEntry> updatedB = newEntries("com.example.b");
+        List<WidgetsListBaseEntry> addedD = newEntries("com.example.d");
+        Map<PackageUserKey, List<WidgetsListBaseEntry>> changedWidgets = new HashMap<>();
+        changedWidgets.put(new PackageUserKey("com.example.a", USER), new ArrayList<>());
+        changedWidgets.put(new PackageUserKey("com.example.b", USER), updatedB);
+        changedWidgets.put(new PackageUserKey("com.example.d", USER), addedD);
+        mProvider.updateWidgets(changedWidgets);
+
+        List<WidgetsListBaseEntry> expected = new ArrayList<>();
+        expected.addAll(allWidgets.subList(4, 6));
+        expected.addAll(updatedB);
+        expected.addAll(addedD);
+        List<WidgetsListBaseEntry> actual = mProvider.getAllWidgets();
+        assertEquals(expected.size(), actual.size());
+        for (WidgetsListBaseEntry entry : expected) {
+            assertTrue(actual.stream().anyMatch(actualEntry -> actualEntry == entry));
+        }
+    }
+
+    private static List<WidgetsListBaseEntry> newEntries(String packageName) {
+        PackageItemInfo pkgItem = new PackageItemInfo(packageName, USER);
+        List<WidgetsListBaseEntry> entries = new ArrayList<>();
+        entries.add(WidgetsListHeaderEntry.create(pkgItem, "", new ArrayList<>()));
+        entries.add(new WidgetsListContentEntry(pkgItem, "", new ArrayList<>()));
+        return entries;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.getSearchExecutor;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SearchTaskRunner}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SearchTaskRunnerTest {
+
+    @Test
+    public void run_dropsSupersededQueries() throws Exception {
+        SearchTaskRunner<String> runner =
+                new SearchTaskRunner<>("Test", new Handler(MAIN_EXECUTOR.getLooper()));
+        List<String> searched = new ArrayList<>();
+        List<String> delivered = new ArrayList<>();
+        CountDownLatch blockSearch = new CountDownLatch(1);
+        CountDownLatch lastDelivered = new CountDownLatch(1);
+        getSearchExecutor().execute(() -> {
+            try {
+                blockSearch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            for (String query : new String[] {"c", "ca", "cam"}) {
+                runner.run(query, signal -> {
+                    searched.add(query);
+                    ArrayList<String> result = new ArrayList<>();
+                    result.add(query);
+                    return result;
+                }, new SearchCallback<String>() {
+                    @Override
+                    public void onSearchResult(String q, ArrayList<String> items) {
+                        delivered.addAll(items);
+                        lastDelivered.countDown();
+                    }
+
+                    @Override
+                    public void clearSearchResult() { }
+                });
+            }
+        });
+        blockSearch.countDown();
+
+        assertTrue(lastDelivered.await(5, TimeUnit.SECONDS));
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            assertEquals(List.of("cam"), searched);
+            assertEquals(List.of("cam"), delivered);
+        });
+    }
+}
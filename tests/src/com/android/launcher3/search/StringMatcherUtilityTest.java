@@ -25,6 +25,8 @@ import static org.junit.Assert.assertTrue;
 import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
 
+import com.android.launcher3.search.StringMatcherUtility.MatchQuery;
+import com.android.launcher3.search.StringMatcherUtility.MatchTarget;
 import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
 import com.android.launcher3.search.StringMatcherUtility.StringMatcherSpace;
 import com.android.launcher3.util.IntArray;
@@ -32,6 +34,9 @@ import com.android.launcher3.util.IntArray;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 /**
  * Unit tests for {@link StringMatcherUtility}
  */
@@ -41,6 +46,17 @@ public class StringMatcherUtilityTest {
     private static final StringMatcher MATCHER = StringMatcher.getInstance();
     private static final StringMatcherSpace MATCHER_SPACE = StringMatcherSpace.getInstance();
 
+    private static final String[] LOCALES = {"en-US", "tr-TR", "cs-CZ", "da-DK", "th-TH",
+            "ja-JP", "zh-CN", "de-DE", "sv-SE", "es-ES", "ko-KR"};
+    private static final String[] TITLES = {"Google Play Store", "YouTube Music", "whiteCOW",
+            "cats&dogs", "2+43", "T-Mobile", "Agar.io", "LEGO®Builder", "élan vital", "Ünit",
+            "电子邮件", "다운로드 드라이브", "โทรศัพท์ ไทย", "เกม", "Česky chata", "Istanbul Kart",
+            "İzmir ılık", "Ålesund aaron", "Straße", "Cœur", "DDǅ", "ᾋwDwǲ", "ñandu", "ＦＵＬＬ"};
+    private static final String[] QUERIES = {"p", "play", "tube", "mus", "cow", "dog", "43",
+            "mob", "io", "builder", "elan", "unit", "电", "邮件", "다", "ㄷ", "โท", "ไทย", "เก", "ก",
+            "ces", "ch", "cha", "is", "i", "ı", "iz", "il", "aa", "al", "å", "stra", "strasse",
+            "coe", "ǆ", "w", "n", "ña", "full", "google p", "zzz"};
+
     @Test
     public void testMatches() {
         assertTrue(matches("white", "white cow", MATCHER));
@@ -233,4 +249,27 @@ public class StringMatcherUtilityTest {
         assertEquals(IntArray.wrap(5,9,15),
                 getListOfBreakpoints("System UWB Field Test", MATCHER));
     }
+
+    @Test
+    public void testPreparedMatches_sameAsMatches() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            for (String locale : LOCALES) {
+                Locale.setDefault(Locale.forLanguageTag(locale));
+                for (StringMatcher matcher : Arrays.asList(
+                        StringMatcher.getInstance(), StringMatcherSpace.getInstance())) {
+                    for (String title : TITLES) {
+                        MatchTarget target = new MatchTarget(title, matcher);
+                        for (String query : QUERIES) {
+                            assertEquals(locale + " " + query + " in " + title,
+                                    matches(query, title, matcher),
+                                    matches(new MatchQuery(query), target, matcher));
+                        }
+                    }
+                }
+            }
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
 }
@@ -10,6 +10,8 @@ import androidx.test.filters.SmallTest;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 /**
  * Unit tests for {@link GridOccupancy}
  */
@@ -55,6 +57,114 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    public void testMarkCellsAndCopyTo() {
+        GridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+        grid.markCells(2, 0, 2, 2, false);
+        assertTrue(grid.isRegionVacant(2, 0, 3, 3));
+        assertFalse(grid.cells[2][0]);
+
+        // Spans going out of the grid are clipped
+        grid.markCells(3, 2, 5, 5, true);
+        assertTrue(grid.cells[4][3]);
+        assertFalse(grid.isRegionVacant(3, 2, 1, 1));
+
+        GridOccupancy copy = new GridOccupancy(5, 4);
+        copy.markCells(0, 0, 5, 4, true);
+        grid.copyTo(copy);
+        assertEquals(grid.toString(), copy.toString());
+        assertTrue(copy.isRegionVacant(2, 0, 3, 2));
+
+        copy.clear();
+        assertTrue(copy.isRegionVacant(0, 0, 5, 4));
+    }
+
+    @Test
+    public void testMatchesCellByCellSearch() {
+        Random random = new Random(42);
+        int[] vacant = new int[2];
+        int[] expected = new int[2];
+        for (int size = 4; size <= 8; size++) {
+            for (int n = 0; n < 50; n++) {
+                GridOccupancy grid = randomGrid(random, size, size, 0.3f);
+                for (int spanX = 1; spanX <= 4; spanX++) {
+                    for (int spanY = 1; spanY <= 4; spanY++) {
+                        boolean found = findVacantCellByCell(expected, grid, size, size,
+                                spanX, spanY);
+                        assertEquals(grid.toString(), found,
+                                grid.findVacantCell(vacant, spanX, spanY));
+                        if (found) {
+                            assertEquals(expected[0], vacant[0]);
+                            assertEquals(expected[1], vacant[1]);
+                        }
+                        int x = random.nextInt(size);
+                        int y = random.nextInt(size);
+                        assertEquals(isRegionVacantByCell(grid, size, size, x, y, spanX, spanY),
+                                grid.isRegionVacant(x, y, spanX, spanY));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWideGrid() {
+        GridOccupancy grid = new GridOccupancy(70, 2);
+        grid.markCells(0, 0, 68, 2, true);
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 2, 2));
+        assertEquals(68, vacant[0]);
+        assertEquals(0, vacant[1]);
+        assertTrue(grid.isRegionVacant(68, 0, 2, 2));
+        assertFalse(grid.isRegionVacant(67, 0, 2, 2));
+    }
+
+    private static GridOccupancy randomGrid(Random random, int countX, int countY,
+            float density) {
+        GridOccupancy grid = new GridOccupancy(countX, countY);
+        for (int x = 0; x < countX; x++) {
+            for (int y = 0; y < countY; y++) {
+                grid.markCells(x, y, 1, 1, random.nextFloat() < density);
+            }
+        }
+        return grid;
+    }
+
+    private static boolean findVacantCellByCell(int[] vacantOut, GridOccupancy grid,
+            int countX, int countY, int spanX, int spanY) {
+        for (int y = 0; (y + spanY) <= countY; y++) {
+            for (int x = 0; (x + spanX) <= countX; x++) {
+                if (isRegionVacantByCell(grid, countX, countY, x, y, spanX, spanY)) {
+                    vacantOut[0] = x;
+                    vacantOut[1] = y;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRegionVacantByCell(GridOccupancy grid, int countX, int countY,
+            int x, int y, int spanX, int spanY) {
+        if (x + spanX > countX || y + spanY > countY) {
+            return false;
+        }
+        for (int i = x; i < x + spanX; i++) {
+            for (int j = y; j < y + spanY; j++) {
+                if (grid.cells[i][j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
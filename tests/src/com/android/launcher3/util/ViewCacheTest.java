@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link ViewCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewCacheTest {
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+    private final ViewCache mViewCache = new ViewCache();
+
+    @Test
+    public void prewarm_fillsCacheWhenIdle() {
+        View[] views = new View[3];
+        getInstrumentation().runOnMainSync(() -> mViewCache.prewarm(
+                R.layout.widget_cell, 2, mContext, new FrameLayout(mContext)));
+        getInstrumentation().waitForIdleSync();
+
+        getInstrumentation().runOnMainSync(() -> {
+            FrameLayout parent = new FrameLayout(mContext);
+            for (int i = 0; i < views.length; i++) {
+                views[i] = mViewCache.getView(R.layout.widget_cell, mContext, parent);
+            }
+            // The third view is inflated as only two were prewarmed, and isn't cached afterwards
+            mViewCache.recycleView(R.layout.widget_cell, views[0]);
+            mViewCache.recycleView(R.layout.widget_cell, views[1]);
+            mViewCache.recycleView(R.layout.widget_cell, views[2]);
+        });
+        getInstrumentation().runOnMainSync(() -> {
+            FrameLayout parent = new FrameLayout(mContext);
+            assertSame(views[1], mViewCache.getView(R.layout.widget_cell, mContext, parent));
+            assertSame(views[0], mViewCache.getView(R.layout.widget_cell, mContext, parent));
+            assertNotSame(views[2], mViewCache.getView(R.layout.widget_cell, mContext, parent));
+        });
+    }
+}
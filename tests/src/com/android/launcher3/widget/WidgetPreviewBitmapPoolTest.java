@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Tests for {@link WidgetPreviewBitmapPool}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetPreviewBitmapPoolTest {
+
+    @Test
+    public void acquire_reusesReleasedBitmapOfSameBucket() {
+        WidgetPreviewBitmapPool pool = new WidgetPreviewBitmapPool(1024 * 1024);
+        Bitmap first = pool.acquire(100 * 100 * 4);
+        assertTrue(first.getAllocationByteCount() >= 100 * 100 * 4);
+        pool.release(first);
+
+        assertSame(first, pool.acquire(90 * 110 * 4));
+        assertEquals(1, pool.getAllocations());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void release_dropsBitmapsOverLimit() {
+        WidgetPreviewBitmapPool pool = new WidgetPreviewBitmapPool(64 * 64 * 4);
+        Bitmap first = pool.acquire(64 * 64 * 4);
+        Bitmap second = pool.acquire(64 * 64 * 4);
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(64 * 64 * 4, pool.getPooledBytes());
+        assertTrue(second.isRecycled());
+        pool.trim();
+        assertEquals(0, pool.getPooledBytes());
+        assertTrue(first.isRecycled());
+    }
+
+    @Test
+    public void acquire_canBeDecodedIntoWithSampling() {
+        Bitmap image = Bitmap.createBitmap(301, 199, Bitmap.Config.ARGB_8888);
+        image.eraseColor(Color.BLUE);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        image.compress(Bitmap.CompressFormat.PNG, 100, png);
+
+        WidgetPreviewBitmapPool pool = new WidgetPreviewBitmapPool(1024 * 1024);
+        for (int sampleSize : new int[] {1, 2, 4}) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            options.inMutable = true;
+            int width = (301 + sampleSize - 1) / sampleSize;
+            int height = (199 + sampleSize - 1) / sampleSize;
+            options.inBitmap = pool.acquire(width * height * 4);
+            Bitmap decoded = BitmapFactory.decodeStream(
+                    new ByteArrayInputStream(png.toByteArray()), null, options);
+
+            assertSame(options.inBitmap, decoded);
+            assertEquals(Color.BLUE, decoded.getPixel(0, 0));
+            pool.release(decoded);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+/**
+ * Tests for {@link WidgetPreviewDiskCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetPreviewDiskCacheTest {
+
+    private static final int PREVIEW_SIZE = 20;
+    private static final long PREVIEW_BYTES = 8 + PREVIEW_SIZE * PREVIEW_SIZE * 4;
+
+    private Context mContext;
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mContext = getInstrumentation().getTargetContext();
+        mDir = new File(mContext.getCacheDir(), "widget_previews_test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void put_previewReadBackAfterRestart() {
+        Bitmap preview = newPreview(Color.RED);
+        newCache(10 * PREVIEW_BYTES).put(key("com.example", 1), preview);
+
+        Bitmap cached = newCache(10 * PREVIEW_BYTES).get(key("com.example", 1));
+        assertNotNull(cached);
+        assertTrue(preview.sameAs(cached.copy(Bitmap.Config.ARGB_8888, false)));
+        assertNull(newCache(10 * PREVIEW_BYTES).get(key("com.example", 2)));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        WidgetPreviewDiskCache cache = newCache(2 * PREVIEW_BYTES);
+        cache.put(key("com.example", 1), newPreview(Color.RED));
+        cache.put(key("com.example", 2), newPreview(Color.GREEN));
+        assertNotNull(cache.get(key("com.example", 1)));
+
+        cache.put(key("com.example", 3), newPreview(Color.BLUE));
+        assertEquals(2 * PREVIEW_BYTES, cache.getTotalSize());
+        assertNotNull(cache.get(key("com.example", 1)));
+        assertNull(cache.get(key("com.example", 2)));
+        assertNotNull(cache.get(key("com.example", 3)));
+    }
+
+    @Test
+    public void removePackage_deletesOnlyItsPreviews() {
+        WidgetPreviewDiskCache cache = newCache(10 * PREVIEW_BYTES);
+        cache.put(key("com.example", 1), newPreview(Color.RED));
+        cache.put(key("com.example.other", 1), newPreview(Color.GREEN));
+
+        cache.removePackage("com.example", Process.myUserHandle());
+        assertNull(cache.get(key("com.example", 1)));
+        assertNotNull(cache.get(key("com.example.other", 1)));
+        assertEquals(PREVIEW_BYTES, cache.getTotalSize());
+    }
+
+    private WidgetPreviewDiskCache newCache(long maxSizeBytes) {
+        return new WidgetPreviewDiskCache(mContext, mDir, maxSizeBytes);
+    }
+
+    private String key(String packageName, int id) {
+        long serial = UserCache.INSTANCE.get(mContext)
+                .getSerialNumberForUser(Process.myUserHandle());
+        return packageName + "_" + serial + "_" + String.format("%064x", id);
+    }
+
+    private static Bitmap newPreview(int color) {
+        Bitmap preview = Bitmap.createBitmap(PREVIEW_SIZE, PREVIEW_SIZE, Bitmap.Config.ARGB_8888);
+        preview.eraseColor(color);
+        return preview;
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}